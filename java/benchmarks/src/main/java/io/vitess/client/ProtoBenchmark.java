@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import com.google.common.collect.ImmutableList;
+import io.vitess.proto.Query.BoundQuery;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures encoding of bind variables into protos, which happens for every executed statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtoBenchmark {
+  @Param({"Integer", "Long", "Double", "BigDecimal", "String", "byte[]", "List"})
+  public String valueType;
+
+  private Object value;
+  private Map<String, Object> vars;
+
+  @Setup
+  public void setup() {
+    switch (valueType) {
+      case "Integer":
+        value = 123456;
+        break;
+      case "Long":
+        value = 1234567890123L;
+        break;
+      case "Double":
+        value = 12345.6789;
+        break;
+      case "BigDecimal":
+        value = new BigDecimal("-98765432.1234");
+        break;
+      case "String":
+        value = "a typical string value";
+        break;
+      case "byte[]":
+        value = new byte[] {1, 2, 3, 4, 5, 6, 7, 8};
+        break;
+      case "List":
+        value = ImmutableList.of(1L, 2L, 3L, 4L, 5L);
+        break;
+      default:
+        throw new IllegalArgumentException("unsupported type: " + valueType);
+    }
+
+    // A statement with ten placeholders, named the way the JDBC driver names them.
+    vars = new HashMap<>();
+    for (int i = 1; i <= 10; i++) {
+      vars.put("v" + i, value);
+    }
+  }
+
+  @Benchmark
+  public void buildBindVariable(Blackhole bh) {
+    bh.consume(Proto.buildBindVariable(value));
+  }
+
+  @Benchmark
+  public BoundQuery bindQuery() {
+    return Proto.bindQuery("insert into t (c1, c2, c3, c4, c5, c6, c7, c8, c9, c10) values "
+        + "(:v1, :v2, :v3, :v4, :v5, :v6, :v7, :v8, :v9, :v10)", vars);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import com.google.protobuf.ByteString;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.Field;
+import io.vitess.proto.Query.QueryResult;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the per-row cost of reading a typical mixed-type result: splitting the packed row
+ * buffer into cells ({@code Row.extractValues}) and converting every cell ({@code
+ * Row.convertFieldValue}), compared with reading the same cells through {@link RowBatch}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowBenchmark {
+  private static final int ROWS = 1000;
+
+  private static final Query.Type[] TYPES = {Query.Type.INT64, Query.Type.INT32,
+      Query.Type.VARCHAR, Query.Type.DECIMAL, Query.Type.FLOAT64, Query.Type.DATETIME,
+      Query.Type.VARBINARY, Query.Type.UINT64};
+  private static final String[] VALUES = {"1234567890123", "42", "some varchar value", "1234.56",
+      "3.14159", "2017-03-21 12:34:56", "\u0001\u0002\u0003\u0004", "18446744073709551615"};
+
+  private QueryResult result;
+
+  @Setup
+  public void setup() {
+    QueryResult.Builder builder = QueryResult.newBuilder();
+    for (int i = 0; i < TYPES.length; i++) {
+      builder.addFields(Field.newBuilder().setName("col" + i).setType(TYPES[i]));
+    }
+    for (int r = 0; r < ROWS; r++) {
+      Query.Row.Builder row = Query.Row.newBuilder();
+      StringBuilder values = new StringBuilder();
+      for (String value : VALUES) {
+        row.addLengths(value.length());
+        values.append(value);
+      }
+      builder.addRows(row.setValues(ByteString.copyFromUtf8(values.toString())));
+    }
+    result = builder.build();
+  }
+
+  /** Builds a {@link Row} per proto row, which splits it into per-cell ByteStrings. */
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void extractValues(Blackhole bh) throws SQLException {
+    Cursor cursor = new SimpleCursor(result);
+    Row row;
+    while ((row = cursor.next()) != null) {
+      bh.consume(row);
+    }
+  }
+
+  /** Builds a {@link Row} per proto row and converts every cell with {@code getObject()}. */
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void convertFieldValue(Blackhole bh) throws SQLException {
+    Cursor cursor = new SimpleCursor(result);
+    Row row;
+    while ((row = cursor.next()) != null) {
+      for (int i = 1; i <= TYPES.length; i++) {
+        bh.consume(row.getObject(i));
+      }
+    }
+  }
+
+  /** Reads the fixed-width columns in place through {@link RowBatch}, without building Rows. */
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void rowBatch(Blackhole bh) throws SQLException {
+    Cursor cursor = new SimpleCursor(result);
+    RowBatch batch;
+    while ((batch = cursor.nextBatch()) != null) {
+      for (int r = 0; r < batch.size(); r++) {
+        bh.consume(batch.getLong(r, 1));
+        bh.consume(batch.getInt(r, 2));
+        bh.consume(batch.getLength(r, 3));
+        bh.consume(batch.getDouble(r, 5));
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import com.google.common.primitives.UnsignedLong;
+import com.google.protobuf.ByteString;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.Field;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the numeric getters on {@link Row}, which decode the ASCII digits in place, with the
+ * previous approach of decoding to a {@link String} and parsing that.
+ *
+ * <p>Run with {@code -prof gc} to see the allocation rate of each path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowDecodeBenchmark {
+  @Param({"INT32", "INT64", "UINT64", "FLOAT64", "DECIMAL"})
+  public Query.Type type;
+
+  private Row row;
+  private ByteString rawValue;
+
+  @Setup
+  public void setup() {
+    String value;
+    switch (type) {
+      case INT32:
+        value = "-1234567890";
+        break;
+      case INT64:
+        value = "1234567890123456789";
+        break;
+      case UINT64:
+        value = "18446744073709551615";
+        break;
+      case FLOAT64:
+        value = "12345.6789";
+        break;
+      case DECIMAL:
+        value = "-98765432.1234";
+        break;
+      default:
+        throw new IllegalArgumentException("unsupported type: " + type);
+    }
+    rawValue = ByteString.copyFromUtf8(value);
+    Field field = Field.newBuilder().setName("col").setType(type).build();
+    row = new Row(Collections.singletonList(field), Collections.singletonList(rawValue));
+  }
+
+  /** The getter a caller would use for each type, backed by {@link AsciiDecoder}. */
+  @Benchmark
+  public void asciiDecode(Blackhole bh) throws SQLException {
+    switch (type) {
+      case INT32:
+        bh.consume(row.getInt(1));
+        break;
+      case INT64:
+        bh.consume(row.getLong(1));
+        break;
+      case UINT64:
+        bh.consume(row.getULong(1));
+        break;
+      case FLOAT64:
+        bh.consume(row.getDouble(1));
+        break;
+      case DECIMAL:
+        bh.consume(row.getBigDecimal(1));
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+  }
+
+  /** The conversion {@code Row} used to do: decode to a String, then box through valueOf(). */
+  @Benchmark
+  public void stringDecode(Blackhole bh) {
+    switch (type) {
+      case INT32:
+        bh.consume(Integer.valueOf(rawValue.toStringUtf8()).intValue());
+        break;
+      case INT64:
+        bh.consume(Long.valueOf(rawValue.toStringUtf8()).longValue());
+        break;
+      case UINT64:
+        bh.consume(UnsignedLong.valueOf(rawValue.toStringUtf8()));
+        break;
+      case FLOAT64:
+        bh.consume(Double.valueOf(rawValue.toStringUtf8()).doubleValue());
+        break;
+      case DECIMAL:
+        bh.consume(new BigDecimal(rawValue.toStringUtf8()));
+        break;
+      default:
+        throw new IllegalStateException();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.vitess.proto.Query.QueryResult;
+import io.vitess.proto.Vtgate.StreamExecuteResponse;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the hand-off of stream responses from the gRPC callback thread to the thread iterating
+ * over the {@link GrpcStreamAdapter}, which bounds the throughput of every streaming query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GrpcStreamAdapterBenchmark {
+  private static final int MESSAGES = 1000;
+
+  private ExecutorService producer;
+  private StreamExecuteResponse response;
+
+  @Setup
+  public void setup() {
+    producer = Executors.newSingleThreadExecutor();
+    response = StreamExecuteResponse.newBuilder().setResult(QueryResult.getDefaultInstance())
+        .build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    producer.shutdownNow();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(MESSAGES)
+  public void handOff(Blackhole bh) throws Exception {
+    final GrpcStreamAdapter<StreamExecuteResponse, QueryResult> adapter =
+        new GrpcStreamAdapter<StreamExecuteResponse, QueryResult>() {
+          @Override
+          QueryResult getResult(StreamExecuteResponse response) throws SQLException {
+            return response.getResult();
+          }
+        };
+    // Plays the role of the gRPC transport thread.
+    Future<?> done = producer.submit(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < MESSAGES; i++) {
+          adapter.onNext(response);
+        }
+        adapter.onCompleted();
+      }
+    });
+
+    while (adapter.hasNext()) {
+      bh.consume(adapter.next());
+    }
+    adapter.close();
+    done.get();
+  }
+}
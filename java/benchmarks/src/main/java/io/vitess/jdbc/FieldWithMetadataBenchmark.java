@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.jdbc;
+
+import io.vitess.proto.Query;
+import io.vitess.util.charset.CharsetMapping;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the JDBC column metadata for one field, which happens for every column of
+ * every result set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldWithMetadataBenchmark {
+  @Param({"INT64", "VARCHAR", "BLOB"})
+  public Query.Type type;
+
+  private ConnectionProperties properties;
+  private Query.Field field;
+
+  @Setup
+  public void setup() throws SQLException {
+    properties = new ConnectionProperties();
+    properties.initializeProperties(new Properties());
+    field = Query.Field.newBuilder()
+        .setName("col")
+        .setOrgName("col")
+        .setTable("t")
+        .setOrgTable("t")
+        .setDatabase("db")
+        .setType(type)
+        .setColumnLength(255)
+        .setCharset(type == Query.Type.INT64 ? CharsetMapping.MYSQL_COLLATION_INDEX_binary
+            : CharsetMapping.MYSQL_COLLATION_INDEX_utf8)
+        .build();
+  }
+
+  @Benchmark
+  public FieldWithMetadata construct() throws SQLException {
+    return new FieldWithMetadata(properties, field);
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.jdbc;
+
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures creating a {@link VitessPreparedStatement} and scanning its SQL for placeholders
+ * ({@code calculateParameterCount}), as done by {@code getParameterMetaData()}.
+ *
+ * <p>No server is needed: the connection is never opened.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedStatementBenchmark {
+  @Param({"short", "long"})
+  public String query;
+
+  private VitessConnection connection;
+  private String sql;
+
+  @Setup
+  public void setup() throws SQLException {
+    connection = new VitessConnection("jdbc:vitess://localhost:15991/keyspace/db",
+        new Properties());
+    if ("short".equals(query)) {
+      sql = "select * from t where id = ?";
+    } else {
+      StringBuilder sb = new StringBuilder(
+          "insert /* comment with ? */ into t (id, name, note) values ");
+      for (int i = 0; i < 50; i++) {
+        sb.append(i == 0 ? "" : ", ").append("(?, 'it''s a \"?\"', `?` + ?)");
+      }
+      sql = sb.toString();
+    }
+  }
+
+  @Benchmark
+  public int calculateParameterCount() throws SQLException {
+    VitessPreparedStatement statement = new VitessPreparedStatement(connection, sql);
+    try {
+      return statement.getParameterMetaData().getParameterCount();
+    } finally {
+      statement.close();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.jdbc;
+
+import com.google.protobuf.ByteString;
+import io.vitess.client.cursor.SimpleCursor;
+import io.vitess.proto.Query;
+import io.vitess.util.charset.CharsetMapping;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link VitessResultSet#getString(int)} on a VARCHAR column, including the conversion
+ * from the column's MySQL charset.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetBenchmark {
+  /** MySQL collation ids: utf8_general_ci, latin1_swedish_ci, utf8mb4_general_ci. */
+  @Param({"33", "8", "45"})
+  public int collation;
+
+  private VitessStatement statement;
+  private VitessResultSet resultSet;
+
+  @Setup
+  public void setup() throws SQLException, UnsupportedEncodingException {
+    VitessConnection connection = new VitessConnection(
+        "jdbc:vitess://localhost:15991/keyspace/db", new Properties());
+    statement = new VitessStatement(connection);
+
+    String javaCharset = CharsetMapping.getJavaEncodingForCollationIndex(collation, null);
+    byte[] value = "The quick brown fox jumps over the lazy dog"
+        .getBytes(javaCharset == null ? StandardCharsets.UTF_8.name() : javaCharset);
+    Query.QueryResult result = Query.QueryResult.newBuilder()
+        .addFields(Query.Field.newBuilder().setName("col").setType(Query.Type.VARCHAR)
+            .setCharset(collation))
+        .addRows(Query.Row.newBuilder().addLengths(value.length)
+            .setValues(ByteString.copyFrom(value)))
+        .build();
+    resultSet = new VitessResultSet(new SimpleCursor(result), statement);
+    resultSet.next();
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    resultSet.close();
+    statement.close();
+  }
+
+  @Benchmark
+  public String getString() throws SQLException {
+    return resultSet.getString(1);
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+/**
+ * A stream which can tell whether closing it cancelled a call that was still running, as opposed
+ * to releasing one that had already ended.
+ */
+public interface CancellableStream extends AutoCloseable {
+  /**
+   * Closes the stream, like {@link #close()}.
+   *
+   * @return true if the server was still sending results and the call was cancelled, false if
+   *     the stream had already completed, failed or been closed.
+   */
+  boolean closeStream() throws Exception;
+}
@@ -52,7 +52,7 @@ public class Context {
       // You can't make a derived context with a later deadline than the parent.
       return this;
     }
-    return new Context(deadline, callerId);
+    return new Context(deadline, callerId, streamPrefetch, streamIdleTimeout);
   }
 
   /**
@@ -69,7 +69,38 @@ public class Context {
       // Nothing changed.
       return this;
     }
-    return new Context(deadline, callerId);
+    return new Context(deadline, callerId, streamPrefetch, streamIdleTimeout);
+  }
+
+  /**
+   * withStreamPrefetch returns a derived context that lets streaming queries buffer up to
+   * {@code chunks} result chunks ahead of the consumer.
+   *
+   * <p>Higher values let the network transfer overlap with processing of the current chunk, at
+   * the cost of holding more results in memory. The RPC implementation picks a default if this is
+   * not set.
+   */
+  public Context withStreamPrefetch(int chunks) {
+    if (chunks < 1) {
+      throw new IllegalArgumentException("stream prefetch must be at least 1: " + chunks);
+    }
+    return new Context(deadline, callerId, chunks, streamIdleTimeout);
+  }
+
+  /**
+   * withStreamIdleTimeout returns a derived context that fails a streaming query if no result
+   * chunk arrives for longer than {@code timeout}.
+   *
+   * <p>Unlike the deadline, which bounds the whole stream, this lets a long stream run for as long
+   * as the server keeps sending results, while a stalled stream is still cancelled promptly. Time
+   * the consumer spends on results it already has does not count, because nothing is requested
+   * from the server while the prefetch buffer is full.
+   */
+  public Context withStreamIdleTimeout(Duration timeout) {
+    if (timeout.getMillis() < 1) {
+      throw new IllegalArgumentException("stream idle timeout must be positive: " + timeout);
+    }
+    return new Context(deadline, callerId, streamPrefetch, timeout);
   }
 
   @Nullable
@@ -90,13 +121,28 @@ public class Context {
     return callerId;
   }
 
+  @Nullable
+  public Integer getStreamPrefetch() {
+    return streamPrefetch;
+  }
+
+  @Nullable
+  public Duration getStreamIdleTimeout() {
+    return streamIdleTimeout;
+  }
+
   private Instant deadline;
   private CallerID callerId;
+  private Integer streamPrefetch;
+  private Duration streamIdleTimeout;
 
   private Context() {}
 
-  private Context(Instant deadline, CallerID callerId) {
+  private Context(Instant deadline, CallerID callerId, Integer streamPrefetch,
+      Duration streamIdleTimeout) {
     this.deadline = deadline;
     this.callerId = callerId;
+    this.streamPrefetch = streamPrefetch;
+    this.streamIdleTimeout = streamIdleTimeout;
   }
 }
@@ -53,6 +53,12 @@ public class Proto {
 
   private static final int MAX_DECIMAL_UNIT = 30;
 
+  /**
+   * The length of the longest decimal representation of a long, "-9223372036854775808", and so
+   * the size of the scratch buffer that {@link #buildBindVariable(long, byte[])} needs.
+   */
+  public static final int MAX_LONG_LENGTH = 20;
+
   /**
    * Throws the proper SQLException for an error returned by VTGate.
    *
@@ -81,8 +87,8 @@ public class Proto {
         case ABORTED:
           throw new SQLRecoverableException(error.toString(), sqlState, errno);
         default:
-          throw new SQLNonTransientException("Vitess RPC error: " + error.toString(), sqlState,
-              errno);
+          throw new RpcErrorException(error.getCode(), "Vitess RPC error: " + error.toString(),
+              sqlState, errno);
       }
 
       switch (error.getLegacyCode()) {
@@ -191,6 +197,20 @@ public class Proto {
     return builder.build();
   }
 
+  /**
+   * Builds an INT64 bind variable without boxing the value or going through a {@link String}.
+   *
+   * <p>
+   * The digits are written into {@code buffer}, which must hold at least {@link #MAX_LONG_LENGTH}
+   * bytes. Its contents are copied into the result, so callers can reuse it for the next value.
+   */
+  public static BindVariable buildBindVariable(long value, byte[] buffer) {
+    return BindVariable.newBuilder()
+        .setType(Query.Type.INT64)
+        .setValue(encodeLong(value, buffer))
+        .build();
+  }
+
   public static EntityId buildEntityId(byte[] keyspaceId, Object value) {
     TypedValue tval = new TypedValue(value);
 
@@ -278,6 +298,25 @@ public class Proto {
         }
       };
 
+  /**
+   * Writes the decimal digits of {@code value} right-aligned into {@code buffer}, and copies them
+   * out as a {@link ByteString}. This is the same text as {@link Long#toString(long)}, but without
+   * the intermediate String and its UTF-8 encoding.
+   */
+  static ByteString encodeLong(long value, byte[] buffer) {
+    int pos = MAX_LONG_LENGTH;
+    // Count down on the negative side, which also has room for Long.MIN_VALUE.
+    long remaining = value < 0 ? value : -value;
+    do {
+      buffer[--pos] = (byte) ('0' - (remaining % 10));
+      remaining /= 10;
+    } while (remaining != 0);
+    if (value < 0) {
+      buffer[--pos] = '-';
+    }
+    return ByteString.copyFrom(buffer, pos, MAX_LONG_LENGTH - pos);
+  }
+
   /**
    * Represents a type and value in the type system used in query.proto.
    */
@@ -301,7 +340,7 @@ public class Proto {
           || value instanceof Byte) {
         // Int32, Int64, Short, Byte
         this.type = Query.Type.INT64;
-        this.value = ByteString.copyFromUtf8(value.toString());
+        this.value = encodeLong(((Number) value).longValue(), new byte[MAX_LONG_LENGTH]);
       } else if (value instanceof UnsignedLong) {
         // Uint64
         this.type = Query.Type.UINT64;
@@ -140,7 +140,10 @@ public interface RpcClient extends Closeable {
    * <p>Note: Streaming queries are not asynchronous, because they typically shouldn't
    * be used from a latency-critical serving path anyway. This method will return as
    * soon as the request is initiated, but StreamIterator methods will block until the
-   * next chunk of results is received from the server.
+   * next chunk of results is received from the server. Only the consumer blocks:
+   * implementations must apply backpressure through the transport's flow control rather
+   * than by blocking the threads that deliver results, so that a slow consumer can't
+   * starve other calls on the same connection.
    *
    * <p>See the
    * <a href="https://github.com/youtube/vitess/blob/master/proto/vtgateservice.proto">proto</a>
@@ -149,13 +152,31 @@ public interface RpcClient extends Closeable {
   StreamIterator<QueryResult> streamExecute(Context ctx, StreamExecuteRequest request)
       throws SQLException;
 
+  /**
+   * Starts stream queries with the VTGate V3 API, delivering the results asynchronously.
+   *
+   * <p>Unlike {@link #streamExecute(Context, StreamExecuteRequest)}, no thread waits for results:
+   * they are pushed to the subscriber as it requests them, one {@link QueryResult} chunk per unit
+   * of demand. Results the subscriber hasn't asked for are not requested from the server, so a slow
+   * subscriber holds the server back through the transport's flow control.
+   *
+   * <p>See the
+   * <a href="https://github.com/youtube/vitess/blob/master/proto/vtgateservice.proto">proto</a>
+   * definition for canonical documentation on this VTGate API.
+   */
+  void streamExecuteAsync(Context ctx, StreamExecuteRequest request,
+      StreamSubscriber<QueryResult> subscriber) throws SQLException;
+
   /**
    * Starts stream queries with multiple shards.
    *
    * <p>Note: Streaming queries are not asynchronous, because they typically shouldn't
    * be used from a latency-critical serving path anyway. This method will return as
    * soon as the request is initiated, but StreamIterator methods will block until the
-   * next chunk of results is received from the server.
+   * next chunk of results is received from the server. Only the consumer blocks:
+   * implementations must apply backpressure through the transport's flow control rather
+   * than by blocking the threads that deliver results, so that a slow consumer can't
+   * starve other calls on the same connection.
    *
    * <p>See the
    * <a href="https://github.com/youtube/vitess/blob/master/proto/vtgateservice.proto">proto</a>
@@ -164,13 +185,30 @@ public interface RpcClient extends Closeable {
   StreamIterator<QueryResult> streamExecuteShards(Context ctx, StreamExecuteShardsRequest request)
       throws SQLException;
 
+  /**
+   * Starts stream queries with multiple shards, delivering the results asynchronously.
+   *
+   * <p>This is to {@link #streamExecuteShards(Context, StreamExecuteShardsRequest)} what
+   * {@link #streamExecuteAsync(Context, StreamExecuteRequest, StreamSubscriber)} is to
+   * {@link #streamExecute(Context, StreamExecuteRequest)}.
+   *
+   * <p>See the
+   * <a href="https://github.com/youtube/vitess/blob/master/proto/vtgateservice.proto">proto</a>
+   * definition for canonical documentation on this VTGate API.
+   */
+  void streamExecuteShardsAsync(Context ctx, StreamExecuteShardsRequest request,
+      StreamSubscriber<QueryResult> subscriber) throws SQLException;
+
   /**
    * Starts a list of stream queries with keyspace ids as bind variables.
    *
    * <p>Note: Streaming queries are not asynchronous, because they typically shouldn't
    * be used from a latency-critical serving path anyway. This method will return as
    * soon as the request is initiated, but StreamIterator methods will block until the
-   * next chunk of results is received from the server.
+   * next chunk of results is received from the server. Only the consumer blocks:
+   * implementations must apply backpressure through the transport's flow control rather
+   * than by blocking the threads that deliver results, so that a slow consumer can't
+   * starve other calls on the same connection.
    *
    * <p>See the
    * <a href="https://github.com/youtube/vitess/blob/master/proto/vtgateservice.proto">proto</a>
@@ -185,7 +223,10 @@ public interface RpcClient extends Closeable {
    * <p>Note: Streaming queries are not asynchronous, because they typically shouldn't
    * be used from a latency-critical serving path anyway. This method will return as
    * soon as the request is initiated, but StreamIterator methods will block until the
-   * next chunk of results is received from the server.
+   * next chunk of results is received from the server. Only the consumer blocks:
+   * implementations must apply backpressure through the transport's flow control rather
+   * than by blocking the threads that deliver results, so that a slow consumer can't
+   * starve other calls on the same connection.
    *
    * <p>See the
    * <a href="https://github.com/youtube/vitess/blob/master/proto/vtgateservice.proto">proto</a>
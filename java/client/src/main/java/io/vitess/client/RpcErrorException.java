@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import io.vitess.proto.Vtrpc;
+import java.sql.SQLNonTransientException;
+
+/**
+ * A {@link SQLNonTransientException} for a Vitess RPC error that has no more specific
+ * {@link java.sql.SQLException} subclass, e.g. {@code FAILED_PRECONDITION}. It keeps the
+ * {@link Vtrpc.Code} of the error, so callers can act on it without parsing the message.
+ */
+public class RpcErrorException extends SQLNonTransientException {
+  private final Vtrpc.Code code;
+
+  public RpcErrorException(Vtrpc.Code code, String reason, String sqlState, int vendorCode) {
+    super(reason, sqlState, vendorCode);
+    this.code = code;
+  }
+
+  public RpcErrorException(Vtrpc.Code code, String reason, String sqlState, int vendorCode,
+      Throwable cause) {
+    super(reason, sqlState, vendorCode, cause);
+    this.code = code;
+  }
+
+  /**
+   * Creates an exception with the code of the first {@code RpcErrorException} in the chain of
+   * {@code cause}, or {@code UNKNOWN} if there is none. {@link SQLFuture#checkedGet()} rethrows
+   * errors through this constructor.
+   */
+  public RpcErrorException(String reason, String sqlState, int vendorCode, Throwable cause) {
+    this(codeOf(cause), reason, sqlState, vendorCode, cause);
+  }
+
+  private static Vtrpc.Code codeOf(Throwable cause) {
+    for (Throwable t = cause; t != null; t = t.getCause()) {
+      if (t instanceof RpcErrorException) {
+        return ((RpcErrorException) t).getCode();
+      }
+    }
+    return Vtrpc.Code.UNKNOWN;
+  }
+
+  /**
+   * Returns the code of the RPC error.
+   */
+  public Vtrpc.Code getCode() {
+    return code;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.UnsignedBytes;
+import io.vitess.proto.Topodata.KeyRange;
+import io.vitess.proto.Topodata.ShardReference;
+import io.vitess.proto.Topodata.SrvKeyspace;
+import io.vitess.proto.Topodata.SrvKeyspace.KeyspacePartition;
+import io.vitess.proto.Topodata.TabletType;
+import java.sql.SQLDataException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Maps keyspace ids to the shards that serve them for one tablet type, as described by a
+ * {@link SrvKeyspace}.
+ *
+ * <p>This lets a caller resolve keyspace ids to shards up front, and send queries straight to the
+ * shards with e.g. {@link VTGateConn#executeBatchShards} or {@link VTGateConn#streamExecuteShards},
+ * instead of having vtgate resolve the same keyspace ids on every call.
+ *
+ * <p>A {@code ShardMap} is immutable, so lookups need no locking. Use {@link ShardMapCache} to keep
+ * one up to date.
+ */
+@Immutable
+public final class ShardMap {
+  private static final Comparator<byte[]> KEYSPACE_ID_ORDER =
+      UnsignedBytes.lexicographicalComparator();
+
+  private final String keyspace;
+  private final TabletType tabletType;
+  /** Shard names, sorted by the start of their key range. */
+  private final String[] shards;
+  /** Start of each shard's key range, inclusive. Empty for the first shard. */
+  private final byte[][] starts;
+  /** End of each shard's key range, exclusive. Empty for the last shard. */
+  private final byte[][] ends;
+
+  private ShardMap(String keyspace, TabletType tabletType, List<ShardReference> references) {
+    this.keyspace = keyspace;
+    this.tabletType = tabletType;
+    List<ShardReference> sorted = new ArrayList<>(references);
+    Collections.sort(sorted, new Comparator<ShardReference>() {
+      @Override
+      public int compare(ShardReference a, ShardReference b) {
+        return KEYSPACE_ID_ORDER.compare(a.getKeyRange().getStart().toByteArray(),
+            b.getKeyRange().getStart().toByteArray());
+      }
+    });
+    int n = sorted.size();
+    shards = new String[n];
+    starts = new byte[n][];
+    ends = new byte[n][];
+    for (int i = 0; i < n; i++) {
+      KeyRange keyRange = sorted.get(i).getKeyRange();
+      shards[i] = sorted.get(i).getName();
+      starts[i] = keyRange.getStart().toByteArray();
+      ends[i] = keyRange.getEnd().toByteArray();
+    }
+  }
+
+  /**
+   * Builds the map for the shards that serve {@code tabletType} in {@code srvKeyspace}.
+   *
+   * @throws SQLDataException if no shards serve that tablet type.
+   */
+  public static ShardMap create(String keyspace, SrvKeyspace srvKeyspace, TabletType tabletType)
+      throws SQLDataException {
+    ShardMap shardMap = createAll(keyspace, srvKeyspace).get(checkNotNull(tabletType));
+    if (shardMap == null) {
+      throw new SQLDataException(
+          "no shards serve tablet type " + tabletType + " in keyspace " + keyspace);
+    }
+    return shardMap;
+  }
+
+  /**
+   * Builds the map of each tablet type served in {@code srvKeyspace}.
+   */
+  static ImmutableMap<TabletType, ShardMap> createAll(String keyspace, SrvKeyspace srvKeyspace) {
+    checkNotNull(keyspace);
+    ImmutableMap.Builder<TabletType, ShardMap> shardMaps = ImmutableMap.builder();
+    for (KeyspacePartition partition : srvKeyspace.getPartitionsList()) {
+      shardMaps.put(partition.getServedType(),
+          new ShardMap(keyspace, partition.getServedType(), partition.getShardReferencesList()));
+    }
+    return shardMaps.build();
+  }
+
+  public String getKeyspace() {
+    return keyspace;
+  }
+
+  public TabletType getTabletType() {
+    return tabletType;
+  }
+
+  /**
+   * Returns the shard names, ordered by key range.
+   */
+  public List<String> getShards() {
+    return ImmutableList.copyOf(shards);
+  }
+
+  /**
+   * Returns the shard whose key range contains {@code keyspaceId}, or {@code null} if there is
+   * none, e.g. in the middle of a resharding that left a gap.
+   */
+  @Nullable
+  public String getShard(byte[] keyspaceId) {
+    checkNotNull(keyspaceId);
+    // Find the last shard that starts at or before the keyspace id.
+    int low = 0;
+    int high = starts.length - 1;
+    int found = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (KEYSPACE_ID_ORDER.compare(starts[mid], keyspaceId) <= 0) {
+        found = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (found < 0) {
+      return null;
+    }
+    byte[] end = ends[found];
+    if (end.length > 0 && KEYSPACE_ID_ORDER.compare(keyspaceId, end) >= 0) {
+      return null;
+    }
+    return shards[found];
+  }
+
+  /**
+   * Returns the shards whose key range overlaps any of {@code keyRanges}, ordered by key range.
+   * These are the shards vtgate sends a query for those key ranges to.
+   */
+  public List<String> getShards(Iterable<? extends KeyRange> keyRanges) {
+    List<String> overlapping = new ArrayList<>();
+    for (int i = 0; i < shards.length; i++) {
+      for (KeyRange keyRange : keyRanges) {
+        byte[] start = keyRange.getStart().toByteArray();
+        byte[] end = keyRange.getEnd().toByteArray();
+        if ((end.length == 0 || KEYSPACE_ID_ORDER.compare(starts[i], end) < 0)
+            && (ends[i].length == 0 || KEYSPACE_ID_ORDER.compare(start, ends[i]) < 0)) {
+          overlapping.add(shards[i]);
+          break;
+        }
+      }
+    }
+    return overlapping;
+  }
+
+  /**
+   * Groups keyspace ids by the shard that serves them. Both the shards and the keyspace ids within
+   * each shard keep the order in which they first appear in {@code keyspaceIds}.
+   *
+   * @throws SQLDataException if a keyspace id isn't served by any shard.
+   */
+  public Map<String, List<byte[]>> groupByShard(Iterable<byte[]> keyspaceIds)
+      throws SQLDataException {
+    Map<String, List<byte[]>> groups = new LinkedHashMap<>();
+    for (byte[] keyspaceId : keyspaceIds) {
+      String shard = getShard(keyspaceId);
+      if (shard == null) {
+        throw new SQLDataException("no shard in keyspace " + keyspace + " serves keyspace id "
+            + Arrays.toString(keyspaceId));
+      }
+      List<byte[]> group = groups.get(shard);
+      if (group == null) {
+        group = new ArrayList<>();
+        groups.put(shard, group);
+      }
+      group.add(keyspaceId);
+    }
+    return groups;
+  }
+}
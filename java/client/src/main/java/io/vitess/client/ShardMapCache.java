@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.base.Function;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.vitess.proto.Topodata.SrvKeyspace;
+import io.vitess.proto.Topodata.TabletType;
+import io.vitess.proto.Vtrpc;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.Duration;
+
+/**
+ * Caches the {@link SrvKeyspace} of each keyspace, so that callers can route keyspace ids to
+ * shards with a {@link ShardMap} without asking vtgate every time.
+ *
+ * <p>Entries are refreshed in the background once they are older than the refresh interval:
+ * the lookup that notices it still returns the old map immediately, and later lookups see the new
+ * one once {@link VTGateConn#getSrvKeyspace} returns. Lookups never block, except for the first
+ * one for a keyspace.
+ *
+ * <p>The routing changes when a keyspace is resharded. Queries sent to a shard that doesn't serve
+ * their keyspace ids anymore fail with a {@link RpcErrorException} with code
+ * {@code FAILED_PRECONDITION}, which is also what vtgate itself re-resolves keyspace ids on. Pass such errors to
+ * {@link #invalidateIfRoutingError(String, Throwable)}, or wrap the call's future with
+ * {@link #invalidateOnRoutingError(String, ListenableFuture)}, so the next lookup fetches the new
+ * routing.
+ */
+@ThreadSafe
+public class ShardMapCache {
+  private final VTGateConn conn;
+  private final Duration timeout;
+  private final LoadingCache<String, ImmutableMap<TabletType, ShardMap>> cache;
+
+  /**
+   * @param conn The connection to fetch each {@link SrvKeyspace} with.
+   * @param refreshInterval How long cached routing is used before it is refreshed.
+   * @param timeout The deadline for each {@link VTGateConn#getSrvKeyspace} call.
+   */
+  public ShardMapCache(VTGateConn conn, Duration refreshInterval, Duration timeout) {
+    this.conn = checkNotNull(conn);
+    this.timeout = checkNotNull(timeout);
+    this.cache = CacheBuilder.newBuilder()
+        .refreshAfterWrite(refreshInterval.getMillis(), TimeUnit.MILLISECONDS)
+        .build(new CacheLoader<String, ImmutableMap<TabletType, ShardMap>>() {
+          @Override
+          public ImmutableMap<TabletType, ShardMap> load(String keyspace) throws SQLException {
+            return fetch(keyspace).checkedGet();
+          }
+
+          @Override
+          public ListenableFuture<ImmutableMap<TabletType, ShardMap>> reload(String keyspace,
+              ImmutableMap<TabletType, ShardMap> oldValue) throws SQLException {
+            // Refresh without blocking the lookup that triggered it.
+            return fetch(keyspace);
+          }
+        });
+  }
+
+  /**
+   * Returns the shard map of {@code keyspace} for {@code tabletType}, fetching it on first use.
+   *
+   * @throws SQLDataException if no shards serve that tablet type.
+   */
+  public ShardMap getShardMap(String keyspace, TabletType tabletType) throws SQLException {
+    ImmutableMap<TabletType, ShardMap> shardMaps;
+    try {
+      shardMaps = cache.get(checkNotNull(keyspace));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      }
+      throw new SQLNonTransientException("failed to fetch SrvKeyspace for " + keyspace, e);
+    }
+    ShardMap shardMap = shardMaps.get(checkNotNull(tabletType));
+    if (shardMap == null) {
+      throw new SQLDataException(
+          "no shards serve tablet type " + tabletType + " in keyspace " + keyspace);
+    }
+    return shardMap;
+  }
+
+  /**
+   * Drops the cached routing of {@code keyspace}, so the next lookup fetches it again.
+   */
+  public void invalidate(String keyspace) {
+    cache.invalidate(checkNotNull(keyspace));
+  }
+
+  /**
+   * Drops the cached routing of {@code keyspace} if {@code error} means that a query was sent to a
+   * shard that doesn't serve it anymore.
+   *
+   * @return whether the routing was dropped.
+   */
+  public boolean invalidateIfRoutingError(String keyspace, Throwable error) {
+    if (isRoutingError(error)) {
+      invalidate(keyspace);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns {@code future}, after arranging for the cached routing of {@code keyspace} to be
+   * dropped if it fails with a routing error.
+   */
+  public <T> SQLFuture<T> invalidateOnRoutingError(final String keyspace,
+      ListenableFuture<T> future) {
+    Futures.addCallback(future, new FutureCallback<T>() {
+      @Override
+      public void onSuccess(T result) {}
+
+      @Override
+      public void onFailure(Throwable t) {
+        invalidateIfRoutingError(keyspace, t);
+      }
+    }, directExecutor());
+    return new SQLFuture<T>(future);
+  }
+
+  /**
+   * Returns whether {@code error} is the {@code FAILED_PRECONDITION} error that a tablet returns
+   * when it is asked to serve a query that was routed with out-of-date shard information.
+   * That error may be wrapped, e.g. by a failed future, so this looks at its causes too.
+   */
+  static boolean isRoutingError(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof RpcErrorException
+          && ((RpcErrorException) t).getCode() == Vtrpc.Code.FAILED_PRECONDITION) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private SQLFuture<ImmutableMap<TabletType, ShardMap>> fetch(final String keyspace)
+      throws SQLException {
+    return new SQLFuture<ImmutableMap<TabletType, ShardMap>>(Futures.transform(
+        conn.getSrvKeyspace(Context.getDefault().withDeadlineAfter(timeout), keyspace),
+        new Function<SrvKeyspace, ImmutableMap<TabletType, ShardMap>>() {
+          @Override
+          public ImmutableMap<TabletType, ShardMap> apply(SrvKeyspace srvKeyspace) {
+            return ShardMap.createAll(keyspace, srvKeyspace);
+          }
+        },
+        directExecutor()));
+  }
+}
@@ -28,8 +28,8 @@ import java.util.NoSuchElementException;
  * or there are no more results. Also, unlike Iterator, these methods
  * can throw SQLException.
  *
- * <p>The {@link #close()} method should be called when done to free up threads that may be blocking
- * on the streaming connection.
+ * <p>The {@link #close()} method should be called when done. Closing a stream before it has
+ * completed cancels it, so the server stops sending the results that are left.
  *
  * @param <E> the type of result returned by the iterator,
  *     e.g. {@link io.vitess.proto.Query.QueryResult QueryResult}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import java.sql.SQLException;
+
+/**
+ * Receives the results of an asynchronous streaming call, as an alternative to the blocking
+ * {@link StreamIterator}.
+ *
+ * <p>This follows the shape of {@code java.util.concurrent.Flow.Subscriber}: nothing is
+ * delivered until the subscriber asks for it with {@link StreamSubscription#request(long)}, and
+ * the call ends with exactly one of {@link #onComplete()} or {@link #onError(SQLException)},
+ * unless it was cancelled.
+ *
+ * <p>Methods are called one at a time, but not necessarily from the same thread. They are usually
+ * called from the transport's threads, so they must not block.
+ *
+ * @param <E> the type of result delivered to the subscriber,
+ *     e.g. {@link io.vitess.proto.Query.QueryResult QueryResult}
+ */
+public interface StreamSubscriber<E> {
+  /**
+   * Called once, before any other method, with the subscription used to request results or
+   * cancel the call.
+   */
+  void onSubscribe(StreamSubscription subscription);
+
+  /**
+   * Called with the next result, at most as many times as were requested.
+   */
+  void onNext(E result);
+
+  /**
+   * Called when the call fails. No other method is called after this.
+   */
+  void onError(SQLException error);
+
+  /**
+   * Called when all results have been delivered. No other method is called after this.
+   */
+  void onComplete();
+}
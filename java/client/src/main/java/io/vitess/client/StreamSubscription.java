@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+/**
+ * A handle that a {@link StreamSubscriber} uses to control the flow of results from an
+ * asynchronous streaming call.
+ *
+ * <p>This follows the shape of {@code java.util.concurrent.Flow.Subscription}, so it can be
+ * adapted to any Reactive Streams library without buffering.
+ */
+public interface StreamSubscription {
+  /**
+   * Adds {@code n} to the number of results the subscriber is ready to receive.
+   *
+   * <p>Results are only requested from the server as this demand allows, so a subscriber that
+   * stops requesting also stops the server through the transport's flow control.
+   *
+   * @param n the number of additional results to deliver. {@link Long#MAX_VALUE} means unbounded.
+   * @throws IllegalArgumentException if {@code n} is not positive.
+   */
+  void request(long n);
+
+  /**
+   * Cancels the call. No more results are delivered after this returns, except possibly
+   * one that is already being delivered on another thread.
+   */
+  void cancel();
+}
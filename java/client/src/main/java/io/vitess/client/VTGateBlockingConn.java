@@ -163,6 +163,22 @@ public class VTGateBlockingConn implements Closeable {
     return conn.streamExecuteKeyRanges(ctx, query, keyspace, keyRanges, bindVars, tabletType, includedFields);
   }
 
+  public Cursor streamExecuteShardsResumable(Context ctx, String query, String resumeQuery,
+      String keyspace, Iterable<String> shards, Map<String, ?> bindVars, TabletType tabletType,
+      Query.ExecuteOptions.IncludedFields includedFields, String keyColumn, int maxRetries)
+      throws SQLException {
+    return conn.streamExecuteShardsResumable(ctx, query, resumeQuery, keyspace, shards, bindVars,
+        tabletType, includedFields, keyColumn, maxRetries);
+  }
+
+  public Cursor streamExecuteKeyRangesResumable(Context ctx, String query, String resumeQuery,
+      ShardMap shardMap, Iterable<? extends KeyRange> keyRanges, Map<String, ?> bindVars,
+      Query.ExecuteOptions.IncludedFields includedFields, String keyColumn, int maxRetries)
+      throws SQLException {
+    return conn.streamExecuteKeyRangesResumable(ctx, query, resumeQuery, shardMap, keyRanges,
+        bindVars, includedFields, keyColumn, maxRetries);
+  }
+
   public VTGateBlockingTx begin(Context ctx) throws SQLException {
     return begin(ctx, false);
   }
@@ -171,6 +187,14 @@ public class VTGateBlockingConn implements Closeable {
     return new VTGateBlockingTx(conn.begin(ctx, singleDB).checkedGet());
   }
 
+  public VTGateBlockingTx beginLazily() {
+    return beginLazily(false);
+  }
+
+  public VTGateBlockingTx beginLazily(boolean singleDB) {
+    return new VTGateBlockingTx(conn.beginLazily(singleDB));
+  }
+
   public List<SplitQueryResponse.Part> splitQuery(
       Context ctx,
       String keyspace,
@@ -16,6 +16,7 @@
 
 package io.vitess.client;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.util.concurrent.Futures.transformAsync;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
@@ -26,9 +27,14 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.vitess.client.cursor.Cursor;
 import io.vitess.client.cursor.CursorWithError;
+import io.vitess.client.cursor.OrderBy;
+import io.vitess.client.cursor.OrderedMergeCursor;
+import io.vitess.client.cursor.ResumableCursor;
 import io.vitess.client.cursor.SimpleCursor;
 import io.vitess.client.cursor.StreamCursor;
+import io.vitess.client.cursor.UnorderedMergeCursor;
 import io.vitess.proto.Query;
+import io.vitess.proto.Query.QueryResult;
 import io.vitess.proto.Query.SplitQueryRequest.Algorithm;
 import io.vitess.proto.Topodata.KeyRange;
 import io.vitess.proto.Topodata.SrvKeyspace;
@@ -54,6 +60,7 @@ import io.vitess.proto.Vtgate.ExecuteShardsRequest;
 import io.vitess.proto.Vtgate.ExecuteShardsResponse;
 import io.vitess.proto.Vtgate.GetSrvKeyspaceRequest;
 import io.vitess.proto.Vtgate.GetSrvKeyspaceResponse;
+import io.vitess.proto.Vtgate.Session;
 import io.vitess.proto.Vtgate.SplitQueryRequest;
 import io.vitess.proto.Vtgate.SplitQueryResponse;
 import io.vitess.proto.Vtgate.StreamExecuteKeyRangesRequest;
@@ -65,6 +72,8 @@ import java.io.IOException;
 import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -82,6 +91,12 @@ import javax.annotation.Nullable;
  * you want synchronous calls.
  */
 public final class VTGateConn implements Closeable {
+  /**
+   * The bind variable holding the ordering key of the last row read, when a resumable stream is
+   * resumed. See {@link #streamExecuteShardsResumable}.
+   */
+  public static final String RESUME_KEY = "resume_key";
+
   private final RpcClient client;
   private final String keyspace;
 
@@ -385,6 +400,28 @@ public final class VTGateConn implements Closeable {
 
   public Cursor streamExecute(Context ctx, String query, @Nullable Map<String, ?> bindVars,
       TabletType tabletType, Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
+    return new StreamCursor(client.streamExecute(ctx,
+        newStreamExecuteRequest(ctx, query, bindVars, tabletType, includedFields)));
+  }
+
+  /**
+   * Starts a streaming query without blocking any thread on its results.
+   *
+   * <p>Each chunk of results the server sends is delivered to the subscriber as a {@link Cursor}
+   * of its own, as the subscriber requests them. Every chunk carries the fields of the stream,
+   * although the server only sends them with the first one. The first chunk may have no rows.
+   */
+  public void streamExecuteAsync(Context ctx, String query, @Nullable Map<String, ?> bindVars,
+      TabletType tabletType, Query.ExecuteOptions.IncludedFields includedFields,
+      StreamSubscriber<Cursor> subscriber) throws SQLException {
+    client.streamExecuteAsync(ctx,
+        newStreamExecuteRequest(ctx, query, bindVars, tabletType, includedFields),
+        new CursorSubscriber(checkNotNull(subscriber)));
+  }
+
+  private StreamExecuteRequest newStreamExecuteRequest(Context ctx, String query,
+      @Nullable Map<String, ?> bindVars, TabletType tabletType,
+      Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
     StreamExecuteRequest.Builder requestBuilder =
         StreamExecuteRequest.newBuilder()
             .setQuery(Proto.bindQuery(checkNotNull(query), bindVars))
@@ -397,7 +434,7 @@ public final class VTGateConn implements Closeable {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
-    return new StreamCursor(client.streamExecute(ctx, requestBuilder.build()));
+    return requestBuilder.build();
   }
 
   public Cursor streamExecuteShards(Context ctx, String query, String keyspace,
@@ -419,6 +456,74 @@ public final class VTGateConn implements Closeable {
     return new StreamCursor(client.streamExecuteShards(ctx, requestBuilder.build()));
   }
 
+  /**
+   * Streams a query from each shard over its own call, and merges the results into one cursor.
+   *
+   * <p>Unlike {@link #streamExecuteShards}, which vtgate serves one shard after the other in a
+   * single stream, this reads from the shards in parallel. To cover a whole keyspace, pass the
+   * shards of a {@link ShardMap}.
+   *
+   * <p>If {@code orderBy} is empty, rows are returned in whatever order they arrive, and at most
+   * {@code maxConcurrentShards} shards are streamed at once. Otherwise the query must sort its
+   * results by the same columns, and the streams are merged in that order. An ordered merge needs
+   * the next row of every shard, so all shards are streamed at once and
+   * {@code maxConcurrentShards} must be at least the number of shards. The memory used is then
+   * bounded by the prefetch of each stream (see {@link Context#withStreamPrefetch(int)}).
+   */
+  public Cursor streamExecuteShardsParallel(final Context ctx, String query, String keyspace,
+      Iterable<String> shards, @Nullable Map<String, ?> bindVars, TabletType tabletType,
+      Query.ExecuteOptions.IncludedFields includedFields, List<OrderBy> orderBy,
+      int maxConcurrentShards) throws SQLException {
+    StreamExecuteShardsRequest.Builder requestBuilder = StreamExecuteShardsRequest.newBuilder()
+        .setQuery(Proto.bindQuery(checkNotNull(query), bindVars))
+        .setKeyspace(checkNotNull(keyspace))
+        .setTabletType(checkNotNull(tabletType))
+        .setOptions(Query.ExecuteOptions.newBuilder()
+            .setIncludedFields(includedFields));
+
+    if (ctx.getCallerId() != null) {
+      requestBuilder.setCallerId(ctx.getCallerId());
+    }
+
+    List<StreamExecuteShardsRequest> requests = new ArrayList<>();
+    for (String shard : checkNotNull(shards)) {
+      requests.add(requestBuilder.clearShards().addShards(shard).build());
+    }
+
+    if (checkNotNull(orderBy).isEmpty()) {
+      List<UnorderedMergeCursor.Source> sources = new ArrayList<>();
+      for (final StreamExecuteShardsRequest request : requests) {
+        sources.add(new UnorderedMergeCursor.Source() {
+          @Override
+          public void start(StreamSubscriber<QueryResult> subscriber) throws SQLException {
+            client.streamExecuteShardsAsync(ctx, request, subscriber);
+          }
+        });
+      }
+      return new UnorderedMergeCursor(sources, maxConcurrentShards);
+    }
+
+    checkArgument(maxConcurrentShards >= requests.size(),
+        "an ordered merge streams all %s shards at once, but maxConcurrentShards is %s",
+        requests.size(), maxConcurrentShards);
+    List<Cursor> cursors = new ArrayList<>();
+    try {
+      for (StreamExecuteShardsRequest request : requests) {
+        cursors.add(new StreamCursor(client.streamExecuteShards(ctx, request)));
+      }
+    } catch (SQLException e) {
+      for (Cursor cursor : cursors) {
+        try {
+          cursor.close();
+        } catch (Exception closeError) {
+          e.addSuppressed(closeError);
+        }
+      }
+      throw e;
+    }
+    return new OrderedMergeCursor(cursors, orderBy);
+  }
+
   public Cursor streamExecuteKeyspaceIds(Context ctx, String query, String keyspace,
       Iterable<byte[]> keyspaceIds, @Nullable Map<String, ?> bindVars, TabletType tabletType,
       Query.ExecuteOptions.IncludedFields includedFields)
@@ -459,6 +564,84 @@ public final class VTGateConn implements Closeable {
     return new StreamCursor(client.streamExecuteKeyRanges(ctx, requestBuilder.build()));
   }
 
+  /**
+   * Like {@link #streamExecuteShards}, but resumes the stream after transient errors, such as
+   * vtgate becoming unavailable, instead of failing it. See {@link ResumableCursor}.
+   *
+   * <p>{@code query} must sort its results by {@code keyColumn}, whose values must be unique.
+   * {@code resumeQuery} is the same query, restricted to the rows after the bind variable
+   * {@value #RESUME_KEY}. For example:
+   *
+   * <pre>
+   * query:       SELECT id, name FROM t ORDER BY id
+   * resumeQuery: SELECT id, name FROM t WHERE id &gt; :resume_key ORDER BY id
+   * </pre>
+   *
+   * <p>vtgate interleaves the rows of the shards of a single stream as they arrive, so such a
+   * stream is only sorted within each shard and can't be resumed after one key. Instead, each
+   * shard is streamed over its own call and resumed on its own, and the shards are merged by
+   * {@code keyColumn} with an {@link OrderedMergeCursor}. All shards are streamed at once.
+   *
+   * <p>A resumed stream is a new call, which the {@link RpcClient} may send to another vtgate. The
+   * deadline of {@code ctx} still applies to all calls together, so set a stream idle timeout
+   * instead (see {@link Context#withStreamIdleTimeout}). The stream isn't resumed once that
+   * deadline has passed.
+   *
+   * @param maxRetries How many times in a row to try to resume the stream of each shard.
+   */
+  public Cursor streamExecuteShardsResumable(final Context ctx, final String query,
+      final String resumeQuery, final String keyspace, Iterable<String> shards,
+      @Nullable final Map<String, ?> bindVars, final TabletType tabletType,
+      final Query.ExecuteOptions.IncludedFields includedFields, String keyColumn, int maxRetries)
+      throws SQLException {
+    checkNotNull(query);
+    checkNotNull(resumeQuery);
+    List<Cursor> cursors = new ArrayList<>();
+    for (String shard : checkNotNull(shards)) {
+      final List<String> oneShard = Collections.singletonList(checkNotNull(shard));
+      cursors.add(new ResumableCursor(new ResumableCursor.Source() {
+        @Override
+        public Cursor open(@Nullable Query.BindVariable after) throws SQLException {
+          if (after == null) {
+            return streamExecuteShards(ctx, query, keyspace, oneShard, bindVars, tabletType,
+                includedFields);
+          }
+          Map<String, Object> resumeBindVars = new HashMap<>();
+          if (bindVars != null) {
+            resumeBindVars.putAll(bindVars);
+          }
+          resumeBindVars.put(RESUME_KEY, after);
+          return streamExecuteShards(ctx, resumeQuery, keyspace, oneShard, resumeBindVars,
+              tabletType, includedFields);
+        }
+      }, keyColumn, maxRetries, ctx.getDeadline()));
+    }
+    checkArgument(!cursors.isEmpty(), "no shards to stream");
+    if (cursors.size() == 1) {
+      return cursors.get(0);
+    }
+    return new OrderedMergeCursor(cursors, Collections.singletonList(OrderBy.asc(keyColumn)));
+  }
+
+  /**
+   * Like {@link #streamExecuteShardsResumable}, for the shards of {@code shardMap} that serve
+   * {@code keyRanges}.
+   *
+   * @throws SQLDataException if no shard serves the key ranges.
+   */
+  public Cursor streamExecuteKeyRangesResumable(Context ctx, String query, String resumeQuery,
+      ShardMap shardMap, Iterable<? extends KeyRange> keyRanges,
+      @Nullable Map<String, ?> bindVars, Query.ExecuteOptions.IncludedFields includedFields,
+      String keyColumn, int maxRetries) throws SQLException {
+    List<String> shards = shardMap.getShards(checkNotNull(keyRanges));
+    if (shards.isEmpty()) {
+      throw new SQLDataException("no shards in keyspace " + shardMap.getKeyspace()
+          + " serve the given key ranges");
+    }
+    return streamExecuteShardsResumable(ctx, query, resumeQuery, shardMap.getKeyspace(), shards,
+        bindVars, shardMap.getTabletType(), includedFields, keyColumn, maxRetries);
+  }
+
   public SQLFuture<VTGateTx> begin(Context ctx) throws SQLException {
     return begin(ctx, false);
   }
@@ -481,6 +664,25 @@ public final class VTGateConn implements Closeable {
             directExecutor()));
   }
 
+  /**
+   * Starts a transaction without a round trip to VTGate.
+   *
+   * <p>
+   * VTGate's Begin only hands back a session marked as in transaction; the shard transactions are
+   * opened by the first statement that runs in that session. This builds the same session locally,
+   * so the first statement of the transaction is also its first RPC. Any error Begin would have
+   * returned, such as a multi-db transaction being disallowed, comes back from that statement
+   * instead.
+   */
+  public VTGateTx beginLazily() {
+    return beginLazily(false);
+  }
+
+  public VTGateTx beginLazily(boolean singleDB) {
+    return new VTGateTx(client,
+        Session.newBuilder().setInTransaction(true).setSingleDb(singleDB).build(), keyspace);
+  }
+
   public SQLFuture<List<SplitQueryResponse.Part>> splitQuery(Context ctx, String keyspace,
       String query, @Nullable Map<String, ?> bindVars, Iterable<String> splitColumns,
       int splitCount, int numRowsPerQueryPart, Algorithm algorithm) throws SQLException {
@@ -529,4 +731,40 @@ public final class VTGateConn implements Closeable {
   public void close() throws IOException {
     client.close();
   }
+
+  /**
+   * Wraps each streamed {@link QueryResult} in a {@link Cursor} with the fields of the stream.
+   */
+  private static class CursorSubscriber implements StreamSubscriber<QueryResult> {
+    private final StreamSubscriber<Cursor> subscriber;
+    private List<Query.Field> fields = Collections.emptyList();
+
+    CursorSubscriber(StreamSubscriber<Cursor> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void onSubscribe(StreamSubscription subscription) {
+      subscriber.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(QueryResult result) {
+      // StreamSubscriber methods are called one at a time, so this needs no synchronization.
+      if (result.getFieldsCount() > 0) {
+        fields = result.getFieldsList();
+      }
+      subscriber.onNext(new SimpleCursor(result, fields));
+    }
+
+    @Override
+    public void onError(SQLException error) {
+      subscriber.onError(error);
+    }
+
+    @Override
+    public void onComplete() {
+      subscriber.onComplete();
+    }
+  }
 }
@@ -24,6 +24,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import io.vitess.client.cursor.Cursor;
 import io.vitess.client.cursor.CursorWithError;
 import io.vitess.client.cursor.SimpleCursor;
@@ -70,6 +71,13 @@ import javax.annotation.Nullable;
  * complete before calling any other methods on that {@code VTGateTx} instance. An {@link
  * IllegalStateException} will be thrown if this constraint is violated.
  *
+ * <p>In {@linkplain #setPipelined(boolean) pipelined} mode, that constraint is lifted: calls can be
+ * made back to back, and each one is queued behind the previous one. A queued call is sent from the
+ * completion of the previous call, with the session that call returned, so the calls still reach
+ * VTGate one at a time and in order, but the caller doesn't have to wait in between. If a call
+ * fails, the calls queued behind it fail with the same error without being sent, except for
+ * {@link #rollback(Context)}, which is always sent.
+ *
  * <p>All operations on {@code VTGateTx} are asynchronous, including those whose ultimate return
  * type is {@link Void}, such as {@link #commit(Context)} and {@link #rollback(Context)}. You must
  * still wait for the futures returned by these methods to complete and check the error on them
@@ -84,6 +92,12 @@ public class VTGateTx {
   private final String keyspace;
   private Session session;
   private SQLFuture<?> lastCall;
+  private boolean pipelined;
+
+  /** Sends one request, with the session it was given. */
+  private interface Rpc<T> {
+    ListenableFuture<T> call(Session session) throws SQLException;
+  }
 
   VTGateTx(RpcClient client, Session session, String keyspace) {
     this.client = checkNotNull(client);
@@ -91,15 +105,26 @@ public class VTGateTx {
     setSession(checkNotNull(session));
   }
 
-  public synchronized SQLFuture<Cursor> execute(Context ctx, String query, Map<String, ?> bindVars,
-      TabletType tabletType, Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
-    checkCallIsAllowed("execute");
-    ExecuteRequest.Builder requestBuilder =
+  /**
+   * Sets whether calls can be made while the previous one is still in flight. See the class
+   * documentation for how queued calls behave.
+   */
+  public synchronized void setPipelined(boolean pipelined) {
+    this.pipelined = pipelined;
+  }
+
+  public synchronized boolean isPipelined() {
+    return pipelined;
+  }
+
+  public synchronized SQLFuture<Cursor> execute(final Context ctx, String query,
+      Map<String, ?> bindVars, TabletType tabletType,
+      Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
+    final ExecuteRequest.Builder requestBuilder =
         ExecuteRequest.newBuilder()
             .setQuery(Proto.bindQuery(query, bindVars))
             .setKeyspaceShard(keyspace)
             .setTabletType(tabletType)
-            .setSession(session)
             .setOptions(Query.ExecuteOptions.newBuilder()
                 .setIncludedFields(includedFields));
 
@@ -107,10 +132,16 @@ public class VTGateTx {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
+    Rpc<ExecuteResponse> rpc = new Rpc<ExecuteResponse>() {
+      @Override
+      public ListenableFuture<ExecuteResponse> call(Session session) throws SQLException {
+        return client.execute(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<Cursor> call =
         new SQLFuture<>(
             transformAsync(
-                client.execute(ctx, requestBuilder.build()),
+                startCall("execute", false, rpc),
                 new AsyncFunction<ExecuteResponse, Cursor>() {
                   @Override
                   public ListenableFuture<Cursor> apply(ExecuteResponse response) throws Exception {
@@ -124,16 +155,14 @@ public class VTGateTx {
     return call;
   }
 
-  public synchronized SQLFuture<Cursor> executeShards(Context ctx, String query, String keyspace,
-      Iterable<String> shards, Map<String, ?> bindVars, TabletType tabletType,
+  public synchronized SQLFuture<Cursor> executeShards(final Context ctx, String query,
+      String keyspace, Iterable<String> shards, Map<String, ?> bindVars, TabletType tabletType,
       Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
-    checkCallIsAllowed("executeShards");
-    ExecuteShardsRequest.Builder requestBuilder = ExecuteShardsRequest.newBuilder()
+    final ExecuteShardsRequest.Builder requestBuilder = ExecuteShardsRequest.newBuilder()
         .setQuery(Proto.bindQuery(query, bindVars))
         .setKeyspace(keyspace)
         .addAllShards(shards)
         .setTabletType(tabletType)
-        .setSession(session)
         .setOptions(Query.ExecuteOptions.newBuilder()
             .setIncludedFields(includedFields));
 
@@ -141,10 +170,16 @@ public class VTGateTx {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
+    Rpc<ExecuteShardsResponse> rpc = new Rpc<ExecuteShardsResponse>() {
+      @Override
+      public ListenableFuture<ExecuteShardsResponse> call(Session session) throws SQLException {
+        return client.executeShards(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<Cursor> call =
         new SQLFuture<>(
             transformAsync(
-                client.executeShards(ctx, requestBuilder.build()),
+                startCall("executeShards", false, rpc),
                 new AsyncFunction<ExecuteShardsResponse, Cursor>() {
                   @Override
                   public ListenableFuture<Cursor> apply(ExecuteShardsResponse response)
@@ -159,17 +194,15 @@ public class VTGateTx {
     return call;
   }
 
-  public synchronized SQLFuture<Cursor> executeKeyspaceIds(Context ctx, String query,
+  public synchronized SQLFuture<Cursor> executeKeyspaceIds(final Context ctx, String query,
       String keyspace, Iterable<byte[]> keyspaceIds, Map<String, ?> bindVars, TabletType tabletType,
       Query.ExecuteOptions.IncludedFields includedFields)
       throws SQLException {
-    checkCallIsAllowed("executeKeyspaceIds");
-    ExecuteKeyspaceIdsRequest.Builder requestBuilder = ExecuteKeyspaceIdsRequest.newBuilder()
+    final ExecuteKeyspaceIdsRequest.Builder requestBuilder = ExecuteKeyspaceIdsRequest.newBuilder()
         .setQuery(Proto.bindQuery(query, bindVars))
         .setKeyspace(keyspace)
         .addAllKeyspaceIds(Iterables.transform(keyspaceIds, Proto.BYTE_ARRAY_TO_BYTE_STRING))
         .setTabletType(tabletType)
-        .setSession(session)
         .setOptions(Query.ExecuteOptions.newBuilder()
             .setIncludedFields(includedFields));
 
@@ -177,10 +210,17 @@ public class VTGateTx {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
+    Rpc<ExecuteKeyspaceIdsResponse> rpc = new Rpc<ExecuteKeyspaceIdsResponse>() {
+      @Override
+      public ListenableFuture<ExecuteKeyspaceIdsResponse> call(Session session)
+          throws SQLException {
+        return client.executeKeyspaceIds(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<Cursor> call =
         new SQLFuture<>(
             transformAsync(
-                client.executeKeyspaceIds(ctx, requestBuilder.build()),
+                startCall("executeKeyspaceIds", false, rpc),
                 new AsyncFunction<ExecuteKeyspaceIdsResponse, Cursor>() {
                   @Override
                   public ListenableFuture<Cursor> apply(ExecuteKeyspaceIdsResponse response)
@@ -195,17 +235,15 @@ public class VTGateTx {
     return call;
   }
 
-  public synchronized SQLFuture<Cursor> executeKeyRanges(Context ctx, String query, String keyspace,
-      Iterable<? extends KeyRange> keyRanges, Map<String, ?> bindVars, TabletType tabletType,
-      Query.ExecuteOptions.IncludedFields includedFields)
+  public synchronized SQLFuture<Cursor> executeKeyRanges(final Context ctx, String query,
+      String keyspace, Iterable<? extends KeyRange> keyRanges, Map<String, ?> bindVars,
+      TabletType tabletType, Query.ExecuteOptions.IncludedFields includedFields)
       throws SQLException {
-    checkCallIsAllowed("executeKeyRanges");
-    ExecuteKeyRangesRequest.Builder requestBuilder = ExecuteKeyRangesRequest.newBuilder()
+    final ExecuteKeyRangesRequest.Builder requestBuilder = ExecuteKeyRangesRequest.newBuilder()
         .setQuery(Proto.bindQuery(query, bindVars))
         .setKeyspace(keyspace)
         .addAllKeyRanges(keyRanges)
         .setTabletType(tabletType)
-        .setSession(session)
         .setOptions(Query.ExecuteOptions.newBuilder()
             .setIncludedFields(includedFields));
 
@@ -213,10 +251,16 @@ public class VTGateTx {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
+    Rpc<ExecuteKeyRangesResponse> rpc = new Rpc<ExecuteKeyRangesResponse>() {
+      @Override
+      public ListenableFuture<ExecuteKeyRangesResponse> call(Session session) throws SQLException {
+        return client.executeKeyRanges(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<Cursor> call =
         new SQLFuture<>(
             transformAsync(
-                client.executeKeyRanges(ctx, requestBuilder.build()),
+                startCall("executeKeyRanges", false, rpc),
                 new AsyncFunction<ExecuteKeyRangesResponse, Cursor>() {
                   @Override
                   public ListenableFuture<Cursor> apply(ExecuteKeyRangesResponse response)
@@ -231,18 +275,17 @@ public class VTGateTx {
     return call;
   }
 
-  public synchronized SQLFuture<Cursor> executeEntityIds(Context ctx, String query, String keyspace,
-      String entityColumnName, Map<byte[], ?> entityKeyspaceIds, Map<String, ?> bindVars,
-      TabletType tabletType, Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
-    checkCallIsAllowed("executeEntityIds");
-    ExecuteEntityIdsRequest.Builder requestBuilder = ExecuteEntityIdsRequest.newBuilder()
+  public synchronized SQLFuture<Cursor> executeEntityIds(final Context ctx, String query,
+      String keyspace, String entityColumnName, Map<byte[], ?> entityKeyspaceIds,
+      Map<String, ?> bindVars, TabletType tabletType,
+      Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
+    final ExecuteEntityIdsRequest.Builder requestBuilder = ExecuteEntityIdsRequest.newBuilder()
         .setQuery(Proto.bindQuery(query, bindVars))
         .setKeyspace(keyspace)
         .setEntityColumnName(entityColumnName)
         .addAllEntityKeyspaceIds(Iterables
             .transform(entityKeyspaceIds.entrySet(), Proto.MAP_ENTRY_TO_ENTITY_KEYSPACE_ID))
         .setTabletType(tabletType)
-        .setSession(session)
         .setOptions(Query.ExecuteOptions.newBuilder()
             .setIncludedFields(includedFields));
 
@@ -250,10 +293,16 @@ public class VTGateTx {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
+    Rpc<ExecuteEntityIdsResponse> rpc = new Rpc<ExecuteEntityIdsResponse>() {
+      @Override
+      public ListenableFuture<ExecuteEntityIdsResponse> call(Session session) throws SQLException {
+        return client.executeEntityIds(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<Cursor> call =
         new SQLFuture<>(
             transformAsync(
-                client.executeEntityIds(ctx, requestBuilder.build()),
+                startCall("executeEntityIds", false, rpc),
                 new AsyncFunction<ExecuteEntityIdsResponse, Cursor>() {
                   @Override
                   public ListenableFuture<Cursor> apply(ExecuteEntityIdsResponse response)
@@ -268,8 +317,8 @@ public class VTGateTx {
     return call;
   }
 
-    public SQLFuture<List<CursorWithError>> executeBatch(Context ctx, List<String> queryList,
-        @Nullable List<Map<String, ?>> bindVarsList, TabletType tabletType,
+    public synchronized SQLFuture<List<CursorWithError>> executeBatch(final Context ctx,
+        List<String> queryList, @Nullable List<Map<String, ?>> bindVarsList, TabletType tabletType,
         Query.ExecuteOptions.IncludedFields includedFields)
         throws SQLException {
         List<Query.BoundQuery> queries = new ArrayList<>();
@@ -284,12 +333,11 @@ public class VTGateTx {
                 bindVarsList == null ? null : bindVarsList.get(i)));
         }
 
-        Vtgate.ExecuteBatchRequest.Builder requestBuilder =
+        final Vtgate.ExecuteBatchRequest.Builder requestBuilder =
             Vtgate.ExecuteBatchRequest.newBuilder()
                 .addAllQueries(checkNotNull(queries))
                 .setKeyspaceShard(keyspace)
                 .setTabletType(checkNotNull(tabletType))
-                .setSession(session)
                 .setOptions(Query.ExecuteOptions.newBuilder()
                     .setIncludedFields(includedFields));
 
@@ -297,9 +345,16 @@ public class VTGateTx {
             requestBuilder.setCallerId(ctx.getCallerId());
         }
 
-    return new SQLFuture<>(
+    Rpc<Vtgate.ExecuteBatchResponse> rpc = new Rpc<Vtgate.ExecuteBatchResponse>() {
+      @Override
+      public ListenableFuture<Vtgate.ExecuteBatchResponse> call(Session session)
+          throws SQLException {
+        return client.executeBatch(ctx, requestBuilder.setSession(session).build());
+      }
+    };
+    SQLFuture<List<CursorWithError>> call = new SQLFuture<>(
         transformAsync(
-            client.executeBatch(ctx, requestBuilder.build()),
+            startCall("executeBatch", false, rpc),
             new AsyncFunction<Vtgate.ExecuteBatchResponse, List<CursorWithError>>() {
               @Override
               public ListenableFuture<List<CursorWithError>> apply(
@@ -311,16 +366,16 @@ public class VTGateTx {
               }
             },
             directExecutor()));
+    lastCall = call;
+    return call;
     }
 
-  public synchronized SQLFuture<List<Cursor>> executeBatchShards(Context ctx,
+  public synchronized SQLFuture<List<Cursor>> executeBatchShards(final Context ctx,
       Iterable<? extends BoundShardQuery> queries, TabletType tabletType,
       Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
-    checkCallIsAllowed("executeBatchShards");
-    ExecuteBatchShardsRequest.Builder requestBuilder = ExecuteBatchShardsRequest.newBuilder()
+    final ExecuteBatchShardsRequest.Builder requestBuilder = ExecuteBatchShardsRequest.newBuilder()
         .addAllQueries(queries)
         .setTabletType(tabletType)
-        .setSession(session)
         .setOptions(Query.ExecuteOptions.newBuilder()
             .setIncludedFields(includedFields));
 
@@ -328,10 +383,17 @@ public class VTGateTx {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
+    Rpc<ExecuteBatchShardsResponse> rpc = new Rpc<ExecuteBatchShardsResponse>() {
+      @Override
+      public ListenableFuture<ExecuteBatchShardsResponse> call(Session session)
+          throws SQLException {
+        return client.executeBatchShards(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<List<Cursor>> call =
         new SQLFuture<>(
             transformAsync(
-                client.executeBatchShards(ctx, requestBuilder.build()),
+                startCall("executeBatchShards", false, rpc),
                 new AsyncFunction<ExecuteBatchShardsResponse, List<Cursor>>() {
                   @Override
                   public ListenableFuture<List<Cursor>> apply(ExecuteBatchShardsResponse response)
@@ -347,15 +409,13 @@ public class VTGateTx {
     return call;
   }
 
-  public synchronized SQLFuture<List<Cursor>> executeBatchKeyspaceIds(Context ctx,
+  public synchronized SQLFuture<List<Cursor>> executeBatchKeyspaceIds(final Context ctx,
       Iterable<? extends BoundKeyspaceIdQuery> queries, TabletType tabletType,
       Query.ExecuteOptions.IncludedFields includedFields) throws SQLException {
-    checkCallIsAllowed("executeBatchKeyspaceIds");
-    ExecuteBatchKeyspaceIdsRequest.Builder requestBuilder = ExecuteBatchKeyspaceIdsRequest
+    final ExecuteBatchKeyspaceIdsRequest.Builder requestBuilder = ExecuteBatchKeyspaceIdsRequest
         .newBuilder()
         .addAllQueries(queries)
         .setTabletType(tabletType)
-        .setSession(session)
         .setOptions(Query.ExecuteOptions.newBuilder()
             .setIncludedFields(includedFields));
 
@@ -363,10 +423,17 @@ public class VTGateTx {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
 
+    Rpc<ExecuteBatchKeyspaceIdsResponse> rpc = new Rpc<ExecuteBatchKeyspaceIdsResponse>() {
+      @Override
+      public ListenableFuture<ExecuteBatchKeyspaceIdsResponse> call(Session session)
+          throws SQLException {
+        return client.executeBatchKeyspaceIds(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<List<Cursor>> call =
         new SQLFuture<>(
             transformAsync(
-                client.executeBatchKeyspaceIds(ctx, requestBuilder.build()),
+                startCall("executeBatchKeyspaceIds", false, rpc),
                 new AsyncFunction<ExecuteBatchKeyspaceIdsResponse, List<Cursor>>() {
                   @Override
                   public ListenableFuture<List<Cursor>> apply(
@@ -382,21 +449,26 @@ public class VTGateTx {
     return call;
   }
 
-    public synchronized SQLFuture<Void> commit(Context ctx) throws SQLException {
+    public synchronized SQLFuture<Void> commit(final Context ctx) throws SQLException {
         return commit(ctx, false);
     }
 
-  public synchronized SQLFuture<Void> commit(Context ctx, boolean atomic) throws SQLException {
-    checkCallIsAllowed("commit");
-    CommitRequest.Builder requestBuilder = CommitRequest.newBuilder().setSession(session)
-                                                        .setAtomic(atomic);
+  public synchronized SQLFuture<Void> commit(final Context ctx, boolean atomic)
+      throws SQLException {
+    final CommitRequest.Builder requestBuilder = CommitRequest.newBuilder().setAtomic(atomic);
     if (ctx.getCallerId() != null) {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
+    Rpc<CommitResponse> rpc = new Rpc<CommitResponse>() {
+      @Override
+      public ListenableFuture<CommitResponse> call(Session session) throws SQLException {
+        return client.commit(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<Void> call =
         new SQLFuture<>(
             transformAsync(
-                client.commit(ctx, requestBuilder.build()),
+                startCall("commit", false, rpc),
                 new AsyncFunction<CommitResponse, Void>() {
                   @Override
                   public ListenableFuture<Void> apply(CommitResponse response) throws Exception {
@@ -409,16 +481,21 @@ public class VTGateTx {
     return call;
   }
 
-  public synchronized SQLFuture<Void> rollback(Context ctx) throws SQLException {
-    checkCallIsAllowed("rollback");
-    RollbackRequest.Builder requestBuilder = RollbackRequest.newBuilder().setSession(session);
+  public synchronized SQLFuture<Void> rollback(final Context ctx) throws SQLException {
+    final RollbackRequest.Builder requestBuilder = RollbackRequest.newBuilder();
     if (ctx.getCallerId() != null) {
       requestBuilder.setCallerId(ctx.getCallerId());
     }
+    Rpc<RollbackResponse> rpc = new Rpc<RollbackResponse>() {
+      @Override
+      public ListenableFuture<RollbackResponse> call(Session session) throws SQLException {
+        return client.rollback(ctx, requestBuilder.setSession(session).build());
+      }
+    };
     SQLFuture<Void> call =
         new SQLFuture<>(
             transformAsync(
-                client.rollback(ctx, requestBuilder.build()),
+                startCall("rollback", true, rpc),
                 new AsyncFunction<RollbackResponse, Void>() {
                   @Override
                   public ListenableFuture<Void> apply(RollbackResponse response) throws Exception {
@@ -431,12 +508,48 @@ public class VTGateTx {
     return call;
   }
 
+  /**
+   * Sends a request with the current session, or in pipelined mode, queues it behind the call in
+   * flight and sends it with the session that call returns.
+   */
+  private synchronized <T> ListenableFuture<T> startCall(final String call,
+      final boolean afterFailure, final Rpc<T> rpc) throws SQLException {
+    final SQLFuture<?> previous = lastCall;
+    if (!pipelined || previous == null || previous.isDone()) {
+      checkCallIsAllowed(call);
+      return rpc.call(session);
+    }
+    final SettableFuture<T> result = SettableFuture.create();
+    previous.addListener(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (!afterFailure) {
+            // Rethrows the error of the previous call, so nothing runs past a failed statement.
+            previous.checkedGet();
+          }
+          synchronized (VTGateTx.this) {
+            checkInTransaction(call);
+            result.setFuture(rpc.call(session));
+          }
+        } catch (Throwable e) {
+          result.setException(e);
+        }
+      }
+    }, directExecutor());
+    return result;
+  }
+
   protected synchronized void checkCallIsAllowed(String call) throws SQLException {
     // Calls are not allowed to overlap.
     if (lastCall != null && !lastCall.isDone()) {
       throw new IllegalStateException("Can't call " + call
           + "() on a VTGateTx instance until the last asynchronous call is done.");
     }
+    checkInTransaction(call);
+  }
+
+  private void checkInTransaction(String call) throws SQLException {
     // All calls must occur within a valid transaction.
     if (session == null || !session.getInTransaction()) {
       throw new SQLDataException("Can't perform " + call + "() while not in transaction.");
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import io.vitess.client.cursor.Cursor;
+import io.vitess.client.cursor.CursorWithError;
+import io.vitess.proto.Query.ExecuteOptions.IncludedFields;
+import io.vitess.proto.Topodata.TabletType;
+import io.vitess.proto.Vtrpc.RPCError;
+import java.io.Closeable;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+
+/**
+ * Merges statements that several threads send at about the same time into one
+ * {@link VTGateConn#executeBatch} call, so that a burst of small autocommit writes costs one
+ * round trip instead of one each.
+ *
+ * <p>The first statement of a batch waits up to the coalescing window for others to join it,
+ * and a batch that reaches the maximum size is sent right away. Only statements with the same
+ * tablet type, included fields and caller id are merged. Each caller still gets its own result:
+ * vtgate runs the statements of a batch one by one, outside of any transaction, and a statement
+ * that fails only fails its own future.
+ *
+ * <p>A merged call uses the latest deadline of its statements, so that one short deadline doesn't
+ * fail the others. Callers that need to give up sooner should wait on their future with a
+ * timeout.
+ *
+ * <p>This is only for statements that may run in their own transaction and in any order relative
+ * to statements of other threads. Use {@link VTGateTx} for statements that must run together.
+ */
+@ThreadSafe
+public class WriteCoalescer implements Closeable {
+  private final VTGateConn conn;
+  private final ScheduledExecutorService scheduler;
+  private final Duration window;
+  private final int maxBatchSize;
+
+  @GuardedBy("this")
+  private final Map<List<Object>, Batch> pending = new HashMap<>();
+  @GuardedBy("this")
+  private boolean closed;
+
+  /**
+   * @param conn The connection to send the merged statements on.
+   * @param scheduler Runs the sends of batches whose window ran out. It is not shut down by
+   *        {@link #close()}.
+   * @param window How long the first statement of a batch waits for others.
+   * @param maxBatchSize How many statements are sent in one call at most.
+   */
+  public WriteCoalescer(VTGateConn conn, ScheduledExecutorService scheduler, Duration window,
+      int maxBatchSize) {
+    checkArgument(window.getMillis() > 0, "window must be positive");
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+    this.conn = checkNotNull(conn);
+    this.scheduler = checkNotNull(scheduler);
+    this.window = window;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Queues a statement to be sent with the next batch. The arguments are the same as for
+   * {@link VTGateConn#execute}.
+   *
+   * @throws SQLNonTransientException if the coalescer is closed.
+   */
+  public SQLFuture<Cursor> execute(Context ctx, String query, @Nullable Map<String, ?> bindVars,
+      TabletType tabletType, IncludedFields includedFields) throws SQLException {
+    checkNotNull(query);
+    SettableFuture<Cursor> result = SettableFuture.create();
+    List<Object> key = Arrays.<Object>asList(tabletType, includedFields, ctx.getCallerId());
+    Batch full = null;
+    synchronized (this) {
+      if (closed) {
+        throw new SQLNonTransientException("WriteCoalescer is closed");
+      }
+      Batch batch = pending.get(key);
+      boolean sendNow = false;
+      if (batch == null) {
+        batch = new Batch(ctx, tabletType, includedFields);
+        pending.put(key, batch);
+        // Without a timer the batch would wait forever, so send the statement on its own.
+        sendNow = !scheduleFlush(key, batch);
+      }
+      batch.add(ctx, query, bindVars, result);
+      if (sendNow || batch.queries.size() >= maxBatchSize) {
+        pending.remove(key);
+        full = batch;
+      }
+    }
+    if (full != null) {
+      send(full);
+    }
+    return new SQLFuture<>(result);
+  }
+
+  /**
+   * Sends all queued statements right away and rejects new ones.
+   */
+  @Override
+  public void close() {
+    List<Batch> batches;
+    synchronized (this) {
+      closed = true;
+      batches = new ArrayList<>(pending.values());
+      pending.clear();
+    }
+    for (Batch batch : batches) {
+      send(batch);
+    }
+  }
+
+  /**
+   * Sends {@code batch} once the window runs out, unless it was sent before that.
+   *
+   * @return false if the scheduler rejected the task.
+   */
+  @GuardedBy("this")
+  private boolean scheduleFlush(final List<Object> key, final Batch batch) {
+    try {
+      scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (WriteCoalescer.this) {
+            // The batch may have been sent already because it filled up.
+            if (pending.get(key) != batch) {
+              return;
+            }
+            pending.remove(key);
+          }
+          send(batch);
+        }
+      }, window.getMillis(), TimeUnit.MILLISECONDS);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  private void send(final Batch batch) {
+    try {
+      if (batch.queries.size() == 1) {
+        batch.results.get(0).setFuture(conn.execute(batch.ctx, batch.queries.get(0),
+            batch.bindVarsList.get(0), batch.tabletType, batch.includedFields));
+        return;
+      }
+      Futures.addCallback(
+          conn.executeBatch(batch.ctx, batch.queries, batch.bindVarsList, batch.tabletType,
+              batch.includedFields),
+          new FutureCallback<List<CursorWithError>>() {
+            @Override
+            public void onSuccess(List<CursorWithError> cursors) {
+              batch.complete(cursors);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              batch.fail(t);
+            }
+          },
+          directExecutor());
+    } catch (SQLException | RuntimeException e) {
+      batch.fail(e);
+    }
+  }
+
+  /** The statements that will be sent together in one call. */
+  private static class Batch {
+    final TabletType tabletType;
+    final IncludedFields includedFields;
+    final List<String> queries = new ArrayList<>();
+    final List<Map<String, ?>> bindVarsList = new ArrayList<>();
+    final List<SettableFuture<Cursor>> results = new ArrayList<>();
+    Context ctx;
+
+    Batch(Context ctx, TabletType tabletType, IncludedFields includedFields) {
+      this.ctx = ctx;
+      this.tabletType = tabletType;
+      this.includedFields = includedFields;
+    }
+
+    void add(Context ctx, String query, @Nullable Map<String, ?> bindVars,
+        SettableFuture<Cursor> result) {
+      Instant deadline = ctx.getDeadline();
+      if (this.ctx.getDeadline() != null
+          && (deadline == null || deadline.isAfter(this.ctx.getDeadline()))) {
+        this.ctx = ctx;
+      }
+      queries.add(query);
+      bindVarsList.add(bindVars);
+      results.add(result);
+    }
+
+    void complete(List<CursorWithError> cursors) {
+      if (cursors.size() != results.size()) {
+        fail(new SQLDataException("vtgate returned " + cursors.size() + " results for "
+            + results.size() + " queries"));
+        return;
+      }
+      for (int i = 0; i < cursors.size(); i++) {
+        RPCError error = cursors.get(i).getError();
+        if (error == null) {
+          results.get(i).set(cursors.get(i).getCursor());
+          continue;
+        }
+        try {
+          Proto.checkError(error);
+          results.get(i).setException(new SQLNonTransientException(error.toString()));
+        } catch (SQLException e) {
+          results.get(i).setException(e);
+        }
+      }
+    }
+
+    void fail(Throwable t) {
+      for (SettableFuture<Cursor> result : results) {
+        result.setException(t);
+      }
+    }
+  }
+}
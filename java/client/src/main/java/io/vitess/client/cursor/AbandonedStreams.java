@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.vitess.client.cursor;
+
+import com.google.common.base.FinalizablePhantomReference;
+import com.google.common.base.FinalizableReferenceQueue;
+import com.google.common.collect.Sets;
+import io.vitess.client.CancellableStream;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Closes the streams of {@link StreamCursor}s that were garbage-collected without being closed.
+ *
+ * <p>An abandoned stream otherwise keeps its call, and with it an HTTP/2 stream of the channel,
+ * open until the server is done sending. Each cursor is watched through a phantom reference. Once
+ * the cursor is unreachable, the stream is closed on the thread of the reference queue. Only
+ * streams whose call was still running then count as leaks.
+ */
+final class AbandonedStreams {
+  private static final Logger logger = Logger.getLogger(StreamCursor.class.getName());
+
+  private static final FinalizableReferenceQueue queue = new FinalizableReferenceQueue();
+  // Keeps the references reachable until their cursor is closed or collected.
+  private static final Set<Watch> watches = Sets.newConcurrentHashSet();
+  private static final AtomicLong leaks = new AtomicLong();
+  private static volatile boolean trackAllocations;
+
+  private AbandonedStreams() {}
+
+  /**
+   * Starts watching a cursor. The returned {@link Watch} must not refer to the cursor, or the
+   * cursor would never become unreachable.
+   */
+  static Watch watch(StreamCursor cursor, AutoCloseable stream) {
+    Watch watch = new Watch(cursor, stream,
+        trackAllocations ? new Throwable("StreamCursor created here") : null);
+    watches.add(watch);
+    return watch;
+  }
+
+  static void setTrackAllocations(boolean enabled) {
+    trackAllocations = enabled;
+  }
+
+  static long getLeakCount() {
+    return leaks.get();
+  }
+
+  /** The reference to one cursor. */
+  static final class Watch extends FinalizablePhantomReference<StreamCursor> {
+    private final AutoCloseable stream;
+    @Nullable private final Throwable allocation;
+
+    private Watch(StreamCursor cursor, AutoCloseable stream, @Nullable Throwable allocation) {
+      super(cursor, queue);
+      this.stream = stream;
+      this.allocation = allocation;
+    }
+
+    /** Stops watching, because the cursor was closed. */
+    void cancel() {
+      watches.remove(this);
+      clear();
+    }
+
+    @Override
+    public void finalizeReferent() {
+      if (!watches.remove(this)) {
+        return;
+      }
+      // A stream that already ended holds nothing, so only a cancelled call counts as a leak.
+      // Streams that can't tell are counted, to be safe.
+      boolean cancelled = true;
+      try {
+        if (stream instanceof CancellableStream) {
+          cancelled = ((CancellableStream) stream).closeStream();
+        } else {
+          stream.close();
+        }
+      } catch (Exception e) {
+        logger.log(Level.FINE, "failed to close an abandoned stream", e);
+      }
+      if (!cancelled) {
+        return;
+      }
+      leaks.incrementAndGet();
+      if (allocation != null) {
+        logger.log(Level.WARNING, "StreamCursor was not closed, cancelled its running call",
+            allocation);
+      } else {
+        logger.warning("StreamCursor was not closed, cancelled its running call. Call "
+            + "StreamCursor.setLeakTracking(true) to log where leaked cursors are created.");
+      }
+    }
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import com.google.common.primitives.UnsignedLongs;
+import com.google.protobuf.ByteString;
+import java.math.BigDecimal;
+
+/**
+ * Decodes numeric column values directly from their ASCII text representation.
+ *
+ * <p>
+ * MySQL sends numbers as decimal text. Rather than decoding each value into a {@link String} and
+ * handing it to {@link Long#valueOf(String)} and friends, these methods read the digits straight
+ * from the {@link ByteString}, so the primitive getters on {@link Row} and {@link RowBatch} don't
+ * allocate. Inputs that need the full generality of the JDK parsers (exponents out of range,
+ * more significant digits than fit exactly, "NaN", etc.) fall back to them.
+ *
+ * <p>
+ * Malformed input results in a {@link NumberFormatException}, as with the JDK parsers.
+ */
+final class AsciiDecoder {
+  /** Largest number of significant digits for which a decimal mantissa fits exactly in a double. */
+  private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+  /** Largest number of digits for which an unscaled decimal value is guaranteed to fit in a long. */
+  private static final int MAX_LONG_DIGITS = 18;
+  /** Powers of ten that are exactly representable as doubles. */
+  private static final double[] EXACT_POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+  private static final long UNSIGNED_MULTMAX = UnsignedLongs.divide(-1L, 10);
+  private static final int UNSIGNED_LASTDIGIT = (int) UnsignedLongs.remainder(-1L, 10);
+
+  private AsciiDecoder() {}
+
+  static int parseInt(ByteString buf, int offset, int length) {
+    long value = parseLong(buf, offset, length);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw numberFormatException(buf, offset, length);
+    }
+    return (int) value;
+  }
+
+  static long parseLong(ByteString buf, int offset, int length) {
+    // Accumulate negatively to cover Long.MIN_VALUE, the same way Long.parseLong() does.
+    int i = offset;
+    int end = offset + length;
+    boolean negative = false;
+    long limit = -Long.MAX_VALUE;
+    if (i < end) {
+      byte first = buf.byteAt(i);
+      if (first == '-') {
+        negative = true;
+        limit = Long.MIN_VALUE;
+        i++;
+      } else if (first == '+') {
+        i++;
+      }
+    }
+    if (i == end) {
+      throw numberFormatException(buf, offset, length);
+    }
+    long multmin = limit / 10;
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = buf.byteAt(i) - '0';
+      if (digit < 0 || digit > 9 || result < multmin) {
+        throw numberFormatException(buf, offset, length);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw numberFormatException(buf, offset, length);
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  /**
+   * Parses an unsigned 64-bit value, returned as a long with the same bits as
+   * {@link com.google.common.primitives.UnsignedLong#longValue()}.
+   */
+  static long parseUnsignedLong(ByteString buf, int offset, int length) {
+    int i = offset;
+    int end = offset + length;
+    if (i < end && buf.byteAt(i) == '+') {
+      i++;
+    }
+    if (i == end) {
+      throw numberFormatException(buf, offset, length);
+    }
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = buf.byteAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw numberFormatException(buf, offset, length);
+      }
+      int cmp = UnsignedLongs.compare(result, UNSIGNED_MULTMAX);
+      if (cmp > 0 || (cmp == 0 && digit > UNSIGNED_LASTDIGIT)) {
+        throw numberFormatException(buf, offset, length);
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+
+  static double parseDouble(ByteString buf, int offset, int length) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = false;
+    if (i < end) {
+      byte first = buf.byteAt(i);
+      if (first == '-') {
+        negative = true;
+        i++;
+      } else if (first == '+') {
+        i++;
+      }
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean sawDigit = false;
+    boolean sawPoint = false;
+    for (; i < end; i++) {
+      byte b = buf.byteAt(i);
+      if (b >= '0' && b <= '9') {
+        sawDigit = true;
+        // Leading zeros are not significant.
+        if (mantissa != 0 || b != '0') {
+          if (++digits > MAX_EXACT_DOUBLE_DIGITS) {
+            return slowParseDouble(buf, offset, length);
+          }
+          mantissa = mantissa * 10 + (b - '0');
+        }
+        if (sawPoint) {
+          exponent--;
+        }
+      } else if (b == '.' && !sawPoint) {
+        sawPoint = true;
+      } else if ((b == 'e' || b == 'E') && sawDigit && i + 1 < end) {
+        int exp;
+        try {
+          exp = parseInt(buf, i + 1, end - i - 1);
+        } catch (NumberFormatException e) {
+          return slowParseDouble(buf, offset, length);
+        }
+        if (Math.abs(exp) > EXACT_POWERS_OF_TEN.length) {
+          return slowParseDouble(buf, offset, length);
+        }
+        exponent += exp;
+        break;
+      } else {
+        return slowParseDouble(buf, offset, length);
+      }
+    }
+    if (!sawDigit) {
+      return slowParseDouble(buf, offset, length);
+    }
+
+    // Both the mantissa and the power of ten are exact, so a single multiplication or division
+    // yields the correctly rounded result.
+    double value;
+    if (mantissa == 0 || exponent == 0) {
+      value = mantissa;
+    } else if (exponent > 0 && exponent < EXACT_POWERS_OF_TEN.length) {
+      value = mantissa * EXACT_POWERS_OF_TEN[exponent];
+    } else if (exponent < 0 && -exponent < EXACT_POWERS_OF_TEN.length) {
+      value = mantissa / EXACT_POWERS_OF_TEN[-exponent];
+    } else {
+      return slowParseDouble(buf, offset, length);
+    }
+    return negative ? -value : value;
+  }
+
+  static BigDecimal parseBigDecimal(ByteString buf, int offset, int length) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = false;
+    if (i < end) {
+      byte first = buf.byteAt(i);
+      if (first == '-') {
+        negative = true;
+        i++;
+      } else if (first == '+') {
+        i++;
+      }
+    }
+
+    long unscaled = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean sawDigit = false;
+    boolean sawPoint = false;
+    for (; i < end; i++) {
+      byte b = buf.byteAt(i);
+      if (b >= '0' && b <= '9') {
+        sawDigit = true;
+        if (++digits > MAX_LONG_DIGITS) {
+          return slowParseBigDecimal(buf, offset, length);
+        }
+        unscaled = unscaled * 10 + (b - '0');
+        if (sawPoint) {
+          scale++;
+        }
+      } else if (b == '.' && !sawPoint) {
+        sawPoint = true;
+      } else {
+        return slowParseBigDecimal(buf, offset, length);
+      }
+    }
+    if (!sawDigit) {
+      return slowParseBigDecimal(buf, offset, length);
+    }
+    return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+  }
+
+  private static double slowParseDouble(ByteString buf, int offset, int length) {
+    return Double.parseDouble(toString(buf, offset, length));
+  }
+
+  private static BigDecimal slowParseBigDecimal(ByteString buf, int offset, int length) {
+    return new BigDecimal(toString(buf, offset, length));
+  }
+
+  private static NumberFormatException numberFormatException(
+      ByteString buf, int offset, int length) {
+    return new NumberFormatException("For input string: \"" + toString(buf, offset, length) + "\"");
+  }
+
+  private static String toString(ByteString buf, int offset, int length) {
+    return buf.substring(offset, offset + length).toStringUtf8();
+  }
+}
@@ -18,11 +18,13 @@ package io.vitess.client.cursor;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import io.vitess.proto.Query;
 import io.vitess.proto.Query.Field;
 import io.vitess.proto.Query.QueryResult;
 import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -57,6 +59,12 @@ public abstract class Cursor implements AutoCloseable {
    */
   private volatile FieldMap fieldMap;
 
+  /** Maximum number of rows returned by each call to the default {@link #nextBatch()}. */
+  private static final int DEFAULT_BATCH_SIZE = 256;
+
+  private RowBatch rowBatch;
+  private List<Query.Row> batchRows;
+
   /**
    * Returns the number of rows affected.
    *
@@ -81,6 +89,45 @@ public abstract class Cursor implements AutoCloseable {
   @Nullable
   public abstract Row next() throws SQLException;
 
+  /**
+   * Returns the remaining rows of the current result chunk as a {@link RowBatch}, or {@code null}
+   * if there are no more rows.
+   *
+   * <p>This is an allocation-free alternative to calling {@link #next()} in a loop: the returned
+   * {@code RowBatch} is reused by every call, and reads cells in place from the wire buffers. It
+   * is only valid until the next call to {@code next()} or {@code nextBatch()} on this cursor.
+   * The two methods may be mixed; a batch always starts at the row following the last one
+   * returned.
+   *
+   * <p>The default implementation copies up to {@value #DEFAULT_BATCH_SIZE} rows from
+   * {@link #next()} into the batch. Subclasses which hold the result chunks override it to serve
+   * them in place.
+   *
+   * @throws SQLException if the server returns an error.
+   * @throws SQLFeatureNotSupportedException if the cursor returns rows built without a proto.
+   */
+  @Nullable
+  public RowBatch nextBatch() throws SQLException {
+    if (batchRows == null) {
+      batchRows = new ArrayList<>(DEFAULT_BATCH_SIZE);
+      rowBatch = new RowBatch();
+    }
+    batchRows.clear();
+    Row row;
+    while (batchRows.size() < DEFAULT_BATCH_SIZE && (row = next()) != null) {
+      if (row.getRowProto() == null) {
+        throw new SQLFeatureNotSupportedException(
+            "nextBatch() is not supported on rows built without a proto");
+      }
+      batchRows.add(row.getRowProto());
+    }
+    if (batchRows.isEmpty()) {
+      return null;
+    }
+    rowBatch.reset(getFieldMap(), batchRows, 0);
+    return rowBatch;
+  }
+
   /**
    * Returns the list of fields.
    *
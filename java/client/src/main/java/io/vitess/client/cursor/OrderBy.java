@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A column to sort by when merging streams with {@link OrderedMergeCursor}.
+ *
+ * <p>Each stream must already be sorted the same way, e.g. with a matching {@code ORDER BY}.
+ * Values are compared after conversion by {@link Row#getObject(int)}, so text columns compare byte
+ * by byte, like a binary collation. NULL sorts first in ascending order, like in MySQL.
+ */
+@Immutable
+public final class OrderBy {
+  private final String column;
+  private final boolean descending;
+
+  private OrderBy(String column, boolean descending) {
+    this.column = checkNotNull(column);
+    this.descending = descending;
+  }
+
+  public static OrderBy asc(String column) {
+    return new OrderBy(column, false);
+  }
+
+  public static OrderBy desc(String column) {
+    return new OrderBy(column, true);
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  public boolean isDescending() {
+    return descending;
+  }
+
+  @Override
+  public String toString() {
+    return column + (descending ? " DESC" : " ASC");
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.UnsignedBytes;
+import io.vitess.proto.Query.Field;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link Cursor} that merges cursors which are each sorted the same way into one sorted cursor.
+ *
+ * <p>This is a k-way merge: it holds the next row of each cursor, and returns the smallest of them
+ * according to the {@link OrderBy} columns. Rows that compare equal are returned in the order of
+ * the cursors they came from. Every cursor is read from concurrently, so the memory used is that
+ * of the underlying cursors, e.g. the prefetch of each stream.
+ */
+@NotThreadSafe
+public class OrderedMergeCursor extends Cursor {
+  private static final Comparator<byte[]> BYTES_ORDER = UnsignedBytes.lexicographicalComparator();
+
+  private final List<Cursor> cursors;
+  private final List<OrderBy> orderBy;
+  private PriorityQueue<Head> heads;
+  private int[] columns;
+  private boolean closed;
+
+  /**
+   * @param cursors The cursors to merge. They must all have the same fields.
+   * @param orderBy The columns each cursor is sorted by, most significant first.
+   */
+  public OrderedMergeCursor(List<? extends Cursor> cursors, List<OrderBy> orderBy) {
+    checkArgument(!cursors.isEmpty(), "no cursors to merge");
+    checkArgument(!orderBy.isEmpty(), "no columns to order by");
+    this.cursors = ImmutableList.copyOf(cursors);
+    this.orderBy = ImmutableList.copyOf(orderBy);
+  }
+
+  @Override
+  public long getRowsAffected() throws SQLException {
+    throw new SQLFeatureNotSupportedException(
+        "getRowsAffected() is not supported on OrderedMergeCursor");
+  }
+
+  @Override
+  public long getInsertId() throws SQLException {
+    throw new SQLFeatureNotSupportedException(
+        "getInsertId() is not supported on OrderedMergeCursor");
+  }
+
+  @Override
+  public List<Field> getFields() throws SQLException {
+    if (closed) {
+      throw new SQLDataException("getFields() called on closed Cursor");
+    }
+    return cursors.get(0).getFields();
+  }
+
+  @Override
+  public void close() throws Exception {
+    closed = true;
+    Exception error = null;
+    for (Cursor cursor : cursors) {
+      try {
+        cursor.close();
+      } catch (Exception e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  @Override
+  public Row next() throws SQLException {
+    if (closed) {
+      throw new SQLDataException("next() called on closed Cursor");
+    }
+    if (heads == null) {
+      start();
+    }
+    Head head = heads.poll();
+    if (head == null) {
+      return null;
+    }
+    Row row = head.row;
+    advance(head.index);
+    return row;
+  }
+
+  private void start() throws SQLException {
+    columns = new int[orderBy.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = findColumn(orderBy.get(i).getColumn());
+    }
+    heads = new PriorityQueue<>(cursors.size(), new Comparator<Head>() {
+      @Override
+      public int compare(Head a, Head b) {
+        for (int i = 0; i < columns.length; i++) {
+          int c = compareValues(a.keys[i], b.keys[i]);
+          if (c != 0) {
+            return orderBy.get(i).isDescending() ? -c : c;
+          }
+        }
+        return Integer.compare(a.index, b.index);
+      }
+    });
+    for (int i = 0; i < cursors.size(); i++) {
+      advance(i);
+    }
+  }
+
+  /** Queues the next row of the given cursor, if it has one. */
+  private void advance(int index) throws SQLException {
+    Row row = cursors.get(index).next();
+    if (row == null) {
+      return;
+    }
+    Object[] keys = new Object[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      keys[i] = row.getObject(columns[i]);
+    }
+    heads.add(new Head(row, keys, index));
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static int compareValues(Object a, Object b) {
+    if (a == null || b == null) {
+      return a == null ? (b == null ? 0 : -1) : 1;
+    }
+    if (a instanceof byte[]) {
+      return BYTES_ORDER.compare((byte[]) a, (byte[]) b);
+    }
+    return ((Comparable) a).compareTo(b);
+  }
+
+  /** The next row of one of the cursors, with the values it is sorted by. */
+  private static class Head {
+    final Row row;
+    final Object[] keys;
+    final int index;
+
+    Head(Row row, Object[] keys, int index) {
+      this.row = row;
+      this.keys = keys;
+      this.index = index;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.vitess.client.cursor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.protobuf.ByteString;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.Field;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientException;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.joda.time.Instant;
+
+/**
+ * A {@link Cursor} over an ordered stream that resumes the stream after transient errors.
+ *
+ * <p>The stream must be sorted by a column with unique values, e.g. the primary key. The cursor
+ * remembers the value of that column in the last row it returned. If the stream fails with a
+ * {@link SQLTransientException}, such as an unavailable vtgate or a stalled stream, it opens a new
+ * stream that starts after that value, so the caller sees the rows without gaps or duplicates.
+ *
+ * <p>Resuming is retried with exponential backoff, at most {@code maxRetries} times in a row.
+ * Once the new stream returns a row, the count starts over. Other errors are thrown right away,
+ * and so is a transient error once the deadline of the stream has passed, or would pass during the
+ * backoff: a new stream would only fail with {@code DEADLINE_EXCEEDED} again.
+ */
+@NotThreadSafe
+public class ResumableCursor extends Cursor {
+  /** How long to wait before the first attempt to resume. Doubles with each further attempt. */
+  static final long INITIAL_BACKOFF_MILLIS = 100;
+
+  /**
+   * Opens the stream to read from.
+   */
+  public interface Source {
+    /**
+     * Opens the stream.
+     *
+     * @param after {@code null} to open the stream from the start. Otherwise the value of the
+     *     ordering column in the last row returned, and the stream must start with the row after
+     *     it. The value has the type of the column, and can be passed as a bind variable.
+     */
+    Cursor open(@Nullable Query.BindVariable after) throws SQLException;
+  }
+
+  private final Source source;
+  private final String keyColumn;
+  private final int maxRetries;
+  @Nullable private final Instant deadline;
+  private Cursor cursor;
+  private List<Field> fields;
+  private int keyIndex;
+  private int retries;
+  private boolean closed;
+  // The last row returned by next(), whose key is only looked up if the stream has to resume.
+  private Row lastRow;
+  // The key of the last row of the last batch returned by nextBatch().
+  private Query.BindVariable lastKey;
+
+  /**
+   * @param source The stream to read from.
+   * @param keyColumn The column the stream is sorted by. Its values must be unique.
+   * @param maxRetries How many times in a row to try to resume the stream.
+   */
+  public ResumableCursor(Source source, String keyColumn, int maxRetries) {
+    this(source, keyColumn, maxRetries, null);
+  }
+
+  /**
+   * @param source The stream to read from.
+   * @param keyColumn The column the stream is sorted by. Its values must be unique.
+   * @param maxRetries How many times in a row to try to resume the stream.
+   * @param deadline The deadline of the streams {@code source} opens, or {@code null} if they have
+   *     none. The stream isn't resumed after it.
+   */
+  public ResumableCursor(Source source, String keyColumn, int maxRetries,
+      @Nullable Instant deadline) {
+    checkArgument(maxRetries >= 0, "maxRetries must not be negative: %s", maxRetries);
+    this.source = checkNotNull(source);
+    this.keyColumn = checkNotNull(keyColumn);
+    this.maxRetries = maxRetries;
+    this.deadline = deadline;
+  }
+
+  @Override
+  public long getRowsAffected() throws SQLException {
+    throw new SQLFeatureNotSupportedException(
+        "getRowsAffected() is not supported on ResumableCursor");
+  }
+
+  @Override
+  public long getInsertId() throws SQLException {
+    throw new SQLFeatureNotSupportedException("getInsertId() is not supported on ResumableCursor");
+  }
+
+  @Override
+  public List<Field> getFields() throws SQLException {
+    if (closed) {
+      throw new SQLDataException("getFields() called on closed Cursor");
+    }
+    while (fields == null) {
+      try {
+        fields = current().getFields();
+      } catch (SQLTransientException e) {
+        resume(e);
+      }
+    }
+    return fields;
+  }
+
+  @Override
+  public void close() throws Exception {
+    closed = true;
+    if (cursor != null) {
+      Cursor cursor = this.cursor;
+      this.cursor = null;
+      cursor.close();
+    }
+  }
+
+  @Override
+  public Row next() throws SQLException {
+    if (closed) {
+      throw new SQLDataException("next() called on closed Cursor");
+    }
+    getFields();
+    while (true) {
+      try {
+        Row row = current().next();
+        if (row != null) {
+          lastRow = row;
+          lastKey = null;
+          retries = 0;
+        }
+        return row;
+      } catch (SQLTransientException e) {
+        resume(e);
+      }
+    }
+  }
+
+  @Override
+  public RowBatch nextBatch() throws SQLException {
+    if (closed) {
+      throw new SQLDataException("nextBatch() called on closed Cursor");
+    }
+    getFields();
+    while (true) {
+      try {
+        RowBatch batch = current().nextBatch();
+        if (batch != null && batch.size() > 0) {
+          lastKey = getKey(batch, batch.size() - 1);
+          lastRow = null;
+          retries = 0;
+        }
+        return batch;
+      } catch (SQLTransientException e) {
+        resume(e);
+      }
+    }
+  }
+
+  private Cursor current() throws SQLException {
+    if (cursor == null) {
+      Query.BindVariable after = lastRow != null ? getKey(lastRow) : lastKey;
+      cursor = source.open(after);
+    }
+    return cursor;
+  }
+
+  /**
+   * Drops the failed stream, so the next call to {@link #current()} opens a new one, or rethrows
+   * the error if we are out of retries.
+   */
+  private void resume(SQLTransientException error) throws SQLException {
+    if (cursor != null) {
+      try {
+        cursor.close();
+      } catch (Exception e) {
+        error.addSuppressed(e);
+      }
+      cursor = null;
+    }
+    if (retries >= maxRetries) {
+      throw error;
+    }
+    long backoffMillis = INITIAL_BACKOFF_MILLIS << Math.min(retries, 10);
+    if (deadline != null && !deadline.isAfter(Instant.now().plus(backoffMillis))) {
+      throw error;
+    }
+    try {
+      Thread.sleep(backoffMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      error.addSuppressed(e);
+      throw error;
+    }
+    retries++;
+  }
+
+  private Query.BindVariable getKey(Row row) throws SQLException {
+    return bindKey(row.getRawValue(getKeyIndex()));
+  }
+
+  private Query.BindVariable getKey(RowBatch batch, int rowIndex) throws SQLException {
+    int column = getKeyIndex();
+    if (batch.isNull(rowIndex, column)) {
+      return bindKey(null);
+    }
+    int offset = batch.getOffset(rowIndex, column);
+    return bindKey(batch.getRowValues(rowIndex)
+        .substring(offset, offset + batch.getLength(rowIndex, column)));
+  }
+
+  private Query.BindVariable bindKey(@Nullable ByteString value) throws SQLException {
+    if (value == null) {
+      return Query.BindVariable.newBuilder().setType(Query.Type.NULL_TYPE).build();
+    }
+    return Query.BindVariable.newBuilder()
+        .setType(getFieldMap().get(getKeyIndex()).getType())
+        .setValue(value)
+        .build();
+  }
+
+  private int getKeyIndex() throws SQLException {
+    if (keyIndex == 0) {
+      keyIndex = findColumn(keyColumn);
+    }
+    return keyIndex;
+  }
+}
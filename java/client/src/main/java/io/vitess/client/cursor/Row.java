@@ -206,6 +206,22 @@ public class Row {
    * @param columnIndex 1-based column number (0 is invalid)
    */
   public int getInt(int columnIndex) throws SQLException {
+    ByteString rawValue = getRawValue(columnIndex);
+    if (rawValue != null) {
+      switch (fieldMap.get(columnIndex).getType()) {
+        case INT8: // fall through
+        case UINT8: // fall through
+        case INT16: // fall through
+        case UINT16: // fall through
+        case INT24: // fall through
+        case UINT24: // fall through
+        case INT32:
+          // Decode in place, without an intermediate String or Integer.
+          return AsciiDecoder.parseInt(rawValue, 0, rawValue.size());
+        default:
+          break;
+      }
+    }
     Integer value = getObject(columnIndex, Integer.class);
     return value == null ? 0 : value;
   }
@@ -261,6 +277,17 @@ public class Row {
    * @param columnIndex 1-based column number (0 is invalid)
    */
   public long getLong(int columnIndex) throws SQLException {
+    ByteString rawValue = getRawValue(columnIndex);
+    if (rawValue != null) {
+      switch (fieldMap.get(columnIndex).getType()) {
+        case UINT32: // fall through
+        case INT64:
+          // Decode in place, without an intermediate String or Long.
+          return AsciiDecoder.parseLong(rawValue, 0, rawValue.size());
+        default:
+          break;
+      }
+    }
     Long value = getObject(columnIndex, Long.class);
     return value == null ? 0 : value;
   }
@@ -288,6 +315,11 @@ public class Row {
    * @param columnIndex 1-based column number (0 is invalid)
    */
   public double getDouble(int columnIndex) throws SQLException {
+    ByteString rawValue = getRawValue(columnIndex);
+    if (rawValue != null && fieldMap.get(columnIndex).getType() == Type.FLOAT64) {
+      // Decode in place, without an intermediate String or Double.
+      return AsciiDecoder.parseDouble(rawValue, 0, rawValue.size());
+    }
     Double value = getObject(columnIndex, Double.class);
     return value == null ? 0 : value;
   }
@@ -612,7 +644,7 @@ public class Row {
     // For strings, we return byte[] and the application is responsible for using the right charset.
     switch (field.getType()) {
       case DECIMAL:
-        return new BigDecimal(value.toStringUtf8());
+        return AsciiDecoder.parseBigDecimal(value, 0, value.size());
       case INT8: // fall through
       case UINT8: // fall through
       case INT16: // fall through
@@ -620,16 +652,16 @@ public class Row {
       case INT24: // fall through
       case UINT24: // fall through
       case INT32:
-        return Integer.valueOf(value.toStringUtf8());
+        return AsciiDecoder.parseInt(value, 0, value.size());
       case UINT32: // fall through
       case INT64:
-        return Long.valueOf(value.toStringUtf8());
+        return AsciiDecoder.parseLong(value, 0, value.size());
       case UINT64:
-        return UnsignedLong.valueOf(value.toStringUtf8());
+        return UnsignedLong.fromLongBits(AsciiDecoder.parseUnsignedLong(value, 0, value.size()));
       case FLOAT32:
         return Float.valueOf(value.toStringUtf8());
       case FLOAT64:
-        return Double.valueOf(value.toStringUtf8());
+        return AsciiDecoder.parseDouble(value, 0, value.size());
       case NULL_TYPE:
         return null;
       case DATE:
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import com.google.protobuf.ByteString;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.Field;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Columnar view over a batch of raw {@link io.vitess.proto.Query.Row} protos.
+ *
+ * <p>
+ * Unlike {@link Row}, which splits every cell into its own {@link ByteString}, a {@code RowBatch}
+ * only records the offset and length of each cell within the packed {@code values} buffer of its
+ * row. Cells are then read in place, so iterating over a large result with
+ * {@link Cursor#nextBatch()} produces no per-row or per-cell garbage.
+ *
+ * <p>
+ * A cursor reuses the same {@code RowBatch} instance for every call to
+ * {@link Cursor#nextBatch()}, so the contents are only valid until the next call on that cursor.
+ * Callers that need to keep values around must copy them out, e.g. with {@link #getBytes(int, int)}.
+ *
+ * <p>
+ * {@code rowIndex} values are 0-based positions within the batch, while {@code columnIndex} values
+ * start at 1 for the first column, as in {@link Row} and {@link java.sql.ResultSet}.
+ */
+@NotThreadSafe
+public class RowBatch {
+  private FieldMap fieldMap;
+  private int rowCount;
+  private int columnCount;
+  /** Packed {@code values} buffer of each row, as received on the wire. */
+  private ByteString[] values = new ByteString[0];
+  /** Cell offsets into {@link #values}, indexed by {@code rowIndex * columnCount + column}. */
+  private int[] offsets = new int[0];
+  /** Cell lengths, indexed like {@link #offsets}. A negative length means SQL NULL. */
+  private int[] lengths = new int[0];
+
+  /**
+   * Points this batch at {@code rows[fromIndex:]}, reusing the existing index arrays when they are
+   * large enough.
+   */
+  void reset(FieldMap fieldMap, List<Query.Row> rows, int fromIndex) throws SQLException {
+    this.fieldMap = fieldMap;
+    this.columnCount = fieldMap.getList().size();
+    this.rowCount = rows.size() - fromIndex;
+
+    if (values.length < rowCount) {
+      values = new ByteString[rowCount];
+    }
+    int cells = rowCount * columnCount;
+    if (offsets.length < cells) {
+      offsets = new int[cells];
+      lengths = new int[cells];
+    }
+
+    for (int i = 0; i < rowCount; i++) {
+      Query.Row row = rows.get(fromIndex + i);
+      if (row.getLengthsCount() != columnCount) {
+        throw new SQLDataException("row has " + row.getLengthsCount() + " values, expected "
+            + columnCount);
+      }
+      values[i] = row.getValues();
+
+      int base = i * columnCount;
+      int start = 0;
+      for (int j = 0; j < columnCount; j++) {
+        // Lengths are returned as long, but a single row buffer can't exceed int range.
+        int len = (int) row.getLengths(j);
+        offsets[base + j] = start;
+        lengths[base + j] = len;
+        if (len > 0) {
+          start += len;
+        }
+      }
+    }
+    // Drop references to buffers from a previous, larger batch.
+    for (int i = rowCount; i < values.length && values[i] != null; i++) {
+      values[i] = null;
+    }
+  }
+
+  /**
+   * Returns the number of rows in this batch.
+   */
+  public int size() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the number of columns.
+   */
+  public int getColumnCount() {
+    return columnCount;
+  }
+
+  public List<Field> getFields() {
+    return fieldMap.getList();
+  }
+
+  public FieldMap getFieldMap() {
+    return fieldMap;
+  }
+
+  /**
+   * Returns 1-based column number.
+   *
+   * @param columnLabel case-insensitive column label
+   */
+  public int findColumn(String columnLabel) throws SQLException {
+    Integer columnIndex = fieldMap.getIndex(columnLabel);
+    if (columnIndex == null) {
+      throw new SQLDataException("column not found:" + columnLabel);
+    }
+    return columnIndex;
+  }
+
+  /**
+   * Returns whether the given cell is SQL NULL.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   */
+  public boolean isNull(int rowIndex, int columnIndex) {
+    return lengths[cell(rowIndex, columnIndex)] < 0;
+  }
+
+  /**
+   * Returns the length in bytes of the given cell, or -1 if it is SQL NULL.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   */
+  public int getLength(int rowIndex, int columnIndex) {
+    int len = lengths[cell(rowIndex, columnIndex)];
+    return len < 0 ? -1 : len;
+  }
+
+  /**
+   * Returns the offset of the given cell within {@link #getRowValues(int)}.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   */
+  public int getOffset(int rowIndex, int columnIndex) {
+    return offsets[cell(rowIndex, columnIndex)];
+  }
+
+  /**
+   * Returns the packed buffer holding all the cell values of a row.
+   *
+   * <p>
+   * Together with {@link #getOffset(int, int)} and {@link #getLength(int, int)} this gives direct
+   * access to the cell bytes, e.g. via {@link ByteString#byteAt(int)} or
+   * {@link ByteString#asReadOnlyByteBuffer()}, without copying.
+   *
+   * @param rowIndex 0-based row number within this batch
+   */
+  public ByteString getRowValues(int rowIndex) {
+    checkElementIndex(rowIndex, rowCount, "rowIndex");
+    return values[rowIndex];
+  }
+
+  /**
+   * Copies the bytes of the given cell into {@code target}.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   * @return the number of bytes copied, or -1 if the cell is SQL NULL.
+   */
+  public int copyTo(int rowIndex, int columnIndex, byte[] target, int targetOffset) {
+    int cell = cell(rowIndex, columnIndex);
+    int len = lengths[cell];
+    if (len < 0) {
+      return -1;
+    }
+    values[rowIndex].copyTo(target, offsets[cell], targetOffset, len);
+    return len;
+  }
+
+  /**
+   * Returns a copy of the bytes of the given cell, or {@code null} if it is SQL NULL.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   */
+  @Nullable
+  public byte[] getBytes(int rowIndex, int columnIndex) {
+    int cell = cell(rowIndex, columnIndex);
+    int len = lengths[cell];
+    if (len < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[len];
+    values[rowIndex].copyTo(bytes, offsets[cell], 0, len);
+    return bytes;
+  }
+
+  /**
+   * Returns the given cell decoded as UTF-8, or {@code null} if it is SQL NULL.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   */
+  @Nullable
+  public String getString(int rowIndex, int columnIndex) {
+    int cell = cell(rowIndex, columnIndex);
+    int len = lengths[cell];
+    if (len < 0) {
+      return null;
+    }
+    return values[rowIndex].substring(offsets[cell], offsets[cell] + len).toStringUtf8();
+  }
+
+  /**
+   * Returns the given cell parsed as a decimal integer, or 0 if it is SQL NULL.
+   *
+   * <p>
+   * The value is decoded in place from its text representation, whatever the column type.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   * @throws NumberFormatException if the value is not a valid {@code int}.
+   */
+  public int getInt(int rowIndex, int columnIndex) {
+    int cell = cell(rowIndex, columnIndex);
+    int len = lengths[cell];
+    return len < 0 ? 0 : AsciiDecoder.parseInt(values[rowIndex], offsets[cell], len);
+  }
+
+  /**
+   * Returns the given cell parsed as a decimal integer, or 0 if it is SQL NULL.
+   *
+   * <p>
+   * The value is decoded in place from its text representation, whatever the column type.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   * @throws NumberFormatException if the value is not a valid {@code long}.
+   */
+  public long getLong(int rowIndex, int columnIndex) {
+    int cell = cell(rowIndex, columnIndex);
+    int len = lengths[cell];
+    return len < 0 ? 0 : AsciiDecoder.parseLong(values[rowIndex], offsets[cell], len);
+  }
+
+  /**
+   * Returns the given cell parsed as a floating-point number, or 0 if it is SQL NULL.
+   *
+   * <p>
+   * The value is decoded in place from its text representation, whatever the column type.
+   *
+   * @param rowIndex 0-based row number within this batch
+   * @param columnIndex 1-based column number (0 is invalid)
+   * @throws NumberFormatException if the value is not a valid {@code double}.
+   */
+  public double getDouble(int rowIndex, int columnIndex) {
+    int cell = cell(rowIndex, columnIndex);
+    int len = lengths[cell];
+    return len < 0 ? 0 : AsciiDecoder.parseDouble(values[rowIndex], offsets[cell], len);
+  }
+
+  private int cell(int rowIndex, int columnIndex) {
+    checkElementIndex(rowIndex, rowCount, "rowIndex");
+    // columnIndex is 1-based.
+    checkElementIndex(columnIndex - 1, columnCount, "columnIndex");
+    return rowIndex * columnCount + columnIndex - 1;
+  }
+}
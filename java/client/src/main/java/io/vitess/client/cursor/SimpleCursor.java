@@ -20,7 +20,6 @@ import io.vitess.proto.Query;
 import io.vitess.proto.Query.Field;
 import io.vitess.proto.Query.QueryResult;
 import java.sql.SQLException;
-import java.util.Iterator;
 import java.util.List;
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -30,11 +29,23 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 public class SimpleCursor extends Cursor {
   private final QueryResult queryResult;
-  private final Iterator<Query.Row> rowIterator;
+  private final List<Field> fields;
+  private final List<Query.Row> rows;
+  private int rowIndex;
+  private RowBatch rowBatch;
 
   public SimpleCursor(QueryResult queryResult) {
+    this(queryResult, queryResult.getFieldsList());
+  }
+
+  /**
+   * Creates a cursor over a chunk of a streaming result, which only has the fields in the first
+   * chunk of the stream.
+   */
+  public SimpleCursor(QueryResult queryResult, List<Field> fields) {
     this.queryResult = queryResult;
-    rowIterator = queryResult.getRowsList().iterator();
+    this.fields = fields;
+    rows = queryResult.getRowsList();
   }
 
   @Override
@@ -49,7 +60,7 @@ public class SimpleCursor extends Cursor {
 
   @Override
   public List<Field> getFields() throws SQLException {
-    return queryResult.getFieldsList();
+    return fields;
   }
 
   @Override
@@ -59,9 +70,22 @@ public class SimpleCursor extends Cursor {
 
   @Override
   public Row next() throws SQLException {
-    if (rowIterator.hasNext()) {
-      return new Row(getFieldMap(), rowIterator.next());
+    if (rowIndex < rows.size()) {
+      return new Row(getFieldMap(), rows.get(rowIndex++));
     }
     return null;
   }
+
+  @Override
+  public RowBatch nextBatch() throws SQLException {
+    if (rowIndex >= rows.size()) {
+      return null;
+    }
+    if (rowBatch == null) {
+      rowBatch = new RowBatch();
+    }
+    rowBatch.reset(getFieldMap(), rows, rowIndex);
+    rowIndex = rows.size();
+    return rowBatch;
+  }
 }
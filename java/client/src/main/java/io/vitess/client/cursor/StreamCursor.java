@@ -23,23 +23,53 @@ import io.vitess.proto.Query.QueryResult;
 import java.sql.SQLDataException;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
-import java.util.Iterator;
 import java.util.List;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A {@link Cursor} that serves records from the sequence of {@link QueryResult} objects
  * represented by a {@link StreamIterator}.
+ *
+ * <p>A cursor must be closed once the caller is done with it, like any other resource. If one is
+ * garbage-collected without being closed, its stream is closed then, and the leak is counted and
+ * logged. See {@link #setLeakTracking(boolean)}.
+ *
+ * <p>Like any cursor, a {@code StreamCursor} must only be read by one thread at a time. The
+ * exception is {@link #close()}, which any thread may call at any time, e.g. to cancel a query,
+ * even while another thread reads from the cursor or closes it too. The reader then sees the end
+ * of the stream, or a closed cursor.
  */
 @NotThreadSafe
 public class StreamCursor extends Cursor {
-  private StreamIterator<QueryResult> streamIterator;
-  private Iterator<Query.Row> rowIterator;
+  // Volatile, since close() may be called from another thread to stop the stream.
+  private volatile StreamIterator<QueryResult> streamIterator;
+  private List<Query.Row> rows;
+  private int rowIndex;
+  private RowBatch rowBatch;
 
   private List<Field> fields;
+  private final AbandonedStreams.Watch watch;
 
   public StreamCursor(StreamIterator<QueryResult> streamIterator) {
     this.streamIterator = streamIterator;
+    this.watch = streamIterator == null ? null : AbandonedStreams.watch(this, streamIterator);
+  }
+
+  /**
+   * Sets whether to record where each cursor is created, so a cursor that is garbage-collected
+   * without being closed can be logged together with the stack trace that created it. This costs
+   * a stack trace per cursor, so it is off by default.
+   */
+  public static void setLeakTracking(boolean enabled) {
+    AbandonedStreams.setTrackAllocations(enabled);
+  }
+
+  /**
+   * Returns how many cursors were garbage-collected without being closed while their stream was
+   * still running, since the class was loaded.
+   */
+  public static long getLeakCount() {
+    return AbandonedStreams.getLeakCount();
   }
 
   @Override
@@ -70,8 +100,17 @@ public class StreamCursor extends Cursor {
 
   @Override
   public void close() throws Exception {
-    streamIterator.close();
-    streamIterator = null;
+    // Statement.cancel() and the reader may close the cursor at the same time, so take the stream
+    // out of the field first: only the thread that got it closes it.
+    StreamIterator<QueryResult> iterator;
+    synchronized (this) {
+      iterator = streamIterator;
+      streamIterator = null;
+    }
+    if (iterator != null) {
+      watch.cancel();
+      iterator.close();
+    }
   }
 
   @Override
@@ -80,21 +119,49 @@ public class StreamCursor extends Cursor {
       throw new SQLDataException("next() called on closed Cursor");
     }
 
-    // Get the next Row from the current QueryResult.
-    if (rowIterator != null && rowIterator.hasNext()) {
-      return new Row(getFieldMap(), rowIterator.next());
+    if (!hasBufferedRow()) {
+      // No more Rows and no more QueryResults.
+      return null;
+    }
+    return new Row(getFieldMap(), rows.get(rowIndex++));
+  }
+
+  @Override
+  public RowBatch nextBatch() throws SQLException {
+    if (streamIterator == null) {
+      throw new SQLDataException("nextBatch() called on closed Cursor");
+    }
+
+    if (!hasBufferedRow()) {
+      return null;
+    }
+    if (rowBatch == null) {
+      rowBatch = new RowBatch();
+    }
+    rowBatch.reset(getFieldMap(), rows, rowIndex);
+    rowIndex = rows.size();
+    return rowBatch;
+  }
+
+  /**
+   * Makes sure {@link #rows} has at least one row left at {@link #rowIndex}, fetching more
+   * {@link QueryResult}s as needed.
+   *
+   * @return false if there are no more rows in the stream.
+   */
+  private boolean hasBufferedRow() throws SQLException {
+    // Check for a remaining Row in the current QueryResult.
+    if (rows != null && rowIndex < rows.size()) {
+      return true;
     }
 
     // Get the next QueryResult. Loop in case we get a QueryResult with no Rows (e.g. only Fields).
     while (nextQueryResult()) {
-      // Get the first Row from the new QueryResult.
-      if (rowIterator.hasNext()) {
-        return new Row(getFieldMap(), rowIterator.next());
+      if (!rows.isEmpty()) {
+        return true;
       }
     }
-
-    // No more Rows and no more QueryResults.
-    return null;
+    return false;
   }
 
   /**
@@ -103,7 +170,7 @@ public class StreamCursor extends Cursor {
    * <p>Whereas the public {@link #next()} method advances the {@link Cursor} state to the next
    * {@link Row}, this method advances the internal state to the next {@link QueryResult}, which
    * contains a batch of rows. Specifically, we get the next {@link QueryResult} from
-   * {@link #streamIterator}, and then set {@link #rowIterator} accordingly.
+   * {@link #streamIterator}, and then set {@link #rows} accordingly.
    *
    * <p>If {@link #fields} is null, we assume the next {@link QueryResult} must contain the fields,
    * and set {@link #fields} from it.
@@ -111,16 +178,21 @@ public class StreamCursor extends Cursor {
    * @return false if there are no more results in the stream.
    */
   private boolean nextQueryResult() throws SQLException {
+    StreamIterator<QueryResult> streamIterator = this.streamIterator;
+    if (streamIterator == null) {
+      throw new SQLDataException("Cursor was closed while reading the stream");
+    }
     if (streamIterator.hasNext()) {
       QueryResult queryResult = streamIterator.next();
       if (fields == null) {
         // The first QueryResult should have the fields.
         fields = queryResult.getFieldsList();
       }
-      rowIterator = queryResult.getRowsList().iterator();
+      rows = queryResult.getRowsList();
+      rowIndex = 0;
       return true;
     } else {
-      rowIterator = null;
+      rows = null;
       return false;
     }
   }
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.vitess.client.StreamSubscriber;
+import io.vitess.client.StreamSubscription;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.Field;
+import io.vitess.proto.Query.QueryResult;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link Cursor} that merges several asynchronous streams, returning rows in whatever order they
+ * arrive.
+ *
+ * <p>At most {@code maxConcurrentStreams} streams are open at once. The others are started as
+ * earlier ones complete. Each open stream has at most one {@link QueryResult} requested or
+ * waiting to be read, so memory is bounded by the number of open streams, independent of how fast
+ * each of them is.
+ *
+ * <p>If any stream fails, the other streams are cancelled and the error is thrown once the rows
+ * received before it have been read.
+ */
+@NotThreadSafe
+public class UnorderedMergeCursor extends Cursor {
+  /**
+   * Starts one of the streams to merge.
+   */
+  public interface Source {
+    /**
+     * Starts the stream, delivering its results to {@code subscriber}.
+     */
+    void start(StreamSubscriber<QueryResult> subscriber) throws SQLException;
+  }
+
+  // State shared with the subscribers, guarded by "lock".
+  private final Object lock = new Object();
+  private final Queue<Source> pending;
+  private final Queue<Chunk> chunks = new ArrayDeque<>();
+  private final List<StreamSubscription> open = new ArrayList<>();
+  private int active;
+  private List<Field> fields;
+  private SQLException error;
+  private boolean closed;
+
+  // State only used by the consumer.
+  private List<Query.Row> rows;
+  private int rowIndex;
+  private RowBatch rowBatch;
+
+  /**
+   * Starts up to {@code maxConcurrentStreams} of the given streams.
+   */
+  public UnorderedMergeCursor(List<? extends Source> sources, int maxConcurrentStreams) {
+    checkArgument(maxConcurrentStreams >= 1, "maxConcurrentStreams must be at least 1: %s",
+        maxConcurrentStreams);
+    pending = new ArrayDeque<>(sources);
+    for (int i = 0; i < maxConcurrentStreams; i++) {
+      startNext();
+    }
+  }
+
+  @Override
+  public long getRowsAffected() throws SQLException {
+    throw new SQLFeatureNotSupportedException(
+        "getRowsAffected() is not supported on UnorderedMergeCursor");
+  }
+
+  @Override
+  public long getInsertId() throws SQLException {
+    throw new SQLFeatureNotSupportedException(
+        "getInsertId() is not supported on UnorderedMergeCursor");
+  }
+
+  @Override
+  public List<Field> getFields() throws SQLException {
+    synchronized (lock) {
+      if (closed) {
+        throw new SQLDataException("getFields() called on closed Cursor");
+      }
+      // The first result of each stream has the fields.
+      while (fields == null) {
+        if (error != null) {
+          throw error;
+        }
+        if (isFinished()) {
+          throw new SQLDataException("streams ended before fields were received");
+        }
+        await();
+      }
+      return fields;
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    List<StreamSubscription> toCancel;
+    synchronized (lock) {
+      closed = true;
+      pending.clear();
+      chunks.clear();
+      toCancel = new ArrayList<>(open);
+      open.clear();
+    }
+    for (StreamSubscription subscription : toCancel) {
+      subscription.cancel();
+    }
+  }
+
+  @Override
+  public Row next() throws SQLException {
+    if (!hasBufferedRow()) {
+      return null;
+    }
+    return new Row(getFieldMap(), rows.get(rowIndex++));
+  }
+
+  @Override
+  public RowBatch nextBatch() throws SQLException {
+    if (!hasBufferedRow()) {
+      return null;
+    }
+    if (rowBatch == null) {
+      rowBatch = new RowBatch();
+    }
+    rowBatch.reset(getFieldMap(), rows, rowIndex);
+    rowIndex = rows.size();
+    return rowBatch;
+  }
+
+  /**
+   * Makes sure {@link #rows} has at least one row left at {@link #rowIndex}, waiting for the next
+   * result from any stream as needed.
+   *
+   * @return false if all streams have completed.
+   */
+  private boolean hasBufferedRow() throws SQLException {
+    while (rows == null || rowIndex >= rows.size()) {
+      Chunk chunk;
+      synchronized (lock) {
+        if (closed) {
+          throw new SQLDataException("next() called on closed Cursor");
+        }
+        while (chunks.isEmpty()) {
+          if (error != null) {
+            throw error;
+          }
+          if (isFinished()) {
+            return false;
+          }
+          await();
+        }
+        chunk = chunks.remove();
+      }
+      // Only now that its last result was taken does the stream get to send the next one.
+      chunk.subscription.request(1);
+      rows = chunk.result.getRowsList();
+      rowIndex = 0;
+    }
+    return true;
+  }
+
+  /** Must be called while holding the lock. */
+  private boolean isFinished() {
+    return active == 0 && pending.isEmpty();
+  }
+
+  /** Waits for a subscriber to change the state. Must be called while holding the lock. */
+  private void await() throws SQLException {
+    try {
+      lock.wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(new SQLDataException("UnorderedMergeCursor interrupted while waiting for results", e));
+      throw error;
+    }
+  }
+
+  /** Starts the next pending stream, if any. Must be called without holding the lock. */
+  private void startNext() {
+    Source source;
+    synchronized (lock) {
+      if (closed || error != null || pending.isEmpty()) {
+        return;
+      }
+      source = pending.remove();
+      active++;
+    }
+    try {
+      source.start(new Subscriber());
+    } catch (SQLException e) {
+      fail(e);
+    }
+  }
+
+  /**
+   * Records the first error and cancels every open stream. Must be called without holding the
+   * lock.
+   */
+  private void fail(SQLException e) {
+    List<StreamSubscription> toCancel;
+    synchronized (lock) {
+      if (error == null) {
+        error = e;
+      }
+      pending.clear();
+      toCancel = new ArrayList<>(open);
+      open.clear();
+      lock.notifyAll();
+    }
+    for (StreamSubscription subscription : toCancel) {
+      subscription.cancel();
+    }
+  }
+
+  /** A result received from one of the streams. */
+  private static class Chunk {
+    final QueryResult result;
+    final StreamSubscription subscription;
+
+    Chunk(QueryResult result, StreamSubscription subscription) {
+      this.result = result;
+      this.subscription = subscription;
+    }
+  }
+
+  /** Receives the results of one stream. */
+  private class Subscriber implements StreamSubscriber<QueryResult> {
+    private StreamSubscription subscription;
+
+    @Override
+    public void onSubscribe(StreamSubscription subscription) {
+      this.subscription = subscription;
+      boolean cancel;
+      synchronized (lock) {
+        cancel = closed || error != null;
+        if (cancel) {
+          active--;
+        } else {
+          open.add(subscription);
+        }
+      }
+      if (cancel) {
+        subscription.cancel();
+      } else {
+        subscription.request(1);
+      }
+    }
+
+    @Override
+    public void onNext(QueryResult result) {
+      boolean hasRows = result.getRowsCount() > 0;
+      synchronized (lock) {
+        if (fields == null && result.getFieldsCount() > 0) {
+          fields = result.getFieldsList();
+          lock.notifyAll();
+        }
+        if (hasRows && !closed) {
+          chunks.add(new Chunk(result, subscription));
+          lock.notifyAll();
+        }
+      }
+      if (!hasRows) {
+        // Nothing for the consumer to take, so ask for the next result right away.
+        subscription.request(1);
+      }
+    }
+
+    @Override
+    public void onError(SQLException e) {
+      synchronized (lock) {
+        open.remove(subscription);
+        active--;
+      }
+      fail(e);
+    }
+
+    @Override
+    public void onComplete() {
+      synchronized (lock) {
+        open.remove(subscription);
+        active--;
+        lock.notifyAll();
+      }
+      startNext();
+    }
+  }
+}
@@ -17,6 +17,11 @@
 package io.vitess.client;
 
 import com.google.common.collect.ImmutableMap;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.BindVariable;
+import io.vitess.proto.Vtrpc;
+import io.vitess.proto.Vtrpc.RPCError;
+import java.util.Arrays;
 import java.util.Map;
 import org.junit.Assert;
 import org.junit.Test;
@@ -55,4 +60,32 @@ public class ProtoTest {
       Assert.assertEquals(entry.getValue(), Proto.getSQLState(entry.getKey()));
     }
   }
+
+  @Test
+  public void testBuildLongBindVariable() {
+    byte[] buffer = new byte[Proto.MAX_LONG_LENGTH];
+    for (long value : Arrays.asList(0L, 7L, -7L, 10L, -10L, 1234567890123L, Long.MAX_VALUE,
+        Long.MIN_VALUE)) {
+      BindVariable bindVar = Proto.buildBindVariable(value, buffer);
+      Assert.assertEquals(Query.Type.INT64, bindVar.getType());
+      Assert.assertEquals(String.valueOf(value), bindVar.getValue().toStringUtf8());
+      Assert.assertEquals(bindVar, Proto.buildBindVariable((Object) value));
+    }
+  }
+
+  @Test
+  public void testCheckErrorKeepsCode() throws Exception {
+    RPCError error = RPCError.newBuilder()
+        .setCode(Vtrpc.Code.FAILED_PRECONDITION)
+        .setMessage("retry: serving keyspace (errno 1105) (sqlstate HY000)")
+        .build();
+    try {
+      Proto.checkError(error);
+      Assert.fail("expected an error");
+    } catch (RpcErrorException e) {
+      Assert.assertEquals(Vtrpc.Code.FAILED_PRECONDITION, e.getCode());
+      Assert.assertEquals(1105, e.getErrorCode());
+      Assert.assertEquals("HY000", e.getSQLState());
+    }
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import io.vitess.proto.Topodata.SrvKeyspace;
+import io.vitess.proto.Topodata.TabletType;
+import io.vitess.proto.Vtgate.GetSrvKeyspaceResponse;
+import io.vitess.proto.Vtrpc;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import org.joda.time.Duration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ShardMapCacheTest {
+  private static final SQLException ROUTING_ERROR = new RpcErrorException(
+      Vtrpc.Code.FAILED_PRECONDITION,
+      "Vitess RPC error: code: FAILED_PRECONDITION\nmessage: \"invalid tablet type\"", "", 0);
+
+  /** Responses to hand out, in order, for each getSrvKeyspace() call. */
+  private final Queue<SettableFuture<GetSrvKeyspaceResponse>> responses = new ArrayDeque<>();
+  private int fetches;
+  private VTGateConn conn;
+
+  @Before
+  public void setUp() {
+    RpcClient client = (RpcClient) Proxy.newProxyInstance(RpcClient.class.getClassLoader(),
+        new Class<?>[] {RpcClient.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!method.getName().equals("getSrvKeyspace")) {
+              throw new UnsupportedOperationException(method.getName());
+            }
+            fetches++;
+            SettableFuture<GetSrvKeyspaceResponse> response = responses.poll();
+            if (response == null) {
+              return Futures.immediateFuture(response(ShardMapTest.SRV_KEYSPACE));
+            }
+            return response;
+          }
+        });
+    conn = new VTGateConn(client);
+  }
+
+  @Test
+  public void testFetchesOnce() throws Exception {
+    ShardMapCache cache = new ShardMapCache(conn, Duration.standardHours(1), Duration.ZERO);
+    ShardMap master = cache.getShardMap("ks", TabletType.MASTER);
+    Assert.assertEquals("80-", master.getShard(new byte[] {(byte) 0x80}));
+    Assert.assertSame(master, cache.getShardMap("ks", TabletType.MASTER));
+    Assert.assertEquals("0", cache.getShardMap("ks", TabletType.REPLICA).getShard(new byte[0]));
+    Assert.assertEquals(1, fetches);
+  }
+
+  @Test
+  public void testRefreshDoesNotBlock() throws Exception {
+    ShardMapCache cache = new ShardMapCache(conn, Duration.millis(1), Duration.ZERO);
+    ShardMap first = cache.getShardMap("ks", TabletType.MASTER);
+    Thread.sleep(10);
+
+    // The refresh is still in flight, so the old map is returned meanwhile.
+    SettableFuture<GetSrvKeyspaceResponse> refresh = SettableFuture.create();
+    responses.add(refresh);
+    Assert.assertSame(first, cache.getShardMap("ks", TabletType.MASTER));
+    Assert.assertEquals(2, fetches);
+
+    refresh.set(response(ShardMapTest.SRV_KEYSPACE));
+    Assert.assertNotSame(first, cache.getShardMap("ks", TabletType.MASTER));
+  }
+
+  @Test
+  public void testInvalidateIfRoutingError() throws Exception {
+    ShardMapCache cache = new ShardMapCache(conn, Duration.standardHours(1), Duration.ZERO);
+    cache.getShardMap("ks", TabletType.MASTER);
+
+    Assert.assertFalse(cache.invalidateIfRoutingError("ks", new SQLTransientException("busy")));
+    // Only the code counts, not a message that happens to mention it.
+    Assert.assertFalse(cache.invalidateIfRoutingError("ks",
+        new SQLNonTransientException("select 'FAILED_PRECONDITION' from dual")));
+    cache.getShardMap("ks", TabletType.MASTER);
+    Assert.assertEquals(1, fetches);
+
+    Assert.assertTrue(cache.invalidateIfRoutingError("ks", ROUTING_ERROR));
+    cache.getShardMap("ks", TabletType.MASTER);
+    Assert.assertEquals(2, fetches);
+  }
+
+  @Test
+  public void testInvalidateOnRoutingError() throws Exception {
+    ShardMapCache cache = new ShardMapCache(conn, Duration.standardHours(1), Duration.ZERO);
+    cache.getShardMap("ks", TabletType.MASTER);
+
+    SettableFuture<Object> call = SettableFuture.create();
+    SQLFuture<Object> wrapped = cache.invalidateOnRoutingError("ks", call);
+    call.setException(ROUTING_ERROR);
+    try {
+      wrapped.checkedGet();
+      Assert.fail("expected the routing error");
+    } catch (RpcErrorException e) {
+      Assert.assertEquals(ROUTING_ERROR.getMessage(), e.getMessage());
+      Assert.assertEquals(Vtrpc.Code.FAILED_PRECONDITION, e.getCode());
+    }
+    cache.getShardMap("ks", TabletType.MASTER);
+    Assert.assertEquals(2, fetches);
+  }
+
+  private static GetSrvKeyspaceResponse response(SrvKeyspace srvKeyspace) {
+    return GetSrvKeyspaceResponse.newBuilder().setSrvKeyspace(srvKeyspace).build();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import io.vitess.proto.Topodata.KeyRange;
+import io.vitess.proto.Topodata.ShardReference;
+import io.vitess.proto.Topodata.SrvKeyspace;
+import io.vitess.proto.Topodata.SrvKeyspace.KeyspacePartition;
+import io.vitess.proto.Topodata.TabletType;
+import java.sql.SQLDataException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ShardMapTest {
+  /** Shards -40, 40-80 and 80-, listed out of order. */
+  static final SrvKeyspace SRV_KEYSPACE = SrvKeyspace.newBuilder()
+      .addPartitions(KeyspacePartition.newBuilder()
+          .setServedType(TabletType.MASTER)
+          .addShardReferences(shard("80-", "80", ""))
+          .addShardReferences(shard("-40", "", "40"))
+          .addShardReferences(shard("40-80", "40", "80")))
+      .addPartitions(KeyspacePartition.newBuilder()
+          .setServedType(TabletType.REPLICA)
+          .addShardReferences(shard("0", "", "")))
+      .build();
+
+  @Test
+  public void testGetShard() throws Exception {
+    ShardMap shardMap = ShardMap.create("ks", SRV_KEYSPACE, TabletType.MASTER);
+    Assert.assertEquals(ImmutableList.of("-40", "40-80", "80-"), shardMap.getShards());
+    Assert.assertEquals("-40", shardMap.getShard(bytes()));
+    Assert.assertEquals("-40", shardMap.getShard(bytes(0x3f, 0xff)));
+    Assert.assertEquals("40-80", shardMap.getShard(bytes(0x40)));
+    Assert.assertEquals("40-80", shardMap.getShard(bytes(0x7f, 0xff, 0xff)));
+    // Keyspace ids compare as unsigned bytes.
+    Assert.assertEquals("80-", shardMap.getShard(bytes(0x80)));
+    Assert.assertEquals("80-", shardMap.getShard(bytes(0xff, 0xff)));
+  }
+
+  @Test
+  public void testUnshardedKeyspace() throws Exception {
+    ShardMap shardMap = ShardMap.create("ks", SRV_KEYSPACE, TabletType.REPLICA);
+    Assert.assertEquals("0", shardMap.getShard(bytes()));
+    Assert.assertEquals("0", shardMap.getShard(bytes(0xff)));
+  }
+
+  @Test
+  public void testGap() throws Exception {
+    SrvKeyspace srvKeyspace = SrvKeyspace.newBuilder()
+        .addPartitions(KeyspacePartition.newBuilder()
+            .setServedType(TabletType.MASTER)
+            .addShardReferences(shard("-40", "", "40"))
+            .addShardReferences(shard("80-", "80", "")))
+        .build();
+    ShardMap shardMap = ShardMap.create("ks", srvKeyspace, TabletType.MASTER);
+    Assert.assertNull(shardMap.getShard(bytes(0x50)));
+    try {
+      shardMap.groupByShard(Arrays.asList(bytes(0x10), bytes(0x50)));
+      Assert.fail("expected SQLDataException");
+    } catch (SQLDataException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testGroupByShard() throws Exception {
+    ShardMap shardMap = ShardMap.create("ks", SRV_KEYSPACE, TabletType.MASTER);
+    byte[] a = bytes(0x90);
+    byte[] b = bytes(0x10);
+    byte[] c = bytes(0xa0);
+    Map<String, List<byte[]>> groups = shardMap.groupByShard(Arrays.asList(a, b, c));
+    Assert.assertEquals(ImmutableList.of("80-", "-40"), ImmutableList.copyOf(groups.keySet()));
+    Assert.assertEquals(Arrays.asList(a, c), groups.get("80-"));
+    Assert.assertEquals(Arrays.asList(b), groups.get("-40"));
+  }
+
+  @Test
+  public void testGetShardsOfKeyRanges() throws Exception {
+    ShardMap shardMap = ShardMap.create("ks", SRV_KEYSPACE, TabletType.MASTER);
+    Assert.assertEquals(ImmutableList.of("-40", "40-80", "80-"),
+        shardMap.getShards(Arrays.asList(keyRange("", ""))));
+    Assert.assertEquals(ImmutableList.of("40-80"),
+        shardMap.getShards(Arrays.asList(keyRange("40", "80"))));
+    Assert.assertEquals(ImmutableList.of("-40", "80-"),
+        shardMap.getShards(Arrays.asList(keyRange("90", ""), keyRange("10", "20"))));
+    Assert.assertEquals(ImmutableList.of("40-80", "80-"),
+        shardMap.getShards(Arrays.asList(keyRange("7f", "81"))));
+  }
+
+  @Test
+  public void testUnservedTabletType() {
+    try {
+      ShardMap.create("ks", SRV_KEYSPACE, TabletType.RDONLY);
+      Assert.fail("expected SQLDataException");
+    } catch (SQLDataException e) {
+      // expected
+    }
+  }
+
+  private static ShardReference shard(String name, String start, String end) {
+    return ShardReference.newBuilder().setName(name).setKeyRange(keyRange(start, end)).build();
+  }
+
+  private static KeyRange keyRange(String start, String end) {
+    return KeyRange.newBuilder()
+        .setStart(ByteString.copyFrom(hex(start)))
+        .setEnd(ByteString.copyFrom(hex(end)))
+        .build();
+  }
+
+  private static byte[] hex(String hex) {
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import com.google.common.primitives.UnsignedLong;
+import com.google.protobuf.ByteString;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AsciiDecoderTest {
+  @Test
+  public void testParseLong() {
+    for (String value : Arrays.asList("0", "-0", "+7", "12345", "-12345",
+        String.valueOf(Long.MAX_VALUE), String.valueOf(Long.MIN_VALUE))) {
+      Assert.assertEquals(value, Long.parseLong(value), AsciiDecoder.parseLong(bytes(value), 0,
+          value.length()));
+    }
+    // Offset and length select a cell within a packed row buffer.
+    Assert.assertEquals(42, AsciiDecoder.parseLong(ByteString.copyFromUtf8("x42y"), 1, 2));
+  }
+
+  @Test
+  public void testParseLongInvalid() {
+    for (String value : Arrays.asList("", "-", "+", "1a", " 1", "1.0", "9223372036854775808",
+        "-9223372036854775809")) {
+      try {
+        AsciiDecoder.parseLong(bytes(value), 0, value.length());
+        Assert.fail("expected NumberFormatException for: " + value);
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testParseInt() {
+    Assert.assertEquals(Integer.MAX_VALUE, AsciiDecoder.parseInt(bytes("2147483647"), 0, 10));
+    Assert.assertEquals(Integer.MIN_VALUE, AsciiDecoder.parseInt(bytes("-2147483648"), 0, 11));
+    try {
+      AsciiDecoder.parseInt(bytes("2147483648"), 0, 10);
+      Assert.fail("expected NumberFormatException");
+    } catch (NumberFormatException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testParseUnsignedLong() {
+    for (String value : Arrays.asList("0", "12345", "9223372036854775808",
+        "18446744073709551615")) {
+      Assert.assertEquals(value, UnsignedLong.valueOf(value).longValue(),
+          AsciiDecoder.parseUnsignedLong(bytes(value), 0, value.length()));
+    }
+    for (String value : Arrays.asList("", "-1", "18446744073709551616", "1x")) {
+      try {
+        AsciiDecoder.parseUnsignedLong(bytes(value), 0, value.length());
+        Assert.fail("expected NumberFormatException for: " + value);
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testParseDouble() {
+    for (String value : Arrays.asList("0", "-0", "1.5", "-3.25", "0.05", ".5", "5.",
+        "123456789012345", "1234567890.12345678", "0.1", "2.2250738585072014E-308", "1e22",
+        "-1.7976931348623157e308", "1e-5", "4.9E-324", "NaN", "-Infinity", "0.30000000000000004")) {
+      Assert.assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)),
+          Double.doubleToLongBits(AsciiDecoder.parseDouble(bytes(value), 0, value.length())));
+    }
+    for (String value : Arrays.asList("", "-", "1..0", "e5", "1e")) {
+      try {
+        AsciiDecoder.parseDouble(bytes(value), 0, value.length());
+        Assert.fail("expected NumberFormatException for: " + value);
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testParseBigDecimal() {
+    for (String value : Arrays.asList("0", "-0.00", "1.50", "-123.456", "007", ".5", "5.",
+        "1234567890123456789012345.6789", "1E+3")) {
+      Assert.assertEquals(value, new BigDecimal(value),
+          AsciiDecoder.parseBigDecimal(bytes(value), 0, value.length()));
+    }
+  }
+
+  private static ByteString bytes(String value) {
+    return ByteString.copyFromUtf8(value);
+  }
+}
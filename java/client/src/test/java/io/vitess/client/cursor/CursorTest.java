@@ -18,18 +18,27 @@ package io.vitess.client.cursor;
 
 import com.google.common.primitives.UnsignedLong;
 import com.google.protobuf.ByteString;
+import io.vitess.client.CancellableStream;
+import io.vitess.client.StreamIterator;
 import io.vitess.proto.Query;
 import io.vitess.proto.Query.Field;
 import io.vitess.proto.Query.QueryResult;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.Date;
+import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -331,4 +340,270 @@ public class CursorTest {
       Assert.assertTrue(row.wasNull());
     }
   }
+
+  @Test
+  public void testNextBatch() throws Exception {
+    try (Cursor cursor = new SimpleCursor(QueryResult.newBuilder()
+        .addFields(Field.newBuilder().setName("col1").setType(Query.Type.INT32).build())
+        .addFields(Field.newBuilder().setName("col2").setType(Query.Type.VARCHAR).build())
+        .addRows(Query.Row.newBuilder().addLengths("1".length()).addLengths("abc".length())
+            .setValues(ByteString.copyFromUtf8("1abc")))
+        .addRows(Query.Row.newBuilder().addLengths("22".length()).addLengths(-1) // SQL NULL
+            .setValues(ByteString.copyFromUtf8("22")))
+        .addRows(Query.Row.newBuilder().addLengths("333".length()).addLengths("".length())
+            .setValues(ByteString.copyFromUtf8("333")))
+        .build())) {
+      // A batch starts after the rows already returned by next().
+      Row row = cursor.next();
+      Assert.assertNotNull(row);
+      Assert.assertEquals(1, row.getInt("col1"));
+
+      RowBatch batch = cursor.nextBatch();
+      Assert.assertNotNull(batch);
+      Assert.assertEquals(2, batch.size());
+      Assert.assertEquals(2, batch.getColumnCount());
+      Assert.assertEquals(2, batch.findColumn("COL2"));
+
+      Assert.assertEquals("22", batch.getString(0, 1));
+      Assert.assertEquals(0, batch.getOffset(0, 1));
+      Assert.assertEquals(2, batch.getLength(0, 1));
+      Assert.assertTrue(batch.isNull(0, 2));
+      Assert.assertEquals(-1, batch.getLength(0, 2));
+      Assert.assertEquals(null, batch.getString(0, 2));
+      Assert.assertEquals(null, batch.getBytes(0, 2));
+
+      Assert.assertArrayEquals("333".getBytes(), batch.getBytes(1, 1));
+      Assert.assertFalse(batch.isNull(1, 2));
+      Assert.assertEquals("", batch.getString(1, 2));
+      Assert.assertEquals(3, batch.getOffset(1, 2));
+      byte[] target = new byte[5];
+      Assert.assertEquals(3, batch.copyTo(1, 1, target, 2));
+      Assert.assertArrayEquals(new byte[] {0, 0, '3', '3', '3'}, target);
+
+      Assert.assertNull(cursor.nextBatch());
+      Assert.assertNull(cursor.next());
+    }
+  }
+
+  @Test
+  public void testDefaultNextBatch() throws Exception {
+    // A subclass written before nextBatch() existed only implements next().
+    final SimpleCursor rows = new SimpleCursor(QueryResult.newBuilder()
+        .addFields(Field.newBuilder().setName("col1").setType(Query.Type.INT64).build())
+        .addRows(Query.Row.newBuilder().addLengths(1).setValues(ByteString.copyFromUtf8("1")))
+        .addRows(Query.Row.newBuilder().addLengths(1).setValues(ByteString.copyFromUtf8("2")))
+        .build());
+    try (Cursor cursor = new Cursor() {
+      @Override
+      public long getRowsAffected() {
+        return 0;
+      }
+
+      @Override
+      public long getInsertId() {
+        return 0;
+      }
+
+      @Override
+      public Row next() throws SQLException {
+        return rows.next();
+      }
+
+      @Override
+      public List<Field> getFields() throws SQLException {
+        return rows.getFields();
+      }
+
+      @Override
+      public void close() {}
+    }) {
+      RowBatch batch = cursor.nextBatch();
+      Assert.assertNotNull(batch);
+      Assert.assertEquals(2, batch.size());
+      Assert.assertEquals(1L, batch.getLong(0, 1));
+      Assert.assertEquals(2L, batch.getLong(1, 1));
+      Assert.assertNull(cursor.nextBatch());
+    }
+  }
+
+  @Test
+  public void testStreamCursorNextBatch() throws Exception {
+    final Field field = Field.newBuilder().setName("col1").setType(Query.Type.INT64).build();
+    final Iterator<QueryResult> results = Arrays.asList(
+        QueryResult.newBuilder().addFields(field).build(),
+        QueryResult.newBuilder()
+            .addRows(Query.Row.newBuilder().addLengths(1).setValues(ByteString.copyFromUtf8("1")))
+            .addRows(Query.Row.newBuilder().addLengths(1).setValues(ByteString.copyFromUtf8("2")))
+            .build(),
+        QueryResult.newBuilder()
+            .addRows(Query.Row.newBuilder().addLengths(1).setValues(ByteString.copyFromUtf8("3")))
+            .build())
+        .iterator();
+    try (Cursor cursor = new StreamCursor(new StreamIterator<QueryResult>() {
+      @Override
+      public boolean hasNext() {
+        return results.hasNext();
+      }
+
+      @Override
+      public QueryResult next() {
+        return results.next();
+      }
+
+      @Override
+      public void close() {}
+    })) {
+      // The fields-only chunk is skipped.
+      RowBatch batch = cursor.nextBatch();
+      Assert.assertNotNull(batch);
+      Assert.assertEquals(Arrays.asList(field), batch.getFields());
+      Assert.assertEquals(2, batch.size());
+      Assert.assertEquals("1", batch.getString(0, 1));
+      Assert.assertEquals("2", batch.getString(1, 1));
+
+      // The same instance is reused for the next chunk.
+      Assert.assertSame(batch, cursor.nextBatch());
+      Assert.assertEquals(1, batch.size());
+      Assert.assertEquals("3", batch.getString(0, 1));
+
+      Assert.assertNull(cursor.nextBatch());
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testAbandonedStreamCursorIsClosed() throws Exception {
+    long leaks = StreamCursor.getLeakCount();
+    CountDownLatch closed = new CountDownLatch(1);
+    abandonStreamCursor(closed);
+    while (!closed.await(100, TimeUnit.MILLISECONDS)) {
+      System.gc();
+    }
+    // The leak is counted once the stream is closed.
+    while (StreamCursor.getLeakCount() == leaks) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(leaks + 1, StreamCursor.getLeakCount());
+  }
+
+  @Test(timeout = 30000)
+  public void testAbandonedFinishedStreamIsNotLeaked() throws Exception {
+    long leaks = StreamCursor.getLeakCount();
+    CountDownLatch closed = new CountDownLatch(1);
+    abandonFinishedStreamCursor(closed);
+    while (!closed.await(100, TimeUnit.MILLISECONDS)) {
+      System.gc();
+    }
+    Thread.sleep(100);
+    Assert.assertEquals(leaks, StreamCursor.getLeakCount());
+  }
+
+  @Test
+  public void testClosedStreamCursorIsNotLeaked() throws Exception {
+    long leaks = StreamCursor.getLeakCount();
+    CountDownLatch closed = new CountDownLatch(1);
+    abandonStreamCursor(closed).close();
+    Assert.assertEquals(0, closed.getCount());
+    System.gc();
+    Thread.sleep(100);
+    Assert.assertEquals(leaks, StreamCursor.getLeakCount());
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrentCloseClosesStreamOnce() throws Exception {
+    final AtomicInteger closes = new AtomicInteger();
+    final CountDownLatch closing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Cursor cursor = new StreamCursor(new StreamIterator<QueryResult>() {
+      @Override
+      public boolean hasNext() {
+        return false;
+      }
+
+      @Override
+      public QueryResult next() {
+        throw new NoSuchElementException();
+      }
+
+      @Override
+      public void close() throws Exception {
+        closes.incrementAndGet();
+        closing.countDown();
+        release.await();
+      }
+    });
+    final AtomicReference<Exception> error = new AtomicReference<>();
+    Thread canceller = new Thread() {
+      @Override
+      public void run() {
+        try {
+          cursor.close();
+        } catch (Exception e) {
+          error.set(e);
+        }
+      }
+    };
+    canceller.start();
+
+    // While the other thread is still closing the stream, close the cursor again.
+    closing.await();
+    cursor.close();
+    release.countDown();
+    canceller.join();
+    Assert.assertNull(error.get());
+    Assert.assertEquals(1, closes.get());
+  }
+
+  /** Creates a cursor over a stream that counts down the latch when closed. */
+  private static Cursor abandonStreamCursor(final CountDownLatch closed) {
+    return new StreamCursor(new StreamIterator<QueryResult>() {
+      @Override
+      public boolean hasNext() {
+        return false;
+      }
+
+      @Override
+      public QueryResult next() {
+        throw new NoSuchElementException();
+      }
+
+      @Override
+      public void close() {
+        closed.countDown();
+      }
+    });
+  }
+
+  /** Creates a cursor over a stream that had already ended when the latch is counted down. */
+  private static Cursor abandonFinishedStreamCursor(final CountDownLatch closed) {
+    return new StreamCursor(new FinishedStream(closed));
+  }
+
+  private static class FinishedStream implements StreamIterator<QueryResult>, CancellableStream {
+    private final CountDownLatch closed;
+
+    FinishedStream(CountDownLatch closed) {
+      this.closed = closed;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return false;
+    }
+
+    @Override
+    public QueryResult next() {
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public void close() {
+      closeStream();
+    }
+
+    @Override
+    public boolean closeStream() {
+      closed.countDown();
+      return false;
+    }
+  }
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.cursor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import io.vitess.client.StreamSubscriber;
+import io.vitess.client.StreamSubscription;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.Field;
+import io.vitess.proto.Query.QueryResult;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MergeCursorTest {
+  private static final List<Field> FIELDS = ImmutableList.of(
+      Field.newBuilder().setName("id").setType(Query.Type.INT64).build(),
+      Field.newBuilder().setName("name").setType(Query.Type.VARCHAR).build());
+
+  @Test
+  public void testOrderedMerge() throws Exception {
+    try (Cursor cursor = new OrderedMergeCursor(
+        Arrays.asList(
+            cursor(row("1", "a"), row("4", "a"), row("7", "a")),
+            cursor(row(null, "b"), row("4", "b"), row("5", "b")),
+            cursor()),
+        ImmutableList.of(OrderBy.asc("id")))) {
+      // NULL sorts first, and equal rows keep the order of their cursors.
+      Assert.assertEquals(Arrays.asList("null b", "1 a", "4 a", "4 b", "5 b", "7 a"),
+          drain(cursor));
+    }
+  }
+
+  @Test
+  public void testOrderedMergeDescending() throws Exception {
+    try (Cursor cursor = new OrderedMergeCursor(
+        Arrays.asList(
+            cursor(row("2", "z"), row("2", "b"), row("1", "x")),
+            cursor(row("3", "a"), row("2", "c"))),
+        ImmutableList.of(OrderBy.desc("id"), OrderBy.desc("name")))) {
+      Assert.assertEquals(Arrays.asList("3 a", "2 z", "2 c", "2 b", "1 x"), drain(cursor));
+    }
+  }
+
+  @Test
+  public void testOrderedMergeNextBatch() throws Exception {
+    try (Cursor cursor = new OrderedMergeCursor(
+        Arrays.asList(cursor(row("1", "a"), row("3", "a")), cursor(row("2", "b"))),
+        ImmutableList.of(OrderBy.asc("id")))) {
+      RowBatch batch = cursor.nextBatch();
+      Assert.assertEquals(3, batch.size());
+      Assert.assertEquals(1, batch.getLong(0, 1));
+      Assert.assertEquals(2, batch.getLong(1, 1));
+      Assert.assertEquals(3, batch.getLong(2, 1));
+      Assert.assertNull(cursor.nextBatch());
+    }
+  }
+
+  @Test
+  public void testUnorderedMergeLimitsOpenStreams() throws Exception {
+    FakeSource a = new FakeSource();
+    FakeSource b = new FakeSource();
+    FakeSource c = new FakeSource();
+    try (Cursor cursor = new UnorderedMergeCursor(Arrays.asList(a, b, c), 2)) {
+      Assert.assertTrue(a.started());
+      Assert.assertTrue(b.started());
+      Assert.assertFalse(c.started());
+      // Each open stream gets to send one result at a time.
+      Assert.assertEquals(1, a.requested);
+      Assert.assertEquals(1, b.requested);
+
+      b.send(result(true, row("1", "b")));
+      a.send(result(true, row("2", "a"), row("3", "a")));
+      Assert.assertEquals(FIELDS, cursor.getFields());
+      Assert.assertEquals("1 b", format(cursor.next()));
+      // The result was taken, so the next one is requested.
+      Assert.assertEquals(2, b.requested);
+      Assert.assertEquals(1, a.requested);
+
+      b.complete();
+      Assert.assertTrue(c.started());
+      c.send(result(true));
+      // A result without rows is skipped, and the next one requested right away.
+      Assert.assertEquals(2, c.requested);
+      c.send(result(false, row("4", "c")));
+      c.complete();
+      a.complete();
+
+      Assert.assertEquals(Arrays.asList("2 a", "3 a", "4 c"), drain(cursor));
+    }
+  }
+
+  @Test
+  public void testUnorderedMergeErrorCancelsOtherStreams() throws Exception {
+    FakeSource a = new FakeSource();
+    FakeSource b = new FakeSource();
+    FakeSource c = new FakeSource();
+    try (Cursor cursor = new UnorderedMergeCursor(Arrays.asList(a, b, c), 2)) {
+      a.send(result(true, row("1", "a")));
+      b.subscriber.onError(new SQLTransientException("shard down"));
+      Assert.assertTrue(a.cancelled);
+      Assert.assertFalse(c.started());
+
+      Assert.assertEquals("1 a", format(cursor.next()));
+      try {
+        cursor.next();
+        Assert.fail("expected the stream error");
+      } catch (SQLTransientException e) {
+        Assert.assertEquals("shard down", e.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testUnorderedMergeCloseCancelsStreams() throws Exception {
+    FakeSource a = new FakeSource();
+    FakeSource b = new FakeSource();
+    Cursor cursor = new UnorderedMergeCursor(Arrays.asList(a, b), 1);
+    cursor.close();
+    Assert.assertTrue(a.cancelled);
+    Assert.assertFalse(b.started());
+  }
+
+  private static List<String> drain(Cursor cursor) throws SQLException {
+    List<String> rows = new ArrayList<>();
+    for (Row row = cursor.next(); row != null; row = cursor.next()) {
+      rows.add(format(row));
+    }
+    return rows;
+  }
+
+  private static String format(Row row) throws SQLException {
+    return row.getObject("id") + " " + ByteString.copyFrom((byte[]) row.getObject("name")).toStringUtf8();
+  }
+
+  private static Cursor cursor(Query.Row... rows) {
+    return new SimpleCursor(result(true, rows));
+  }
+
+  private static QueryResult result(boolean withFields, Query.Row... rows) {
+    QueryResult.Builder result = QueryResult.newBuilder().addAllRows(Arrays.asList(rows));
+    if (withFields) {
+      result.addAllFields(FIELDS);
+    }
+    return result.build();
+  }
+
+  private static Query.Row row(String... values) {
+    Query.Row.Builder row = Query.Row.newBuilder();
+    ByteString.Output bytes = ByteString.newOutput();
+    for (String value : values) {
+      if (value == null) {
+        row.addLengths(-1);
+      } else {
+        row.addLengths(value.length());
+        bytes.write(value.getBytes(), 0, value.length());
+      }
+    }
+    return row.setValues(bytes.toByteString()).build();
+  }
+
+  /** A stream whose results are sent by the test. */
+  private static class FakeSource implements UnorderedMergeCursor.Source, StreamSubscription {
+    StreamSubscriber<QueryResult> subscriber;
+    long requested;
+    boolean cancelled;
+
+    @Override
+    public void start(StreamSubscriber<QueryResult> subscriber) {
+      this.subscriber = subscriber;
+      subscriber.onSubscribe(this);
+    }
+
+    boolean started() {
+      return subscriber != null;
+    }
+
+    void send(QueryResult result) {
+      Assert.assertTrue("result was not requested", requested > 0);
+      subscriber.onNext(result);
+    }
+
+    void complete() {
+      subscriber.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+      requested += n;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.vitess.client.cursor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.Field;
+import io.vitess.proto.Query.QueryResult;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.Instant;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ResumableCursorTest {
+  private static final List<Field> FIELDS = ImmutableList.of(
+      Field.newBuilder().setName("name").setType(Query.Type.VARCHAR).build(),
+      Field.newBuilder().setName("id").setType(Query.Type.INT64).build());
+
+  @Test
+  public void testResumesAfterLastRow() throws Exception {
+    FakeSource source = new FakeSource(
+        cursor(new SQLTransientException("unavailable"), row("a", "1"), row("b", "2")),
+        cursor(new SQLTransientException("unavailable")),
+        cursor(null, row("c", "3"), row("d", "4")));
+    try (Cursor cursor = new ResumableCursor(source, "id", 2)) {
+      Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), drain(cursor));
+    }
+    Assert.assertEquals(3, source.afters.size());
+    Assert.assertNull(source.afters.get(0));
+    for (Query.BindVariable after : source.afters.subList(1, 3)) {
+      Assert.assertEquals(Query.Type.INT64, after.getType());
+      Assert.assertEquals("2", after.getValue().toStringUtf8());
+    }
+  }
+
+  @Test
+  public void testResumesAfterLastBatch() throws Exception {
+    FakeSource source = new FakeSource(
+        cursor(new SQLTransientException("unavailable"), row("a", "1"), row("b", "2")),
+        cursor(null, row("c", "3")));
+    try (Cursor cursor = new ResumableCursor(source, "id", 1)) {
+      Assert.assertEquals(2, cursor.nextBatch().size());
+      RowBatch batch = cursor.nextBatch();
+      Assert.assertEquals(1, batch.size());
+      Assert.assertEquals(3, batch.getLong(0, 2));
+      Assert.assertNull(cursor.nextBatch());
+    }
+    Assert.assertEquals("2", source.afters.get(1).getValue().toStringUtf8());
+  }
+
+  @Test
+  public void testRestartsIfNoRowWasRead() throws Exception {
+    FakeSource source = new FakeSource(
+        cursor(new SQLTransientException("unavailable")),
+        cursor(null, row("a", "1")));
+    try (Cursor cursor = new ResumableCursor(source, "id", 1)) {
+      Assert.assertEquals(Arrays.asList("a"), drain(cursor));
+    }
+    Assert.assertEquals(Arrays.asList(null, null), source.afters);
+  }
+
+  @Test
+  public void testGivesUpAfterMaxRetries() throws Exception {
+    SQLTransientException error = new SQLTransientException("unavailable");
+    FakeSource source = new FakeSource(
+        cursor(error, row("a", "1")),
+        cursor(error));
+    try (Cursor cursor = new ResumableCursor(source, "id", 1)) {
+      Assert.assertNotNull(cursor.next());
+      try {
+        cursor.next();
+        Assert.fail("expected the stream error");
+      } catch (SQLTransientException e) {
+        Assert.assertSame(error, e);
+      }
+    }
+    Assert.assertEquals(2, source.afters.size());
+  }
+
+  @Test(timeout = 10000)
+  public void testDoesNotResumeAfterDeadline() throws Exception {
+    SQLTimeoutException error = new SQLTimeoutException("deadline exceeded");
+    FakeSource source = new FakeSource(cursor(error, row("a", "1")));
+    Instant deadline = Instant.now().plus(ResumableCursor.INITIAL_BACKOFF_MILLIS / 2);
+    try (Cursor cursor = new ResumableCursor(source, "id", 3, deadline)) {
+      Assert.assertNotNull(cursor.next());
+      long start = System.nanoTime();
+      try {
+        cursor.next();
+        Assert.fail("expected the stream error");
+      } catch (SQLTimeoutException e) {
+        Assert.assertSame(error, e);
+      }
+      // Gave up right away instead of backing off.
+      Assert.assertTrue(System.nanoTime() - start
+          < TimeUnit.MILLISECONDS.toNanos(ResumableCursor.INITIAL_BACKOFF_MILLIS));
+    }
+    Assert.assertEquals(1, source.afters.size());
+  }
+
+  @Test
+  public void testDoesNotResumeOnOtherErrors() throws Exception {
+    SQLException error = new SQLNonTransientException("syntax error");
+    FakeSource source = new FakeSource(cursor(error, row("a", "1")));
+    try (Cursor cursor = new ResumableCursor(source, "id", 3)) {
+      Assert.assertNotNull(cursor.next());
+      try {
+        cursor.next();
+        Assert.fail("expected the stream error");
+      } catch (SQLException e) {
+        Assert.assertSame(error, e);
+      }
+    }
+    Assert.assertEquals(1, source.afters.size());
+  }
+
+  private static List<String> drain(Cursor cursor) throws SQLException {
+    List<String> names = new ArrayList<>();
+    for (Row row = cursor.next(); row != null; row = cursor.next()) {
+      names.add(row.getRawValue("name").toStringUtf8());
+    }
+    return names;
+  }
+
+  private static Cursor cursor(SQLException error, Query.Row... rows) {
+    return new FailingCursor(
+        QueryResult.newBuilder().addAllFields(FIELDS).addAllRows(Arrays.asList(rows)).build(),
+        error);
+  }
+
+  private static Query.Row row(String... values) {
+    Query.Row.Builder row = Query.Row.newBuilder();
+    ByteString.Output bytes = ByteString.newOutput();
+    for (String value : values) {
+      row.addLengths(value.length());
+      bytes.write(value.getBytes(), 0, value.length());
+    }
+    return row.setValues(bytes.toByteString()).build();
+  }
+
+  /** Hands out the given cursors one after the other, recording where each was asked to start. */
+  private static class FakeSource implements ResumableCursor.Source {
+    final List<Cursor> cursors;
+    final List<Query.BindVariable> afters = new ArrayList<>();
+
+    FakeSource(Cursor... cursors) {
+      this.cursors = Arrays.asList(cursors);
+    }
+
+    @Override
+    public Cursor open(Query.BindVariable after) {
+      afters.add(after);
+      return cursors.get(afters.size() - 1);
+    }
+  }
+
+  /** A cursor that fails with the given error, if any, once its rows have been read. */
+  private static class FailingCursor extends SimpleCursor {
+    private final SQLException error;
+
+    FailingCursor(QueryResult result, SQLException error) {
+      super(result);
+      this.error = error;
+    }
+
+    @Override
+    public Row next() throws SQLException {
+      Row row = super.next();
+      if (row == null && error != null) {
+        throw error;
+      }
+      return row;
+    }
+
+    @Override
+    public RowBatch nextBatch() throws SQLException {
+      RowBatch batch = super.nextBatch();
+      if (batch == null && error != null) {
+        throw error;
+      }
+      return batch;
+    }
+  }
+}
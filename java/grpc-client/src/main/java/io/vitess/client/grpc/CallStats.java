@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import com.google.common.base.Ticker;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Load and health statistics of the calls made by a {@link GrpcClient}, for choosing between
+ * several vtgates.
+ *
+ * <p>All statistics are updated and read without locking.
+ */
+@ThreadSafe
+public class CallStats {
+  /** How long a client is reported unhealthy after a call fails with {@code UNAVAILABLE}. */
+  static final long DEFAULT_EJECTION_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  /** Weight of the latest latency in the moving average. */
+  private static final double EWMA_ALPHA = 0.2;
+
+  private final Ticker ticker;
+  private final long ejectionNanos;
+  private final AtomicInteger activeCalls = new AtomicInteger();
+  /** The latency moving average in nanoseconds, as the bits of a double. */
+  private final AtomicLong latencyEwma = new AtomicLong(Double.doubleToLongBits(0));
+  private volatile long unavailableUntil;
+  private volatile boolean ejected;
+
+  CallStats() {
+    this(Ticker.systemTicker(), DEFAULT_EJECTION_NANOS);
+  }
+
+  CallStats(Ticker ticker, long ejectionNanos) {
+    this.ticker = ticker;
+    this.ejectionNanos = ejectionNanos;
+  }
+
+  /**
+   * Returns the number of calls in progress, streaming calls included.
+   */
+  public int getActiveCalls() {
+    return activeCalls.get();
+  }
+
+  /**
+   * Returns the exponentially weighted moving average of the latency of unary calls, in
+   * nanoseconds, or 0 before the first one completes.
+   */
+  public double getLatencyEwmaNanos() {
+    return Double.longBitsToDouble(latencyEwma.get());
+  }
+
+  /**
+   * Returns false for a while after a call failed with {@code UNAVAILABLE}, which means the
+   * target couldn't be reached, and until another call succeeds.
+   */
+  public boolean isHealthy() {
+    return !ejected || ticker.read() - unavailableUntil >= 0;
+  }
+
+  /**
+   * Returns the expected cost of sending one more call: the latency to expect, scaled by the calls
+   * already waiting. Lower is better.
+   */
+  public double getLoad() {
+    return (getLatencyEwmaNanos() + 1) * (getActiveCalls() + 1);
+  }
+
+  ClientInterceptor interceptor() {
+    return new ClientInterceptor() {
+      @Override
+      public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+          MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        return new TrackedCall<>(next.newCall(method, callOptions),
+            method.getType() == MethodDescriptor.MethodType.UNARY);
+      }
+    };
+  }
+
+  private void recordLatency(long nanos) {
+    while (true) {
+      long bits = latencyEwma.get();
+      double old = Double.longBitsToDouble(bits);
+      double updated = old == 0 ? nanos : old + EWMA_ALPHA * (nanos - old);
+      if (latencyEwma.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+        return;
+      }
+    }
+  }
+
+  private void recordStatus(Status status) {
+    if (status.getCode() == Status.Code.UNAVAILABLE) {
+      unavailableUntil = ticker.read() + ejectionNanos;
+      ejected = true;
+    } else if (status.isOk()) {
+      ejected = false;
+    }
+  }
+
+  /** Tracks one call from start() until it is closed. */
+  private class TrackedCall<ReqT, RespT> extends SimpleForwardingClientCall<ReqT, RespT> {
+    private final boolean unary;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private long startNanos;
+
+    TrackedCall(ClientCall<ReqT, RespT> delegate, boolean unary) {
+      super(delegate);
+      this.unary = unary;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+      activeCalls.incrementAndGet();
+      startNanos = ticker.read();
+      try {
+        super.start(new SimpleForwardingClientCallListener<RespT>(responseListener) {
+          @Override
+          public void onClose(Status status, Metadata trailers) {
+            finish(status);
+            super.onClose(status, trailers);
+          }
+        }, headers);
+      } catch (RuntimeException e) {
+        finish(null);
+        throw e;
+      }
+    }
+
+    private void finish(Status status) {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      activeCalls.decrementAndGet();
+      if (status == null) {
+        return;
+      }
+      recordStatus(status);
+      // Streaming calls last as long as the consumer reads, which says nothing about the server.
+      if (unary && status.isOk()) {
+        recordLatency(ticker.read() - startNanos);
+      }
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ManagedChannel} that spreads calls over several channels to the same target.
+ *
+ * <p>Each channel has its own HTTP/2 connection, so a pool isn't limited by the server's maximum
+ * number of concurrent streams per connection, or by the throughput of a single socket. Each new
+ * call goes to the channel with the fewest calls in progress, streaming calls included until
+ * they are closed.
+ */
+public class ChannelPool extends ManagedChannel {
+  private final List<ManagedChannel> channels;
+  private final AtomicInteger[] activeCalls;
+  /** Where the search for the least busy channel starts, so that ties are spread evenly. */
+  private final AtomicInteger next = new AtomicInteger();
+
+  public ChannelPool(List<? extends ManagedChannel> channels) {
+    checkArgument(!channels.isEmpty(), "a ChannelPool needs at least one channel");
+    this.channels = ImmutableList.copyOf(channels);
+    activeCalls = new AtomicInteger[channels.size()];
+    for (int i = 0; i < activeCalls.length; i++) {
+      activeCalls[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Returns the number of calls in progress on each channel, in the order they were given.
+   */
+  public int[] getActiveCalls() {
+    int[] counts = new int[activeCalls.length];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = activeCalls[i].get();
+    }
+    return counts;
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+    int index = pickChannel();
+    return new CountingCall<>(channels.get(index).newCall(method, callOptions),
+        activeCalls[index]);
+  }
+
+  @Override
+  public String authority() {
+    return channels.get(0).authority();
+  }
+
+  @Override
+  public ManagedChannel shutdown() {
+    for (ManagedChannel channel : channels) {
+      channel.shutdown();
+    }
+    return this;
+  }
+
+  @Override
+  public boolean isShutdown() {
+    for (ManagedChannel channel : channels) {
+      if (!channel.isShutdown()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    for (ManagedChannel channel : channels) {
+      if (!channel.isTerminated()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public ManagedChannel shutdownNow() {
+    for (ManagedChannel channel : channels) {
+      channel.shutdownNow();
+    }
+    return this;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (ManagedChannel channel : channels) {
+      long remaining = deadline - System.nanoTime();
+      if (!channel.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the index of the channel with the fewest calls in progress. */
+  private int pickChannel() {
+    int n = activeCalls.length;
+    int start = (next.getAndIncrement() & Integer.MAX_VALUE) % n;
+    int best = start;
+    int bestCount = activeCalls[start].get();
+    for (int i = 1; i < n && bestCount > 0; i++) {
+      int index = (start + i) % n;
+      int count = activeCalls[index].get();
+      if (count < bestCount) {
+        best = index;
+        bestCount = count;
+      }
+    }
+    return best;
+  }
+
+  /** Counts the call as active on its channel from start() until it is closed. */
+  private static class CountingCall<ReqT, RespT>
+      extends SimpleForwardingClientCall<ReqT, RespT> {
+    private final AtomicInteger activeCalls;
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    CountingCall(ClientCall<ReqT, RespT> delegate, AtomicInteger activeCalls) {
+      super(delegate);
+      this.activeCalls = activeCalls;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+      activeCalls.incrementAndGet();
+      try {
+        super.start(new SimpleForwardingClientCallListener<RespT>(responseListener) {
+          @Override
+          public void onClose(Status status, Metadata trailers) {
+            finish();
+            super.onClose(status, trailers);
+          }
+        }, headers);
+      } catch (RuntimeException e) {
+        finish();
+        throw e;
+      }
+    }
+
+    private void finish() {
+      if (done.compareAndSet(false, true)) {
+        activeCalls.decrementAndGet();
+      }
+    }
+  }
+}
@@ -19,12 +19,16 @@ package io.vitess.client.grpc;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
 import io.grpc.StatusRuntimeException;
 import io.vitess.client.Context;
 import io.vitess.client.Proto;
 import io.vitess.client.RpcClient;
+import io.vitess.client.RpcErrorException;
 import io.vitess.client.StreamIterator;
+import io.vitess.client.StreamSubscriber;
 import io.vitess.proto.Query.QueryResult;
 import io.vitess.proto.Vtgate;
 import io.vitess.proto.Vtgate.BeginRequest;
@@ -59,6 +63,7 @@ import io.vitess.proto.Vtgate.StreamExecuteRequest;
 import io.vitess.proto.Vtgate.StreamExecuteResponse;
 import io.vitess.proto.Vtgate.StreamExecuteShardsRequest;
 import io.vitess.proto.Vtgate.StreamExecuteShardsResponse;
+import io.vitess.proto.Vtrpc;
 import io.vitess.proto.grpc.VitessGrpc;
 import io.vitess.proto.grpc.VitessGrpc.VitessFutureStub;
 import io.vitess.proto.grpc.VitessGrpc.VitessStub;
@@ -78,14 +83,30 @@ import org.joda.time.Duration;
  * GrpcClient is a gRPC-based implementation of Vitess RpcClient.
  */
 public class GrpcClient implements RpcClient {
+  /**
+   * Number of stream responses buffered ahead of the consumer, unless the {@link Context}
+   * specifies otherwise. See {@link Context#withStreamPrefetch(int)}.
+   */
+  static final int DEFAULT_STREAM_PREFETCH = 4;
+
   private final ManagedChannel channel;
+  private final CallStats callStats = new CallStats();
   private final VitessStub asyncStub;
   private final VitessFutureStub futureStub;
 
   public GrpcClient(ManagedChannel channel) {
     this.channel = channel;
-    asyncStub = VitessGrpc.newStub(channel);
-    futureStub = VitessGrpc.newFutureStub(channel);
+    Channel tracked = ClientInterceptors.intercept(channel, callStats.interceptor());
+    asyncStub = VitessGrpc.newStub(tracked);
+    futureStub = VitessGrpc.newFutureStub(tracked);
+  }
+
+  /**
+   * Returns the load and health of the calls made through this client, for choosing between the
+   * clients of several vtgates.
+   */
+  public CallStats getCallStats() {
+    return callStats;
   }
 
   @Override
@@ -151,7 +172,8 @@ public class GrpcClient implements RpcClient {
   public StreamIterator<QueryResult> streamExecute(Context ctx, StreamExecuteRequest request)
       throws SQLException {
     GrpcStreamAdapter<StreamExecuteResponse, QueryResult> adapter =
-        new GrpcStreamAdapter<StreamExecuteResponse, QueryResult>() {
+        new GrpcStreamAdapter<StreamExecuteResponse, QueryResult>(getStreamPrefetch(ctx),
+            getStreamIdleTimeoutNanos(ctx)) {
           @Override
           QueryResult getResult(StreamExecuteResponse response) throws SQLException {
             return response.getResult();
@@ -161,11 +183,26 @@ public class GrpcClient implements RpcClient {
     return adapter;
   }
 
+  @Override
+  public void streamExecuteAsync(Context ctx, StreamExecuteRequest request,
+      StreamSubscriber<QueryResult> subscriber) throws SQLException {
+    GrpcStreamSubscription<StreamExecuteResponse, QueryResult> subscription =
+        new GrpcStreamSubscription<StreamExecuteResponse, QueryResult>(subscriber) {
+          @Override
+          QueryResult getResult(StreamExecuteResponse response) throws SQLException {
+            return response.getResult();
+          }
+        };
+    getAsyncStub(ctx).streamExecute(request, subscription);
+    subscription.subscribe();
+  }
+
   @Override
   public StreamIterator<QueryResult> streamExecuteShards(Context ctx,
       StreamExecuteShardsRequest request) throws SQLException {
     GrpcStreamAdapter<StreamExecuteShardsResponse, QueryResult> adapter =
-        new GrpcStreamAdapter<StreamExecuteShardsResponse, QueryResult>() {
+        new GrpcStreamAdapter<StreamExecuteShardsResponse, QueryResult>(getStreamPrefetch(ctx),
+            getStreamIdleTimeoutNanos(ctx)) {
           @Override
           QueryResult getResult(StreamExecuteShardsResponse response) throws SQLException {
             return response.getResult();
@@ -175,11 +212,26 @@ public class GrpcClient implements RpcClient {
     return adapter;
   }
 
+  @Override
+  public void streamExecuteShardsAsync(Context ctx, StreamExecuteShardsRequest request,
+      StreamSubscriber<QueryResult> subscriber) throws SQLException {
+    GrpcStreamSubscription<StreamExecuteShardsResponse, QueryResult> subscription =
+        new GrpcStreamSubscription<StreamExecuteShardsResponse, QueryResult>(subscriber) {
+          @Override
+          QueryResult getResult(StreamExecuteShardsResponse response) throws SQLException {
+            return response.getResult();
+          }
+        };
+    getAsyncStub(ctx).streamExecuteShards(request, subscription);
+    subscription.subscribe();
+  }
+
   @Override
   public StreamIterator<QueryResult> streamExecuteKeyspaceIds(Context ctx,
       StreamExecuteKeyspaceIdsRequest request) throws SQLException {
     GrpcStreamAdapter<StreamExecuteKeyspaceIdsResponse, QueryResult> adapter =
-        new GrpcStreamAdapter<StreamExecuteKeyspaceIdsResponse, QueryResult>() {
+        new GrpcStreamAdapter<StreamExecuteKeyspaceIdsResponse, QueryResult>(
+            getStreamPrefetch(ctx), getStreamIdleTimeoutNanos(ctx)) {
           @Override
           QueryResult getResult(StreamExecuteKeyspaceIdsResponse response) throws SQLException {
             return response.getResult();
@@ -193,7 +245,8 @@ public class GrpcClient implements RpcClient {
   public StreamIterator<QueryResult> streamExecuteKeyRanges(Context ctx,
       StreamExecuteKeyRangesRequest request) throws SQLException {
     GrpcStreamAdapter<StreamExecuteKeyRangesResponse, QueryResult> adapter =
-        new GrpcStreamAdapter<StreamExecuteKeyRangesResponse, QueryResult>() {
+        new GrpcStreamAdapter<StreamExecuteKeyRangesResponse, QueryResult>(getStreamPrefetch(ctx),
+            getStreamIdleTimeoutNanos(ctx)) {
           @Override
           QueryResult getResult(StreamExecuteKeyRangesResponse response) throws SQLException {
             return response.getResult();
@@ -267,7 +320,9 @@ public class GrpcClient implements RpcClient {
             advice =
                 "Failed to connect to vtgate. Make sure that vtgate is running and you are using the correct address. Details: ";
           }
-          return new SQLNonTransientException(
+          // gRPC status codes have the same numbers as the vtrpc ones.
+          Vtrpc.Code code = Vtrpc.Code.forNumber(sre.getStatus().getCode().value());
+          return new RpcErrorException(code == null ? Vtrpc.Code.UNKNOWN : code,
               "gRPC StatusRuntimeException: " + advice + e.toString(), sqlState, errno, e);
       }
     }
@@ -281,6 +336,16 @@ public class GrpcClient implements RpcClient {
     }
   }
 
+  private static int getStreamPrefetch(Context ctx) {
+    Integer prefetch = ctx.getStreamPrefetch();
+    return prefetch == null ? DEFAULT_STREAM_PREFETCH : prefetch;
+  }
+
+  private static long getStreamIdleTimeoutNanos(Context ctx) {
+    Duration timeout = ctx.getStreamIdleTimeout();
+    return timeout == null ? 0 : TimeUnit.MILLISECONDS.toNanos(timeout.getMillis());
+  }
+
   private VitessStub getAsyncStub(Context ctx) {
     Duration timeout = ctx.getTimeout();
     if (timeout == null) {
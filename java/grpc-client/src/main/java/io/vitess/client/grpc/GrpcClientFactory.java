@@ -27,11 +27,14 @@ import java.security.UnrecoverableEntryException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
 
 import javax.net.ssl.SSLException;
 
+import io.grpc.ManagedChannel;
 import io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.NegotiationType;
 import io.grpc.netty.NettyChannelBuilder;
@@ -48,13 +51,27 @@ import io.vitess.client.grpc.tls.TlsOptions;
 public class GrpcClientFactory implements RpcClientFactory {
 
   private RetryingInterceptorConfig config;
+  private final int channelsPerTarget;
 
   public GrpcClientFactory() {
     this(RetryingInterceptorConfig.noOpConfig());
   }
 
   public GrpcClientFactory(RetryingInterceptorConfig config) {
+    this(config, 1);
+  }
+
+  /**
+   * @param channelsPerTarget How many channels, each with its own connection, each client opens to
+   *     its target. With more than one, calls are spread over them by a {@link ChannelPool}.
+   */
+  public GrpcClientFactory(RetryingInterceptorConfig config, int channelsPerTarget) {
+    if (channelsPerTarget < 1) {
+      throw new IllegalArgumentException(
+          "channelsPerTarget must be at least 1: " + channelsPerTarget);
+    }
     this.config = config;
+    this.channelsPerTarget = channelsPerTarget;
   }
 
   /**
@@ -67,8 +84,11 @@ public class GrpcClientFactory implements RpcClientFactory {
    */
   @Override
   public RpcClient create(Context ctx, String target) {
-    return new GrpcClient(
-            NettyChannelBuilder.forTarget(target).negotiationType(NegotiationType.PLAINTEXT).intercept(new RetryingInterceptor(config)).build());
+    List<ManagedChannel> channels = new ArrayList<>(channelsPerTarget);
+    for (int i = 0; i < channelsPerTarget; i++) {
+      channels.add(NettyChannelBuilder.forTarget(target).negotiationType(NegotiationType.PLAINTEXT).intercept(new RetryingInterceptor(config)).build());
+    }
+    return new GrpcClient(pool(channels));
   }
 
   /**
@@ -121,8 +141,15 @@ public class GrpcClientFactory implements RpcClientFactory {
       throw new RuntimeException(e);
     }
 
-    return new GrpcClient(
-        NettyChannelBuilder.forTarget(target).negotiationType(NegotiationType.TLS).sslContext(sslContext).intercept(new RetryingInterceptor(config)).build());
+    List<ManagedChannel> channels = new ArrayList<>(channelsPerTarget);
+    for (int i = 0; i < channelsPerTarget; i++) {
+      channels.add(NettyChannelBuilder.forTarget(target).negotiationType(NegotiationType.TLS).sslContext(sslContext).intercept(new RetryingInterceptor(config)).build());
+    }
+    return new GrpcClient(pool(channels));
+  }
+
+  private static ManagedChannel pool(List<ManagedChannel> channels) {
+    return channels.size() == 1 ? channels.get(0) : new ChannelPool(channels);
   }
 
   /**
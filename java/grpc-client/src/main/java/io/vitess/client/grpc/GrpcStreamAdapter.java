@@ -16,11 +16,19 @@
 
 package io.vitess.client.grpc;
 
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
+import io.vitess.client.CancellableStream;
 import io.vitess.client.StreamIterator;
 import java.sql.SQLDataException;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link StreamIterator} that returns results provided by a gRPC {@link StreamObserver}
@@ -33,15 +41,28 @@ import java.util.NoSuchElementException;
  * (e.g. {@link io.vitess.proto.Vtgate.StreamExecuteResponse StreamExecuteResponse}).
  * Callers must therefore implement {@link #getResult(Object)} when instantiating this class.
  *
- * <p>The {@code StreamObserver} side will block until the result has been returned to the consumer
- * by the {@code StreamIterator} side. Therefore, the {@link #close()} method must be called when
- * done, to unblock the {@code StreamObserver} side.
+ * <p>Results are buffered in a queue of up to {@code prefetch} entries, so that several responses
+ * can be in flight while the consumer processes the current one. The adapter disables gRPC's
+ * automatic inbound flow control and only requests a new response from the server when there is
+ * room for it in the queue, so the {@code StreamObserver} side never has to wait for the consumer.
+ * Backpressure is thus applied by the transport (HTTP/2 flow control windows) rather than by
+ * parking gRPC executor threads, which would starve other calls on the same channel.
+ *
+ * <p>If the stream can't continue, because the server returned an application-level error or the
+ * consumer was interrupted, the call is cancelled so the server stops producing results.
+ * Likewise, {@link #close()} cancels a call that hasn't completed yet, so a consumer that stops
+ * reading early doesn't pay for the rest of the results.
+ *
+ * <p>An optional idle timeout bounds how long the consumer waits for the server to send the next
+ * response. A stream that goes silent for longer is cancelled, and the consumer gets a
+ * {@link java.sql.SQLTimeoutException}. The clock only runs while responses are requested, so a
+ * consumer that takes its time with a full buffer doesn't make the stream time out.
  *
  * @param <V> The type of value sent through the {@link StreamObserver} interface.
  * @param <E> The type of value to return through the {@link StreamIterator} interface.
  */
 abstract class GrpcStreamAdapter<V, E>
-    implements StreamObserver<V>, StreamIterator<E>, AutoCloseable {
+    implements ClientResponseObserver<Object, V>, StreamIterator<E>, CancellableStream {
   /**
    * getResult must be implemented to tell the adapter how to convert from
    * the StreamObserver value type (V) to the StreamIterator value type (E).
@@ -53,33 +74,89 @@ abstract class GrpcStreamAdapter<V, E>
    */
   abstract E getResult(V value) throws SQLException;
 
-  private E nextValue;
+  private final int prefetch;
+  private final long idleTimeoutNanos;
+  private final Queue<E> buffer;
+  private ClientCallStreamObserver<Object> call;
+  /**
+   * Number of responses requested from gRPC but not received yet.
+   *
+   * <p>Starting a server-streaming call always requests the first response, and we can't request
+   * more before the call has started, so this starts at 1 and is only topped up once the first
+   * response arrives.
+   */
+  private int outstanding = 1;
+  private boolean started = false;
   private Throwable error;
   private boolean completed = false;
   private boolean closed = false;
+  /** When we last heard from the server, or started waiting for it again. */
+  private long idleSince;
+
+  GrpcStreamAdapter() {
+    this(GrpcClient.DEFAULT_STREAM_PREFETCH);
+  }
+
+  /**
+   * @param prefetch The maximum number of results to buffer ahead of the consumer.
+   */
+  GrpcStreamAdapter(int prefetch) {
+    this(prefetch, 0);
+  }
+
+  /**
+   * @param prefetch The maximum number of results to buffer ahead of the consumer.
+   * @param idleTimeoutNanos How long the server may go without sending a requested response
+   *     before the stream is cancelled, or 0 to wait as long as the call's deadline allows.
+   */
+  GrpcStreamAdapter(int prefetch, long idleTimeoutNanos) {
+    if (prefetch < 1) {
+      throw new IllegalArgumentException("prefetch must be at least 1: " + prefetch);
+    }
+    if (idleTimeoutNanos < 0) {
+      throw new IllegalArgumentException("idle timeout must not be negative: " + idleTimeoutNanos);
+    }
+    this.prefetch = prefetch;
+    this.idleTimeoutNanos = idleTimeoutNanos;
+    this.buffer = new ArrayDeque<>(prefetch);
+  }
+
+  @Override
+  public void beforeStart(ClientCallStreamObserver<Object> call) {
+    this.call = call;
+    call.disableAutoInboundFlowControl();
+    synchronized (this) {
+      idleSince = System.nanoTime();
+    }
+  }
 
   @Override
   public void onNext(V value) {
+    int toRequest = 0;
+    SQLException resultError = null;
     synchronized (this) {
+      outstanding--;
+      started = true;
+      idleSince = System.nanoTime();
+      if (error != null || closed) {
+        // The call is being cancelled. Drop anything still in flight.
+        return;
+      }
       try {
-        // Wait until the previous value has been consumed.
-        while (nextValue != null) {
-          // If there's been an error, or the iterator was closed, drain the rest of the stream
-          // without blocking.
-          if (closed || error != null) {
-            return;
-          }
-
-          wait();
-        }
-
-        nextValue = getResult(value);
-        notifyAll();
-      } catch (InterruptedException e) {
-        onError(e);
+        buffer.add(getResult(value));
+        toRequest = reserveCredit();
       } catch (SQLException e) {
-        onError(e);
+        resultError = e;
+        error = e;
       }
+      notifyAll();
+    }
+    if (resultError != null) {
+      // The consumer will see this error after the results before it, so the rest of the stream
+      // is of no use.
+      cancel(resultError);
+    } else {
+      request(toRequest);
     }
   }
 
@@ -94,54 +171,153 @@ abstract class GrpcStreamAdapter<V, E>
   @Override
   public void onError(Throwable error) {
     synchronized (this) {
-      this.error = error;
+      // Keep the original cause if this is the CANCELLED status of a call we cancelled ourselves.
+      if (this.error == null) {
+        this.error = error;
+      }
       notifyAll();
     }
   }
 
   @Override
   public boolean hasNext() throws SQLException {
-    synchronized (this) {
-      try {
-        // Wait for a new value to show up.
-        while (nextValue == null) {
-          if (completed) {
+    StatusRuntimeException idleError = null;
+    try {
+      synchronized (this) {
+        // Wait for a new value to show up. Values that arrived before an error are still returned.
+        while (buffer.isEmpty()) {
+          if (completed || closed) {
             return false;
           }
+          if (error instanceof SQLException) {
+            // getResult() found an application-level error in the response.
+            throw (SQLException) error;
+          }
           if (error != null) {
             // We got an error from the gRPC layer.
             throw GrpcClient.convertGrpcError(error);
           }
 
-          wait();
+          if (!awaitResponse()) {
+            idleError = Status.DEADLINE_EXCEEDED.withDescription("no response received for "
+                + TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) + " ms, the stream is stalled")
+                .asRuntimeException();
+            error = idleError;
+            break;
+          }
         }
 
-        return true;
-      } catch (InterruptedException e) {
-        onError(e);
-        throw new SQLDataException("gRPC StreamIterator interrupted while waiting for value", e);
+        if (idleError == null) {
+          return true;
+        }
       }
+    } catch (InterruptedException e) {
+      onError(e);
+      cancel(e);
+      Thread.currentThread().interrupt();
+      throw new SQLDataException("gRPC StreamIterator interrupted while waiting for value", e);
     }
+    cancel(idleError);
+    throw GrpcClient.convertGrpcError(idleError);
+  }
+
+  /**
+   * Waits for the server to send a response. Must be called while holding the lock.
+   *
+   * @return false if the idle timeout has passed without a response.
+   */
+  private boolean awaitResponse() throws InterruptedException {
+    if (idleTimeoutNanos == 0) {
+      wait();
+      return true;
+    }
+    long remaining = idleSince + idleTimeoutNanos - System.nanoTime();
+    if (remaining <= 0) {
+      return false;
+    }
+    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+    return true;
   }
 
   @Override
   public E next() throws NoSuchElementException, SQLException {
+    if (!hasNext()) {
+      throw new NoSuchElementException("stream completed");
+    }
+    E value;
+    int toRequest;
     synchronized (this) {
-      if (hasNext()) {
-        E value = nextValue;
-        nextValue = null;
-        notifyAll();
-        return value;
-      } else {
-        throw new NoSuchElementException("stream completed");
-      }
+      value = buffer.remove();
+      toRequest = reserveCredit();
     }
+    request(toRequest);
+    return value;
   }
 
+  /**
+   * Stops the stream. If the call is still running, it is cancelled, so neither vtgate nor the
+   * tablets behind it keep producing results nobody will read.
+   */
   @Override
   public void close() throws Exception {
+    closeStream();
+  }
+
+  @Override
+  public boolean closeStream() {
+    boolean running;
     synchronized (this) {
+      if (closed) {
+        return false;
+      }
       closed = true;
+      buffer.clear();
+      running = !completed && error == null;
+      notifyAll();
+    }
+    if (running) {
+      cancel(Status.CANCELLED.withDescription("stream closed by the consumer").asRuntimeException());
+    }
+    return running;
+  }
+
+  /**
+   * Returns how many more responses fit into the buffer on top of those already requested, and
+   * counts them as requested. Must be called while holding the lock.
+   */
+  private int reserveCredit() {
+    if (!started || closed || completed || error != null) {
+      return 0;
+    }
+    int credit = prefetch - buffer.size() - outstanding;
+    if (credit <= 0) {
+      return 0;
+    }
+    if (outstanding == 0) {
+      // We are back to waiting for the server.
+      idleSince = System.nanoTime();
+    }
+    outstanding += credit;
+    return credit;
+  }
+
+  /**
+   * Asks gRPC for more responses. Called without holding the lock, to avoid calling into the
+   * transport while blocking the other side of the adapter.
+   */
+  private void request(int count) {
+    if (count > 0 && call != null) {
+      call.request(count);
+    }
+  }
+
+  /**
+   * Cancels the call. Like {@link #request(int)}, this must be called without holding the lock.
+   */
+  private void cancel(Throwable cause) {
+    if (call != null) {
+      // On the request side of a client call, onError() cancels the call with the given cause.
+      call.onError(cause);
     }
   }
 }
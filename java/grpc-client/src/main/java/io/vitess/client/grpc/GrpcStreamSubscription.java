@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import io.vitess.client.StreamSubscriber;
+import io.vitess.client.StreamSubscription;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * A {@link StreamSubscription} that pushes results received through a gRPC {@link StreamObserver}
+ * to a {@link StreamSubscriber}, as the subscriber requests them.
+ *
+ * <p>Like {@link GrpcStreamAdapter}, this disables gRPC's automatic inbound flow control, and it
+ * only requests as many responses from the server as the subscriber has asked for. No thread ever
+ * waits: results are delivered from whichever thread makes them deliverable, either the gRPC
+ * thread that received a response or the subscriber's thread calling {@link #request(long)}.
+ * Only one thread delivers at a time, so the subscriber is never called concurrently.
+ *
+ * <p>This class is abstract because it needs to be told how to extract the result from a given RPC
+ * response. Callers must therefore implement {@link #getResult(Object)}.
+ *
+ * @param <V> The type of value sent through the {@link StreamObserver} interface.
+ * @param <E> The type of value to deliver to the {@link StreamSubscriber}.
+ */
+abstract class GrpcStreamSubscription<V, E>
+    implements ClientResponseObserver<Object, V>, StreamSubscription {
+  /**
+   * getResult must be implemented to tell the subscription how to convert from
+   * the StreamObserver value type (V) to the StreamSubscriber value type (E).
+   * Before converting, getResult() should check for application-level errors
+   * in the RPC response and throw the appropriate SQLException.
+   * @param value The RPC response object.
+   * @return The result object to pass to the subscriber.
+   * @throws SQLException For errors originating within the Vitess server.
+   */
+  abstract E getResult(V value) throws SQLException;
+
+  private final StreamSubscriber<E> subscriber;
+  /** Results received but not delivered yet. Never holds more than was requested. */
+  private final Queue<E> pending = new ArrayDeque<>();
+  private ClientCallStreamObserver<Object> call;
+  /** Number of results requested by the subscriber and not delivered yet. */
+  private long demand = 0;
+  /**
+   * Number of responses requested from gRPC but not received yet. Starting a server-streaming call
+   * always requests the first response, so this starts at 1.
+   */
+  private long outstanding = 1;
+  private boolean subscribed = false;
+  private boolean delivering = false;
+  private boolean missed = false;
+  private SQLException error;
+  private boolean completed = false;
+  /** Set once the subscriber has been told the call is over, or has cancelled it. */
+  private boolean done = false;
+
+  GrpcStreamSubscription(StreamSubscriber<E> subscriber) {
+    this.subscriber = subscriber;
+  }
+
+  @Override
+  public void beforeStart(ClientCallStreamObserver<Object> call) {
+    this.call = call;
+    call.disableAutoInboundFlowControl();
+  }
+
+  /**
+   * Hands this subscription to the subscriber. Must be called once the call has been started, so
+   * that the subscriber may request results from within {@code onSubscribe()}.
+   */
+  void subscribe() {
+    subscriber.onSubscribe(this);
+    synchronized (this) {
+      subscribed = true;
+    }
+    deliver();
+  }
+
+  @Override
+  public void onNext(V value) {
+    SQLException resultError = null;
+    synchronized (this) {
+      outstanding--;
+      if (done || error != null) {
+        return;
+      }
+      try {
+        pending.add(getResult(value));
+      } catch (SQLException e) {
+        resultError = e;
+        error = e;
+      }
+    }
+    if (resultError != null) {
+      cancelCall(resultError);
+    }
+    deliver();
+  }
+
+  @Override
+  public void onCompleted() {
+    synchronized (this) {
+      completed = true;
+    }
+    deliver();
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    synchronized (this) {
+      // Keep the original cause if this is the CANCELLED status of a call we cancelled ourselves.
+      if (error == null) {
+        error = GrpcClient.convertGrpcError(t);
+      }
+    }
+    deliver();
+  }
+
+  @Override
+  public void request(long n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("request must be positive: " + n);
+    }
+    int toRequest = 0;
+    synchronized (this) {
+      if (done) {
+        return;
+      }
+      demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+      // Only ask the server for what isn't already received or on its way.
+      long credit = Math.min(demand - pending.size() - outstanding, Integer.MAX_VALUE);
+      if (credit > 0) {
+        toRequest = (int) credit;
+        outstanding += credit;
+      }
+    }
+    if (toRequest > 0) {
+      call.request(toRequest);
+    }
+    deliver();
+  }
+
+  @Override
+  public void cancel() {
+    synchronized (this) {
+      if (done) {
+        return;
+      }
+      done = true;
+      pending.clear();
+    }
+    cancelCall(Status.CANCELLED.withDescription("cancelled by subscriber").asRuntimeException());
+  }
+
+  /**
+   * Delivers whatever the subscriber has asked for and is ready, followed by the end of the stream
+   * once everything before it was delivered.
+   *
+   * <p>Any thread may call this. If another thread is already delivering, it is told to make
+   * another pass instead, so the subscriber is only ever called by one thread at a time.
+   */
+  private void deliver() {
+    synchronized (this) {
+      if (delivering || !subscribed) {
+        missed = true;
+        return;
+      }
+      delivering = true;
+    }
+    try {
+      while (true) {
+        E result = null;
+        SQLException endError = null;
+        boolean end = false;
+        synchronized (this) {
+          if (!done && demand > 0 && !pending.isEmpty()) {
+            result = pending.remove();
+            if (demand != Long.MAX_VALUE) {
+              demand--;
+            }
+          } else if (!done && pending.isEmpty() && (error != null || completed)) {
+            done = true;
+            end = true;
+            endError = error;
+          } else if (missed) {
+            missed = false;
+            continue;
+          } else {
+            delivering = false;
+            return;
+          }
+        }
+        if (result != null) {
+          subscriber.onNext(result);
+        } else if (endError != null) {
+          subscriber.onError(endError);
+        } else if (end) {
+          subscriber.onComplete();
+        }
+      }
+    } catch (RuntimeException e) {
+      // The subscriber broke its contract. Stop the call rather than leaving it half-consumed.
+      synchronized (this) {
+        delivering = false;
+        done = true;
+        pending.clear();
+      }
+      cancelCall(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Cancels the call. Must be called without holding the lock.
+   */
+  private void cancelCall(Throwable cause) {
+    if (call != null) {
+      // On the request side of a client call, onError() cancels the call with the given cause.
+      call.onError(cause);
+    }
+  }
+}
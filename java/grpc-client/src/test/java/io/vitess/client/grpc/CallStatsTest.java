@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import com.google.common.base.Ticker;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import io.vitess.proto.Vtgate.ExecuteRequest;
+import io.vitess.proto.Vtgate.ExecuteResponse;
+import io.vitess.proto.Vtgate.StreamExecuteRequest;
+import io.vitess.proto.Vtgate.StreamExecuteResponse;
+import io.vitess.proto.grpc.VitessGrpc;
+import io.vitess.proto.grpc.VitessGrpc.VitessBlockingStub;
+import io.vitess.proto.grpc.VitessGrpc.VitessStub;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CallStatsTest {
+  private static final long EJECTION_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final FakeTicker ticker = new FakeTicker();
+  private FakeVtgate vtgate;
+  private ManagedChannel channel;
+  private CallStats stats;
+  private VitessBlockingStub blockingStub;
+  private VitessStub asyncStub;
+  private volatile Status executeStatus = Status.OK;
+  private final CountDownLatch streamOpened = new CountDownLatch(1);
+  private volatile StreamObserver<StreamExecuteResponse> openStream;
+
+  @Before
+  public void setUp() throws Exception {
+    vtgate = FakeVtgate.start(new VitessGrpc.VitessImplBase() {
+      @Override
+      public void execute(ExecuteRequest request,
+          StreamObserver<ExecuteResponse> responseObserver) {
+        ticker.advance(LATENCY_NANOS);
+        if (executeStatus.isOk()) {
+          responseObserver.onNext(ExecuteResponse.getDefaultInstance());
+          responseObserver.onCompleted();
+        } else {
+          responseObserver.onError(executeStatus.asRuntimeException());
+        }
+      }
+
+      @Override
+      public void streamExecute(StreamExecuteRequest request,
+          StreamObserver<StreamExecuteResponse> responseObserver) {
+        openStream = responseObserver;
+        streamOpened.countDown();
+      }
+    });
+    channel = vtgate.newDirectChannel();
+    stats = new CallStats(ticker, EJECTION_NANOS);
+    blockingStub = VitessGrpc.newBlockingStub(
+        ClientInterceptors.intercept(channel, stats.interceptor()));
+    asyncStub = VitessGrpc.newStub(ClientInterceptors.intercept(channel, stats.interceptor()));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    vtgate.shutdownNow();
+  }
+
+  @Test
+  public void testUnaryLatency() throws Exception {
+    Assert.assertEquals(0, stats.getLatencyEwmaNanos(), 0);
+    blockingStub.execute(ExecuteRequest.getDefaultInstance());
+    Assert.assertEquals(LATENCY_NANOS, stats.getLatencyEwmaNanos(), 0);
+    Assert.assertEquals(0, stats.getActiveCalls());
+    Assert.assertTrue(stats.isHealthy());
+  }
+
+  @Test
+  public void testStreamCountsAsActiveWithoutLatency() throws Exception {
+    asyncStub.streamExecute(StreamExecuteRequest.getDefaultInstance(),
+        new StreamObserver<StreamExecuteResponse>() {
+          @Override
+          public void onNext(StreamExecuteResponse value) {}
+
+          @Override
+          public void onError(Throwable t) {}
+
+          @Override
+          public void onCompleted() {}
+        });
+    Assert.assertTrue(streamOpened.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(1, stats.getActiveCalls());
+    double idleLoad = stats.getLoad();
+
+    ticker.advance(TimeUnit.SECONDS.toNanos(60));
+    openStream.onCompleted();
+    Assert.assertEquals(0, stats.getActiveCalls());
+    Assert.assertTrue(stats.getLoad() < idleLoad);
+    Assert.assertEquals(0, stats.getLatencyEwmaNanos(), 0);
+  }
+
+  @Test
+  public void testUnavailableEjectsUntilTimeout() throws Exception {
+    executeStatus = Status.UNAVAILABLE;
+    try {
+      blockingStub.execute(ExecuteRequest.getDefaultInstance());
+      Assert.fail("expected UNAVAILABLE");
+    } catch (StatusRuntimeException e) {
+      // expected
+    }
+    Assert.assertFalse(stats.isHealthy());
+    ticker.advance(EJECTION_NANOS);
+    Assert.assertTrue(stats.isHealthy());
+  }
+
+  @Test
+  public void testSuccessEndsEjection() throws Exception {
+    executeStatus = Status.UNAVAILABLE;
+    try {
+      blockingStub.execute(ExecuteRequest.getDefaultInstance());
+      Assert.fail("expected UNAVAILABLE");
+    } catch (StatusRuntimeException e) {
+      // expected
+    }
+    Assert.assertFalse(stats.isHealthy());
+
+    // Other errors come from a vtgate which is reachable, so they don't eject it.
+    executeStatus = Status.INVALID_ARGUMENT;
+    try {
+      blockingStub.execute(ExecuteRequest.getDefaultInstance());
+      Assert.fail("expected INVALID_ARGUMENT");
+    } catch (StatusRuntimeException e) {
+      // expected
+    }
+    Assert.assertFalse(stats.isHealthy());
+
+    executeStatus = Status.OK;
+    blockingStub.execute(ExecuteRequest.getDefaultInstance());
+    Assert.assertTrue(stats.isHealthy());
+  }
+
+  private static class FakeTicker extends Ticker {
+    private volatile long nanos;
+
+    void advance(long delta) {
+      nanos += delta;
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import io.vitess.client.Context;
+import io.vitess.client.StreamIterator;
+import io.vitess.proto.Query.QueryResult;
+import io.vitess.proto.Vtgate.StreamExecuteRequest;
+import io.vitess.proto.Vtgate.StreamExecuteResponse;
+import io.vitess.proto.grpc.VitessGrpc;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChannelPoolTest {
+  /** Streams the server has started but not completed yet. */
+  private final List<StreamObserver<StreamExecuteResponse>> openStreams = new ArrayList<>();
+  private FakeVtgate vtgate;
+  private ChannelPool pool;
+
+  @Before
+  public void setUp() throws Exception {
+    vtgate = FakeVtgate.start(new VitessGrpc.VitessImplBase() {
+      @Override
+      public void streamExecute(StreamExecuteRequest request,
+          StreamObserver<StreamExecuteResponse> responseObserver) {
+        synchronized (openStreams) {
+          openStreams.add(responseObserver);
+          openStreams.notifyAll();
+        }
+      }
+    });
+    List<ManagedChannel> channels = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      channels.add(vtgate.newChannel());
+    }
+    pool = new ChannelPool(channels);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    pool.shutdownNow();
+    vtgate.shutdownNow();
+  }
+
+  @Test
+  public void testCallsGoToLeastBusyChannel() throws Exception {
+    GrpcClient client = new GrpcClient(pool);
+    List<StreamIterator<QueryResult>> streams = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      streams.add(client.streamExecute(
+          Context.getDefault(), StreamExecuteRequest.getDefaultInstance()));
+      // Calls on different channels may reach the server out of order, so open them one by one.
+      awaitOpenStreams(i + 1);
+    }
+    Assert.assertEquals(Arrays.toString(new int[] {1, 1, 1}),
+        Arrays.toString(pool.getActiveCalls()));
+
+    // Finish the second call. The next one must go to its channel.
+    synchronized (openStreams) {
+      openStreams.get(1).onCompleted();
+    }
+    Assert.assertFalse(streams.get(1).hasNext());
+    Assert.assertEquals(Arrays.toString(new int[] {1, 0, 1}),
+        Arrays.toString(pool.getActiveCalls()));
+
+    streams.add(client.streamExecute(
+        Context.getDefault(), StreamExecuteRequest.getDefaultInstance()));
+    awaitOpenStreams(4);
+    Assert.assertEquals(Arrays.toString(new int[] {1, 1, 1}),
+        Arrays.toString(pool.getActiveCalls()));
+
+    synchronized (openStreams) {
+      for (int i = 0; i < openStreams.size(); i++) {
+        if (i != 1) {
+          openStreams.get(i).onCompleted();
+        }
+      }
+    }
+    for (StreamIterator<QueryResult> stream : streams) {
+      Assert.assertFalse(stream.hasNext());
+    }
+    Assert.assertEquals(Arrays.toString(new int[] {0, 0, 0}),
+        Arrays.toString(pool.getActiveCalls()));
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    pool.shutdown();
+    Assert.assertTrue(pool.isShutdown());
+    Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertTrue(pool.isTerminated());
+  }
+
+  private void awaitOpenStreams(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    synchronized (openStreams) {
+      while (openStreams.size() < count && System.currentTimeMillis() < deadline) {
+        openStreams.wait(100);
+      }
+      Assert.assertEquals(count, openStreams.size());
+    }
+  }
+}
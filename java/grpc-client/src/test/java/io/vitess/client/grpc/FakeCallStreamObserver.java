@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.grpc.stub.ClientCallStreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Records the flow control calls made on the request side of a client call. */
+class FakeCallStreamObserver extends ClientCallStreamObserver<Object> {
+  boolean autoFlowControlDisabled;
+  int requested;
+  List<Throwable> errors = new ArrayList<>();
+
+  @Override
+  public void disableAutoInboundFlowControl() {
+    autoFlowControlDisabled = true;
+  }
+
+  @Override
+  public void request(int count) {
+    requested += count;
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    errors.add(t);
+  }
+
+  @Override
+  public boolean isReady() {
+    return true;
+  }
+
+  @Override
+  public void setOnReadyHandler(Runnable onReadyHandler) {}
+
+  @Override
+  public void setMessageCompression(boolean enable) {}
+
+  @Override
+  public void onNext(Object value) {}
+
+  @Override
+  public void onCompleted() {}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.vitess.proto.Query;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves a fake vtgate service in process, so tests can call it through real gRPC channels.
+ * Start one in {@code setUp()} and shut it down in {@code tearDown()}.
+ */
+class FakeVtgate {
+  static final Query.ExecuteOptions.IncludedFields ALL = Query.ExecuteOptions.IncludedFields.ALL;
+
+  private static final AtomicInteger nextId = new AtomicInteger();
+
+  private final String name;
+  private final Server server;
+  private final List<ManagedChannel> channels = new CopyOnWriteArrayList<>();
+
+  private FakeVtgate(BindableService service, boolean directExecutor) throws IOException {
+    name = "FakeVtgate-" + nextId.incrementAndGet();
+    InProcessServerBuilder builder = InProcessServerBuilder.forName(name).addService(service);
+    if (directExecutor) {
+      builder.directExecutor();
+    }
+    server = builder.build().start();
+  }
+
+  /** Serves each call on the thread that sent it. */
+  static FakeVtgate start(BindableService service) throws IOException {
+    return new FakeVtgate(service, true);
+  }
+
+  /** Serves calls on a thread pool, for services that block until the test lets them go on. */
+  static FakeVtgate startBlocking(BindableService service) throws IOException {
+    return new FakeVtgate(service, false);
+  }
+
+  /** Returns a new channel to the server, which {@link #shutdownNow()} closes. */
+  ManagedChannel newChannel() {
+    return track(InProcessChannelBuilder.forName(name).build());
+  }
+
+  /** Like {@link #newChannel()}, but runs the client callbacks on the thread that got them. */
+  ManagedChannel newDirectChannel() {
+    return track(InProcessChannelBuilder.forName(name).directExecutor().build());
+  }
+
+  void shutdownNow() {
+    for (ManagedChannel channel : channels) {
+      channel.shutdownNow();
+    }
+    server.shutdownNow();
+  }
+
+  private ManagedChannel track(ManagedChannel channel) {
+    channels.add(channel);
+    return channel;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.grpc.Status;
+import io.vitess.client.RpcErrorException;
+import io.vitess.proto.Vtrpc;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GrpcClientErrorTest {
+  @Test
+  public void testConvertKeepsCode() {
+    SQLException e = GrpcClient.convertGrpcError(
+        Status.FAILED_PRECONDITION.withDescription("retry: serving keyspace").asRuntimeException());
+    Assert.assertTrue(e instanceof RpcErrorException);
+    Assert.assertEquals(Vtrpc.Code.FAILED_PRECONDITION, ((RpcErrorException) e).getCode());
+
+    e = GrpcClient.convertGrpcError(Status.UNKNOWN.asRuntimeException());
+    Assert.assertEquals(Vtrpc.Code.UNKNOWN, ((RpcErrorException) e).getCode());
+  }
+
+  @Test
+  public void testConvertMapsTransientErrors() {
+    SQLException e = GrpcClient.convertGrpcError(Status.UNAVAILABLE.asRuntimeException());
+    Assert.assertTrue(e instanceof SQLTransientException);
+  }
+}
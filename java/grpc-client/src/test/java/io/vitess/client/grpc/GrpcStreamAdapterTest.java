@@ -0,0 +1,276 @@
+/*
+ * Copyright 2017 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.vitess.client.Context;
+import io.vitess.client.StreamIterator;
+import io.vitess.proto.Query.QueryResult;
+import io.vitess.proto.Vtgate.StreamExecuteRequest;
+import io.vitess.proto.Vtgate.StreamExecuteResponse;
+import io.vitess.proto.grpc.VitessGrpc;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GrpcStreamAdapterTest {
+  private static final int RESULTS = 50;
+
+  private FakeVtgate vtgate;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    vtgate = FakeVtgate.start(new VitessGrpc.VitessImplBase() {
+      @Override
+      public void streamExecute(StreamExecuteRequest request,
+          StreamObserver<StreamExecuteResponse> responseObserver) {
+        for (int i = 0; i < RESULTS; i++) {
+          responseObserver.onNext(StreamExecuteResponse.newBuilder()
+              .setResult(QueryResult.newBuilder().setRowsAffected(i)).build());
+        }
+        responseObserver.onCompleted();
+      }
+    });
+    channel = vtgate.newChannel();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    vtgate.shutdownNow();
+  }
+
+  @Test
+  public void testStreamExecuteReturnsAllResultsInOrder() throws Exception {
+    for (int prefetch : new int[] {1, 3, RESULTS * 2}) {
+      GrpcClient client = new GrpcClient(channel);
+      try (StreamIterator<QueryResult> results = client.streamExecute(
+          Context.getDefault().withStreamPrefetch(prefetch),
+          StreamExecuteRequest.getDefaultInstance())) {
+        for (int i = 0; i < RESULTS; i++) {
+          Assert.assertTrue(results.hasNext());
+          Assert.assertEquals(i, results.next().getRowsAffected());
+        }
+        Assert.assertFalse(results.hasNext());
+      }
+    }
+  }
+
+  @Test
+  public void testRequestsOnlyWhatFitsInBuffer() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    TestAdapter adapter = new TestAdapter(3);
+    adapter.beforeStart(call);
+    Assert.assertTrue(call.autoFlowControlDisabled);
+
+    // Starting the call requests the first response. Once it arrives, fill up the buffer.
+    adapter.onNext(result(0));
+    Assert.assertEquals(2, call.requested);
+
+    // The buffer is now full, so nothing more is requested.
+    adapter.onNext(result(1));
+    adapter.onNext(result(2));
+    Assert.assertEquals(2, call.requested);
+
+    // Every response taken out of the buffer makes room for one more.
+    Assert.assertEquals(0, adapter.next().getRowsAffected());
+    Assert.assertEquals(3, call.requested);
+    Assert.assertEquals(1, adapter.next().getRowsAffected());
+    Assert.assertEquals(4, call.requested);
+  }
+
+  @Test
+  public void testReturnsBufferedResultsBeforeError() throws Exception {
+    TestAdapter adapter = new TestAdapter(4);
+    adapter.beforeStart(new FakeCallStreamObserver());
+    adapter.onNext(result(0));
+    adapter.onError(new RuntimeException("stream broke"));
+
+    Assert.assertTrue(adapter.hasNext());
+    Assert.assertEquals(0, adapter.next().getRowsAffected());
+    try {
+      adapter.hasNext();
+      Assert.fail("expected the stream error");
+    } catch (SQLException e) {
+      Assert.assertTrue(e.getMessage().contains("stream broke"));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testOnNextDoesNotWaitForConsumer() throws Exception {
+    TestAdapter adapter = new TestAdapter(1);
+    adapter.beforeStart(new FakeCallStreamObserver());
+    // Nobody is consuming, but the gRPC thread must not be parked.
+    for (int i = 0; i < 3; i++) {
+      adapter.onNext(result(i));
+    }
+    adapter.onCompleted();
+    Assert.assertEquals(0, adapter.next().getRowsAffected());
+  }
+
+  @Test
+  public void testApplicationErrorCancelsCall() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    TestAdapter adapter = new TestAdapter(4);
+    adapter.beforeStart(call);
+    adapter.onNext(result(0));
+    adapter.onNext(result(TestAdapter.APPLICATION_ERROR));
+    Assert.assertEquals(1, call.errors.size());
+    Assert.assertSame(TestAdapter.ERROR, call.errors.get(0));
+
+    // gRPC reports the cancellation, which must not hide the original error.
+    adapter.onError(new RuntimeException("CANCELLED"));
+    Assert.assertEquals(0, adapter.next().getRowsAffected());
+    try {
+      adapter.hasNext();
+      Assert.fail("expected the application error");
+    } catch (SQLException e) {
+      Assert.assertSame(TestAdapter.ERROR, e);
+    }
+  }
+
+  @Test
+  public void testInterruptCancelsCall() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    TestAdapter adapter = new TestAdapter(4);
+    adapter.beforeStart(call);
+
+    Thread.currentThread().interrupt();
+    try {
+      adapter.hasNext();
+      Assert.fail("expected the wait to be interrupted");
+    } catch (SQLDataException e) {
+      Assert.assertTrue(e.getCause() instanceof InterruptedException);
+    }
+    // The interrupt status is preserved for the caller.
+    Assert.assertTrue(Thread.interrupted());
+    Assert.assertEquals(1, call.errors.size());
+    Assert.assertTrue(call.errors.get(0) instanceof InterruptedException);
+  }
+
+  @Test
+  public void testCloseCancelsCall() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    TestAdapter adapter = new TestAdapter(2);
+    adapter.beforeStart(call);
+    adapter.onNext(result(0));
+    adapter.onNext(result(1));
+    int requested = call.requested;
+
+    adapter.close();
+    Assert.assertEquals(1, call.errors.size());
+    Assert.assertEquals(Status.Code.CANCELLED, Status.fromThrowable(call.errors.get(0)).getCode());
+    Assert.assertFalse(adapter.hasNext());
+
+    // Responses already in flight are dropped without asking for more.
+    adapter.onNext(result(2));
+    adapter.onError(Status.CANCELLED.asRuntimeException());
+    Assert.assertEquals(requested, call.requested);
+    Assert.assertFalse(adapter.hasNext());
+
+    adapter.close();
+    Assert.assertEquals(1, call.errors.size());
+  }
+
+  @Test
+  public void testCloseAfterCompletionDoesNotCancel() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    TestAdapter adapter = new TestAdapter(2);
+    adapter.beforeStart(call);
+    adapter.onNext(result(0));
+    adapter.onCompleted();
+    adapter.close();
+    Assert.assertTrue(call.errors.isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testIdleTimeoutCancelsStalledStream() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    TestAdapter adapter = new TestAdapter(2, TimeUnit.MILLISECONDS.toNanos(50));
+    adapter.beforeStart(call);
+    adapter.onNext(result(0));
+    Assert.assertEquals(0, adapter.next().getRowsAffected());
+
+    // The server never sends the next response.
+    try {
+      adapter.hasNext();
+      Assert.fail("expected the idle timeout");
+    } catch (SQLTimeoutException e) {
+      Assert.assertTrue(e.getMessage().contains("stalled"));
+    }
+    Assert.assertEquals(1, call.errors.size());
+    Assert.assertEquals(Status.Code.DEADLINE_EXCEEDED,
+        Status.fromThrowable(call.errors.get(0)).getCode());
+
+    // The timeout sticks, even once gRPC reports the cancellation.
+    adapter.onError(Status.CANCELLED.asRuntimeException());
+    try {
+      adapter.hasNext();
+      Assert.fail("expected the idle timeout");
+    } catch (SQLTimeoutException e) {
+      // expected
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testIdleTimeoutIgnoresSlowConsumer() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    TestAdapter adapter = new TestAdapter(1, TimeUnit.MILLISECONDS.toNanos(50));
+    adapter.beforeStart(call);
+    adapter.onNext(result(0));
+
+    // Nothing is requested while the buffer is full, so the server isn't idle.
+    Thread.sleep(100);
+    Assert.assertEquals(0, adapter.next().getRowsAffected());
+    adapter.onNext(result(1));
+    Assert.assertEquals(1, adapter.next().getRowsAffected());
+    Assert.assertTrue(call.errors.isEmpty());
+  }
+
+  private static StreamExecuteResponse result(int i) {
+    return StreamExecuteResponse.newBuilder()
+        .setResult(QueryResult.newBuilder().setRowsAffected(i)).build();
+  }
+
+  private static class TestAdapter extends GrpcStreamAdapter<StreamExecuteResponse, QueryResult> {
+    static final int APPLICATION_ERROR = -1;
+    static final SQLException ERROR = new SQLException("application error");
+
+    TestAdapter(int prefetch) {
+      super(prefetch);
+    }
+
+    TestAdapter(int prefetch, long idleTimeoutNanos) {
+      super(prefetch, idleTimeoutNanos);
+    }
+
+    @Override
+    QueryResult getResult(StreamExecuteResponse response) throws SQLException {
+      if (response.getResult().getRowsAffected() == APPLICATION_ERROR) {
+        throw ERROR;
+      }
+      return response.getResult();
+    }
+  }
+}
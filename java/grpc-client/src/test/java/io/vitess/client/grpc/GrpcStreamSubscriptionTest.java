@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import io.vitess.client.Context;
+import io.vitess.client.StreamSubscriber;
+import io.vitess.client.StreamSubscription;
+import io.vitess.proto.Query.QueryResult;
+import io.vitess.proto.Vtgate.StreamExecuteRequest;
+import io.vitess.proto.Vtgate.StreamExecuteResponse;
+import io.vitess.proto.grpc.VitessGrpc;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GrpcStreamSubscriptionTest {
+  private static final int RESULTS = 50;
+
+  private FakeVtgate vtgate;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    vtgate = FakeVtgate.start(new VitessGrpc.VitessImplBase() {
+      @Override
+      public void streamExecute(StreamExecuteRequest request,
+          StreamObserver<StreamExecuteResponse> responseObserver) {
+        for (int i = 0; i < RESULTS; i++) {
+          responseObserver.onNext(result(i));
+        }
+        responseObserver.onCompleted();
+      }
+    });
+    channel = vtgate.newChannel();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    vtgate.shutdownNow();
+  }
+
+  @Test
+  public void testStreamExecuteAsyncDeliversAllResultsInOrder() throws Exception {
+    // Request one result at a time, from within onNext().
+    final CountDownLatch done = new CountDownLatch(1);
+    RecordingSubscriber subscriber = new RecordingSubscriber() {
+      @Override
+      public void onSubscribe(StreamSubscription subscription) {
+        super.onSubscribe(subscription);
+        subscription.request(1);
+      }
+
+      @Override
+      void handle(QueryResult result) {
+        subscription.request(1);
+      }
+
+      @Override
+      public void onComplete() {
+        super.onComplete();
+        done.countDown();
+      }
+    };
+    new GrpcClient(channel).streamExecuteAsync(
+        Context.getDefault(), StreamExecuteRequest.getDefaultInstance(), subscriber);
+
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(RESULTS, subscriber.results.size());
+    for (int i = 0; i < RESULTS; i++) {
+      Assert.assertEquals(i, subscriber.results.get(i).getRowsAffected());
+    }
+    Assert.assertNull(subscriber.error);
+    Assert.assertFalse(subscriber.overlapped);
+  }
+
+  @Test
+  public void testRequestsOnlyWhatSubscriberAsksFor() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    TestSubscription subscription = new TestSubscription(subscriber);
+    subscription.beforeStart(call);
+    Assert.assertTrue(call.autoFlowControlDisabled);
+    subscription.subscribe();
+    Assert.assertSame(subscription, subscriber.subscription);
+
+    // The first response is requested by starting the call. It is held until there is demand.
+    subscription.onNext(result(0));
+    Assert.assertEquals(0, subscriber.results.size());
+
+    // Only what isn't already received is requested from the server.
+    subscription.request(3);
+    Assert.assertEquals(2, call.requested);
+    Assert.assertEquals(1, subscriber.results.size());
+    subscription.onNext(result(1));
+    subscription.onNext(result(2));
+    Assert.assertEquals(3, subscriber.results.size());
+    Assert.assertEquals(2, call.requested);
+
+    subscription.onCompleted();
+    Assert.assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void testCancelStopsDelivery() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    TestSubscription subscription = new TestSubscription(subscriber);
+    subscription.beforeStart(call);
+    subscription.subscribe();
+    subscription.request(10);
+    subscription.onNext(result(0));
+
+    subscription.cancel();
+    Assert.assertEquals(1, call.errors.size());
+    subscription.onNext(result(1));
+    subscription.onError(new RuntimeException("CANCELLED"));
+    Assert.assertEquals(1, subscriber.results.size());
+    Assert.assertNull(subscriber.error);
+    Assert.assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void testApplicationErrorCancelsCall() throws Exception {
+    FakeCallStreamObserver call = new FakeCallStreamObserver();
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    TestSubscription subscription = new TestSubscription(subscriber);
+    subscription.beforeStart(call);
+    subscription.subscribe();
+    subscription.request(10);
+    subscription.onNext(result(0));
+    subscription.onNext(result(TestSubscription.APPLICATION_ERROR));
+    Assert.assertEquals(1, call.errors.size());
+
+    // gRPC reports the cancellation, which must not hide the original error.
+    subscription.onError(new RuntimeException("CANCELLED"));
+    Assert.assertEquals(1, subscriber.results.size());
+    Assert.assertSame(TestSubscription.ERROR, subscriber.error);
+  }
+
+  private static StreamExecuteResponse result(int i) {
+    return StreamExecuteResponse.newBuilder()
+        .setResult(QueryResult.newBuilder().setRowsAffected(i)).build();
+  }
+
+  private static class TestSubscription
+      extends GrpcStreamSubscription<StreamExecuteResponse, QueryResult> {
+    static final int APPLICATION_ERROR = -1;
+    static final SQLException ERROR = new SQLException("application error");
+
+    TestSubscription(StreamSubscriber<QueryResult> subscriber) {
+      super(subscriber);
+    }
+
+    @Override
+    QueryResult getResult(StreamExecuteResponse response) throws SQLException {
+      if (response.getResult().getRowsAffected() == APPLICATION_ERROR) {
+        throw ERROR;
+      }
+      return response.getResult();
+    }
+  }
+
+  /** Records what it receives, and whether onNext() was ever called concurrently or reentrantly. */
+  private static class RecordingSubscriber implements StreamSubscriber<QueryResult> {
+    volatile StreamSubscription subscription;
+    final List<QueryResult> results = Collections.synchronizedList(new ArrayList<QueryResult>());
+    volatile SQLException error;
+    volatile boolean completed;
+    volatile boolean overlapped;
+    private final AtomicBoolean inOnNext = new AtomicBoolean();
+
+    @Override
+    public void onSubscribe(StreamSubscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(QueryResult result) {
+      if (!inOnNext.compareAndSet(false, true)) {
+        overlapped = true;
+      }
+      try {
+        results.add(result);
+        handle(result);
+      } finally {
+        inOnNext.set(false);
+      }
+    }
+
+    /** Called from onNext() for each result, for subclasses to react to. */
+    void handle(QueryResult result) {}
+
+    @Override
+    public void onError(SQLException error) {
+      this.error = error;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+}
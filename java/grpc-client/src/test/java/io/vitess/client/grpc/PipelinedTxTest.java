@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.vitess.client.grpc;
+
+import static io.vitess.client.grpc.FakeVtgate.ALL;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.vitess.client.Context;
+import io.vitess.client.SQLFuture;
+import io.vitess.client.VTGateConn;
+import io.vitess.client.VTGateTx;
+import io.vitess.client.cursor.Cursor;
+import io.vitess.proto.Topodata.TabletType;
+import io.vitess.proto.Vtgate.CommitRequest;
+import io.vitess.proto.Vtgate.CommitResponse;
+import io.vitess.proto.Vtgate.ExecuteRequest;
+import io.vitess.proto.Vtgate.ExecuteResponse;
+import io.vitess.proto.Vtgate.RollbackRequest;
+import io.vitess.proto.Vtgate.RollbackResponse;
+import io.vitess.proto.Vtgate.Session;
+import io.vitess.proto.grpc.VitessGrpc;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelinedTxTest {
+  /** Holds back every response until the test releases it. */
+  private final CountDownLatch release = new CountDownLatch(1);
+  /** The query of each request, or "commit"/"rollback", in the order the server got them. */
+  private final List<String> received = new CopyOnWriteArrayList<>();
+  /** The session each request carried. */
+  private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+  private FakeVtgate vtgate;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    vtgate = FakeVtgate.startBlocking(new VitessGrpc.VitessImplBase() {
+      @Override
+      public void execute(ExecuteRequest request,
+          StreamObserver<ExecuteResponse> responseObserver) {
+        String query = request.getQuery().getSql();
+        record(query, request.getSession());
+        if (query.equals("fail")) {
+          responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("bad query")
+              .asRuntimeException());
+          return;
+        }
+        // Each statement adds a shard session, so the next request shows which one it saw.
+        Session session = request.getSession().toBuilder()
+            .addShardSessions(Session.ShardSession.newBuilder()
+                .setTransactionId(sessions.size()))
+            .build();
+        responseObserver.onNext(ExecuteResponse.newBuilder().setSession(session).build());
+        responseObserver.onCompleted();
+      }
+
+      @Override
+      public void commit(CommitRequest request,
+          StreamObserver<CommitResponse> responseObserver) {
+        record("commit", request.getSession());
+        responseObserver.onNext(CommitResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+      }
+
+      @Override
+      public void rollback(RollbackRequest request,
+          StreamObserver<RollbackResponse> responseObserver) {
+        record("rollback", request.getSession());
+        responseObserver.onNext(RollbackResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+      }
+    });
+    channel = vtgate.newChannel();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    vtgate.shutdownNow();
+  }
+
+  private void record(String call, Session session) {
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    received.add(call);
+    sessions.add(session);
+  }
+
+  @Test(timeout = 10000)
+  public void testQueuedCallsUseThePreviousSession() throws Exception {
+    VTGateTx tx = new VTGateConn(new GrpcClient(channel), "ks").beginLazily();
+    tx.setPipelined(true);
+    Context ctx = Context.getDefault();
+
+    SQLFuture<Cursor> first = tx.execute(ctx, "insert 1", null, TabletType.MASTER, ALL);
+    SQLFuture<Cursor> second = tx.execute(ctx, "insert 2", null, TabletType.MASTER, ALL);
+    SQLFuture<Void> commit = tx.commit(ctx);
+    release.countDown();
+    first.checkedGet();
+    second.checkedGet();
+    commit.checkedGet();
+
+    Assert.assertEquals(Arrays.asList("insert 1", "insert 2", "commit"), received);
+    // Each call carried the session returned by the one before it.
+    for (int i = 0; i < sessions.size(); i++) {
+      Assert.assertTrue(sessions.get(i).getInTransaction());
+      Assert.assertEquals(i, sessions.get(i).getShardSessionsCount());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testFailureSkipsQueuedCallsButNotRollback() throws Exception {
+    VTGateTx tx = new VTGateConn(new GrpcClient(channel), "ks").beginLazily();
+    tx.setPipelined(true);
+    Context ctx = Context.getDefault();
+
+    SQLFuture<Cursor> failed = tx.execute(ctx, "fail", null, TabletType.MASTER, ALL);
+    SQLFuture<Cursor> skipped = tx.execute(ctx, "insert 1", null, TabletType.MASTER, ALL);
+    SQLFuture<Void> commit = tx.commit(ctx);
+    SQLFuture<Void> rollback = tx.rollback(ctx);
+    release.countDown();
+
+    SQLException error = null;
+    try {
+      failed.checkedGet();
+      Assert.fail("expected the statement to fail");
+    } catch (SQLException e) {
+      error = e;
+    }
+    for (SQLFuture<?> future : new SQLFuture<?>[] {skipped, commit}) {
+      try {
+        future.checkedGet();
+        Assert.fail("expected the queued call to fail");
+      } catch (SQLException e) {
+        Assert.assertEquals(error.getClass(), e.getClass());
+        Assert.assertEquals(error.getMessage(), e.getMessage());
+      }
+    }
+    rollback.checkedGet();
+    Assert.assertEquals(Arrays.asList("fail", "rollback"), received);
+  }
+
+  @Test(timeout = 10000)
+  public void testOverlappingCallsRejectedWithoutPipelining() throws Exception {
+    VTGateTx tx = new VTGateConn(new GrpcClient(channel), "ks").beginLazily();
+    Context ctx = Context.getDefault();
+
+    SQLFuture<Cursor> first = tx.execute(ctx, "insert 1", null, TabletType.MASTER, ALL);
+    try {
+      tx.execute(ctx, "insert 2", null, TabletType.MASTER, ALL);
+      Assert.fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    release.countDown();
+    first.checkedGet();
+    Assert.assertEquals(Arrays.asList("insert 1"), received);
+  }
+}
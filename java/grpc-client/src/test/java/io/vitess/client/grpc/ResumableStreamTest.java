@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import static io.vitess.client.grpc.FakeVtgate.ALL;
+
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.vitess.client.Context;
+import io.vitess.client.VTGateConn;
+import io.vitess.client.cursor.Cursor;
+import io.vitess.client.cursor.Row;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.QueryResult;
+import io.vitess.proto.Topodata.TabletType;
+import io.vitess.proto.Vtgate.StreamExecuteShardsRequest;
+import io.vitess.proto.Vtgate.StreamExecuteShardsResponse;
+import io.vitess.proto.grpc.VitessGrpc;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResumableStreamTest {
+  /** The ids each shard serves. The shards' key ranges overlap in id order. */
+  private static final List<Long> LEFT_IDS = Arrays.asList(1L, 3L, 5L, 7L);
+  private static final List<Long> RIGHT_IDS = Arrays.asList(2L, 4L, 6L, 8L);
+
+  /** Each call the server got, as "shard:resume_key", with "-" if it started from the top. */
+  private final List<String> calls = new CopyOnWriteArrayList<>();
+
+  private FakeVtgate vtgate;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    vtgate = FakeVtgate.start(new VitessGrpc.VitessImplBase() {
+      @Override
+      public void streamExecuteShards(StreamExecuteShardsRequest request,
+          StreamObserver<StreamExecuteShardsResponse> responseObserver) {
+        String shard = request.getShards(0);
+        Query.BindVariable resumeKey =
+            request.getQuery().getBindVariablesMap().get(VTGateConn.RESUME_KEY);
+        long after = resumeKey == null ? 0 : Long.parseLong(resumeKey.getValue().toStringUtf8());
+        calls.add(shard + ":" + (resumeKey == null ? "-" : after));
+
+        QueryResult.Builder result = QueryResult.newBuilder().addFields(
+            Query.Field.newBuilder().setName("id").setType(Query.Type.INT64));
+        responseObserver.onNext(StreamExecuteShardsResponse.newBuilder().setResult(result).build());
+        for (long id : shard.equals("-80") ? LEFT_IDS : RIGHT_IDS) {
+          if (id <= after) {
+            continue;
+          }
+          // The first stream of the left shard breaks after two rows.
+          if (shard.equals("-80") && resumeKey == null && id == 5) {
+            responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+            return;
+          }
+          String value = Long.toString(id);
+          responseObserver.onNext(StreamExecuteShardsResponse.newBuilder()
+              .setResult(QueryResult.newBuilder().addRows(Query.Row.newBuilder()
+                  .addLengths(value.length())
+                  .setValues(ByteString.copyFromUtf8(value))))
+              .build());
+        }
+        responseObserver.onCompleted();
+      }
+    });
+    channel = vtgate.newChannel();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    vtgate.shutdownNow();
+  }
+
+  @Test(timeout = 10000)
+  public void testEachShardResumesOnItsOwn() throws Exception {
+    VTGateConn conn = new VTGateConn(new GrpcClient(channel));
+    List<Long> ids = new ArrayList<>();
+    try (Cursor cursor = conn.streamExecuteShardsResumable(Context.getDefault(),
+        "select id from t order by id", "select id from t where id > :resume_key order by id",
+        "ks", Arrays.asList("-80", "80-"), null, TabletType.MASTER, ALL, "id", 1)) {
+      for (Row row = cursor.next(); row != null; row = cursor.next()) {
+        ids.add(row.getLong("id"));
+      }
+    }
+    // No row is lost or returned twice, although the shards' ids interleave.
+    Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), ids);
+    // Only the broken shard was resumed, after the last row it returned.
+    Assert.assertEquals(3, calls.size());
+    Assert.assertTrue(calls.containsAll(Arrays.asList("-80:-", "80-:-", "-80:3")));
+  }
+}
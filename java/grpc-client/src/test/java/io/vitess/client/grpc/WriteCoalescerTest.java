@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.client.grpc;
+
+import static io.vitess.client.grpc.FakeVtgate.ALL;
+
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import io.vitess.client.Context;
+import io.vitess.client.SQLFuture;
+import io.vitess.client.VTGateConn;
+import io.vitess.client.WriteCoalescer;
+import io.vitess.client.cursor.Cursor;
+import io.vitess.proto.Query;
+import io.vitess.proto.Query.QueryResult;
+import io.vitess.proto.Query.ResultWithError;
+import io.vitess.proto.Topodata.TabletType;
+import io.vitess.proto.Vtgate.ExecuteBatchRequest;
+import io.vitess.proto.Vtgate.ExecuteBatchResponse;
+import io.vitess.proto.Vtgate.ExecuteRequest;
+import io.vitess.proto.Vtgate.ExecuteResponse;
+import io.vitess.proto.Vtrpc;
+import io.vitess.proto.grpc.VitessGrpc;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteCoalescerTest {
+  /** The queries of each request the server got, one list per RPC. */
+  private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+
+  private FakeVtgate vtgate;
+  private ManagedChannel channel;
+  private ScheduledExecutorService scheduler;
+  private VTGateConn conn;
+
+  @Before
+  public void setUp() throws Exception {
+    vtgate = FakeVtgate.start(new VitessGrpc.VitessImplBase() {
+      @Override
+      public void execute(ExecuteRequest request,
+          StreamObserver<ExecuteResponse> responseObserver) {
+        calls.add(Arrays.asList(request.getQuery().getSql()));
+        responseObserver.onNext(ExecuteResponse.newBuilder()
+            .setResult(result(request.getQuery().getSql())).build());
+        responseObserver.onCompleted();
+      }
+
+      @Override
+      public void executeBatch(ExecuteBatchRequest request,
+          StreamObserver<ExecuteBatchResponse> responseObserver) {
+        List<String> queries = new ArrayList<>();
+        ExecuteBatchResponse.Builder response = ExecuteBatchResponse.newBuilder();
+        for (Query.BoundQuery query : request.getQueriesList()) {
+          queries.add(query.getSql());
+          if (query.getSql().equals("fail")) {
+            response.addResults(ResultWithError.newBuilder().setError(
+                Vtrpc.RPCError.newBuilder()
+                    .setCode(Vtrpc.Code.INVALID_ARGUMENT)
+                    .setMessage("bad query")));
+          } else {
+            response.addResults(ResultWithError.newBuilder().setResult(result(query.getSql())));
+          }
+        }
+        calls.add(queries);
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+      }
+    });
+    channel = vtgate.newChannel();
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    conn = new VTGateConn(new GrpcClient(channel), "ks");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    scheduler.shutdownNow();
+    vtgate.shutdownNow();
+  }
+
+  /** Each result reports the length of its query as the rows affected. */
+  private static QueryResult result(String query) {
+    return QueryResult.newBuilder().setRowsAffected(query.length()).build();
+  }
+
+  @Test(timeout = 10000)
+  public void testStatementsInWindowAreSentTogether() throws Exception {
+    WriteCoalescer coalescer =
+        new WriteCoalescer(conn, scheduler, Duration.millis(100), 10);
+    Context ctx = Context.getDefault();
+
+    SQLFuture<Cursor> first = coalescer.execute(ctx, "insert 1", null, TabletType.MASTER, ALL);
+    SQLFuture<Cursor> failed = coalescer.execute(ctx, "fail", null, TabletType.MASTER, ALL);
+    SQLFuture<Cursor> last = coalescer.execute(ctx, "insert 22", null, TabletType.MASTER, ALL);
+
+    Assert.assertEquals(8, first.checkedGet().getRowsAffected());
+    Assert.assertEquals(9, last.checkedGet().getRowsAffected());
+    try {
+      failed.checkedGet();
+      Assert.fail("expected the statement to fail");
+    } catch (SQLSyntaxErrorException e) {
+      Assert.assertTrue(e.getMessage().contains("bad query"));
+    }
+    Assert.assertEquals(Arrays.asList(Arrays.asList("insert 1", "fail", "insert 22")), calls);
+  }
+
+  @Test(timeout = 10000)
+  public void testFullBatchIsSentRightAway() throws Exception {
+    WriteCoalescer coalescer = new WriteCoalescer(conn, scheduler, Duration.standardHours(1), 2);
+    Context ctx = Context.getDefault();
+
+    SQLFuture<Cursor> first = coalescer.execute(ctx, "insert 1", null, TabletType.MASTER, ALL);
+    SQLFuture<Cursor> second = coalescer.execute(ctx, "insert 2", null, TabletType.MASTER, ALL);
+    first.checkedGet();
+    second.checkedGet();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("insert 1", "insert 2")), calls);
+  }
+
+  @Test(timeout = 10000)
+  public void testDifferentTabletTypesAreNotMerged() throws Exception {
+    WriteCoalescer coalescer = new WriteCoalescer(conn, scheduler, Duration.standardHours(1), 10);
+    Context ctx = Context.getDefault();
+
+    SQLFuture<Cursor> master = coalescer.execute(ctx, "insert 1", null, TabletType.MASTER, ALL);
+    SQLFuture<Cursor> replica =
+        coalescer.execute(ctx, "select 1", null, TabletType.REPLICA, ALL);
+    coalescer.close();
+    master.checkedGet();
+    replica.checkedGet();
+
+    // Each batch held one statement, so each was sent with a plain Execute.
+    Assert.assertEquals(2, calls.size());
+    Assert.assertTrue(calls.contains(Arrays.asList("insert 1")));
+    Assert.assertTrue(calls.contains(Arrays.asList("select 1")));
+  }
+
+  @Test(timeout = 10000)
+  public void testCloseRejectsNewStatements() throws Exception {
+    WriteCoalescer coalescer = new WriteCoalescer(conn, scheduler, Duration.millis(1), 10);
+    coalescer.close();
+    try {
+      coalescer.execute(Context.getDefault(), "insert 1", null, TabletType.MASTER, ALL);
+      Assert.fail("expected SQLException");
+    } catch (SQLException e) {
+      // expected
+    }
+    Assert.assertTrue(calls.isEmpty());
+  }
+
+  @Test(timeout = 10000)
+  public void testRejectedScheduleSendsStatementOnItsOwn() throws Exception {
+    scheduler.shutdown();
+    scheduler.awaitTermination(1, TimeUnit.SECONDS);
+    WriteCoalescer coalescer = new WriteCoalescer(conn, scheduler, Duration.millis(1), 10);
+
+    coalescer.execute(Context.getDefault(), "insert 1", null, TabletType.MASTER, ALL)
+        .checkedGet();
+    Assert.assertEquals(Arrays.asList(Arrays.asList("insert 1")), calls);
+  }
+}
@@ -108,6 +108,10 @@ public class ConnectionProperties {
         Constants.Property.TABLET_TYPE,
         "Tablet Type to which Vitess will connect(master, replica, rdonly)",
         Constants.DEFAULT_TABLET_TYPE);
+    private BooleanConnectionProperty lazyBegin = new BooleanConnectionProperty(
+        "lazyBegin",
+        "With autocommit off, whether to start transactions without a Begin call to vtgate. The first statement of the transaction starts it instead, saving a round trip. Errors Begin would return are reported by that statement.",
+        false);
 
     private BooleanConnectionProperty grpcRetriesEnabled = new BooleanConnectionProperty(
         "grpcRetriesEnabled",
@@ -129,6 +133,58 @@ public class ConnectionProperties {
         "If grpcRetriesEnabled is set, what multiplier should be used to increase exponential backoff on each retry.",
         1.6
     );
+    private IntegerConnectionProperty grpcChannelPoolSize = new IntegerConnectionProperty(
+        "grpcChannelPoolSize",
+        "How many gRPC channels, each with its own TCP connection, to open to each vtgate. Calls go to the channel with the fewest calls in progress.",
+        1
+    );
+    private LongConnectionProperty streamIdleTimeoutMillis = new LongConnectionProperty(
+        "streamIdleTimeoutMillis",
+        "If set, streaming queries are not bounded by the default query timeout, but fail once vtgate has sent no results for this many milliseconds. This lets long exports run for as long as results keep coming, while still catching a stalled stream. A timeout set with Statement.setQueryTimeout() still bounds the whole stream. 0 or less applies the query timeout to the whole stream.",
+        0
+    );
+    // Batch-related configs
+    private IntegerConnectionProperty batchChunkSize = new IntegerConnectionProperty(
+        "batchChunkSize",
+        "The maximum number of queries executeBatch() sends to vtgate in one request. Larger batches are split into chunks, so they don't become one huge message. 0 or less sends the whole batch at once.",
+        1000
+    );
+    private IntegerConnectionProperty batchConcurrency = new IntegerConnectionProperty(
+        "batchConcurrency",
+        "In autocommit mode, how many chunks of an executeBatch() may be in flight at once. Above 1, later chunks may execute before earlier ones complete, so only raise it for batches of independent queries. Chunks in a transaction always run one after the other.",
+        1
+    );
+    private BooleanConnectionProperty rewriteBatchedStatements = new BooleanConnectionProperty(
+        "rewriteBatchedStatements",
+        "Whether PreparedStatement.executeBatch() should rewrite batched single-row INSERT ... VALUES (...) statements into multi-row INSERTs, so vtgate plans and executes one statement per chunk of rows.",
+        false
+    );
+    private IntegerConnectionProperty rewriteBatchedStatementsMaxRows = new IntegerConnectionProperty(
+        "rewriteBatchedStatementsMaxRows",
+        "If rewriteBatchedStatements is set, the maximum number of rows in each rewritten INSERT.",
+        1000
+    );
+    private IntegerConnectionProperty rewriteBatchedStatementsMaxBytes = new IntegerConnectionProperty(
+        "rewriteBatchedStatementsMaxBytes",
+        "If rewriteBatchedStatements is set, the approximate maximum size in bytes of the query text and bind variables of each rewritten INSERT. Keep it well below the gRPC message size limit of vtgate.",
+        2 * 1024 * 1024
+    );
+    // Prepared statement configs
+    private BooleanConnectionProperty cachePrepStmts = new BooleanConnectionProperty(
+        "cachePrepStmts",
+        "Whether to cache the parsed SQL of prepared statements, so preparing the same SQL again skips parsing it. Connections with the same vtgates, user and keyspace share the cache.",
+        false
+    );
+    private IntegerConnectionProperty prepStmtCacheSize = new IntegerConnectionProperty(
+        "prepStmtCacheSize",
+        "If cachePrepStmts is set, how many statements to keep in the cache. The least recently used ones are evicted first.",
+        250
+    );
+    private IntegerConnectionProperty prepStmtCacheSqlLimit = new IntegerConnectionProperty(
+        "prepStmtCacheSqlLimit",
+        "If cachePrepStmts is set, the length of the longest SQL to cache.",
+        2048
+    );
     // TLS-related configs
     private BooleanConnectionProperty useSSL = new BooleanConnectionProperty(
         Constants.Property.USE_SSL,
@@ -332,6 +388,14 @@ public class ConnectionProperties {
         this.twopcEnabledCache = this.twopcEnabled.getValueAsBoolean();
     }
 
+    public boolean getLazyBegin() {
+        return lazyBegin.getValueAsBoolean();
+    }
+
+    public void setLazyBegin(boolean lazyBegin) {
+        this.lazyBegin.setValue(lazyBegin);
+    }
+
     public Constants.QueryExecuteType getExecuteType() {
         return executeType.getValueAsEnum();
     }
@@ -386,6 +450,86 @@ public class ConnectionProperties {
         this.grpcRetryBackoffMultiplier = grpcRetryBackoffMultiplier;
     }
 
+    public Integer getGrpcChannelPoolSize() {
+        return grpcChannelPoolSize.getValueAsInteger();
+    }
+
+    public void setGrpcChannelPoolSize(Integer grpcChannelPoolSize) {
+        this.grpcChannelPoolSize.setValue(grpcChannelPoolSize);
+    }
+
+    public Long getStreamIdleTimeoutMillis() {
+        return streamIdleTimeoutMillis.getValueAsLong();
+    }
+
+    public void setStreamIdleTimeoutMillis(Long streamIdleTimeoutMillis) {
+        this.streamIdleTimeoutMillis.setValue(streamIdleTimeoutMillis);
+    }
+
+    public Integer getBatchChunkSize() {
+        return batchChunkSize.getValueAsInteger();
+    }
+
+    public void setBatchChunkSize(Integer batchChunkSize) {
+        this.batchChunkSize.setValue(batchChunkSize);
+    }
+
+    public Integer getBatchConcurrency() {
+        return batchConcurrency.getValueAsInteger();
+    }
+
+    public void setBatchConcurrency(Integer batchConcurrency) {
+        this.batchConcurrency.setValue(batchConcurrency);
+    }
+
+    public boolean getRewriteBatchedStatements() {
+        return rewriteBatchedStatements.getValueAsBoolean();
+    }
+
+    public void setRewriteBatchedStatements(boolean rewriteBatchedStatements) {
+        this.rewriteBatchedStatements.setValue(rewriteBatchedStatements);
+    }
+
+    public Integer getRewriteBatchedStatementsMaxRows() {
+        return rewriteBatchedStatementsMaxRows.getValueAsInteger();
+    }
+
+    public void setRewriteBatchedStatementsMaxRows(Integer rewriteBatchedStatementsMaxRows) {
+        this.rewriteBatchedStatementsMaxRows.setValue(rewriteBatchedStatementsMaxRows);
+    }
+
+    public Integer getRewriteBatchedStatementsMaxBytes() {
+        return rewriteBatchedStatementsMaxBytes.getValueAsInteger();
+    }
+
+    public void setRewriteBatchedStatementsMaxBytes(Integer rewriteBatchedStatementsMaxBytes) {
+        this.rewriteBatchedStatementsMaxBytes.setValue(rewriteBatchedStatementsMaxBytes);
+    }
+
+    public boolean getCachePrepStmts() {
+        return cachePrepStmts.getValueAsBoolean();
+    }
+
+    public void setCachePrepStmts(boolean cachePrepStmts) {
+        this.cachePrepStmts.setValue(cachePrepStmts);
+    }
+
+    public Integer getPrepStmtCacheSize() {
+        return prepStmtCacheSize.getValueAsInteger();
+    }
+
+    public void setPrepStmtCacheSize(Integer prepStmtCacheSize) {
+        this.prepStmtCacheSize.setValue(prepStmtCacheSize);
+    }
+
+    public Integer getPrepStmtCacheSqlLimit() {
+        return prepStmtCacheSqlLimit.getValueAsInteger();
+    }
+
+    public void setPrepStmtCacheSqlLimit(Integer prepStmtCacheSqlLimit) {
+        this.prepStmtCacheSqlLimit.setValue(prepStmtCacheSqlLimit);
+    }
+
     public boolean getUseSSL() {
         return useSSL.getValueAsBoolean();
     }
@@ -556,6 +700,35 @@ public class ConnectionProperties {
         }
     }
 
+    private static class IntegerConnectionProperty extends ConnectionProperty {
+
+        private IntegerConnectionProperty(String name, String description, int defaultValue) {
+            super(name, description, defaultValue);
+        }
+
+        @Override
+        void initializeFrom(String extractedValue) {
+            if (extractedValue != null) {
+                setValue(Integer.parseInt(extractedValue));
+            } else {
+                this.valueAsObject = this.defaultValue;
+            }
+        }
+
+        @Override
+        String[] getAllowableValues() {
+            return null;
+        }
+
+        public void setValue(Integer value) {
+            this.valueAsObject = value;
+        }
+
+        Integer getValueAsInteger() {
+            return valueAsObject == null ? null : (Integer) valueAsObject;
+        }
+    }
+
     private static class DoubleConnectionProperty extends ConnectionProperty {
 
         private DoubleConnectionProperty(String name, String description, double defaultValue) {
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.jdbc;
+
+import io.vitess.proto.Query;
+import io.vitess.util.Constants;
+import io.vitess.util.StringUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A single-row {@code INSERT ... VALUES (?, ...)} which can be rewritten to insert several rows
+ * at once, like the rewriteBatchedStatements option of MySQL Connector/J.
+ * <p>
+ * The statement is split into the part before the row, the row itself and the part after it,
+ * e.g. an {@code ON DUPLICATE KEY UPDATE} clause. Only the row may contain parameters, so the
+ * parameters of row r of the rewritten statement are numbered after those of the rows before it.
+ */
+final class MultiRowInsert {
+    /** Size estimate for values of fixed-size types, e.g. numbers and dates. */
+    private static final int FIXED_VALUE_SIZE = 16;
+    /** Keywords which may come before the table name of an INSERT or REPLACE. */
+    private static final Set<String> INSERT_KEYWORDS = new HashSet<>(Arrays.asList(
+        "INSERT", "REPLACE", "LOW_PRIORITY", "DELAYED", "HIGH_PRIORITY", "IGNORE", "INTO"));
+
+    private final String prefix;
+    private final String row;
+    private final String suffix;
+    private final int parameterCount;
+    private final Set<String> parameterNames;
+
+    private MultiRowInsert(String prefix, String row, String suffix, int parameterCount) {
+        this.prefix = prefix;
+        this.row = row;
+        this.suffix = suffix;
+        this.parameterCount = parameterCount;
+        this.parameterNames = new HashSet<>();
+        for (int i = 1; i <= parameterCount; ++i) {
+            this.parameterNames.add(Constants.LITERAL_V + i);
+        }
+    }
+
+    /**
+     * Parses the statement of a PreparedStatement.
+     *
+     * @return null if the statement is not a single-row INSERT or REPLACE with all of its
+     * parameters in the row
+     */
+    static MultiRowInsert parse(String sql) {
+        int statementStart = StringUtils.findStartOfStatement(sql);
+        if (!StringUtils.startsWithIgnoreCaseAndWs(sql, "INSERT", statementStart)
+            && !StringUtils.startsWithIgnoreCaseAndWs(sql, "REPLACE", statementStart)) {
+            return null;
+        }
+        boolean[] code = StringUtils.getCodeMask(sql);
+        int values = findValuesKeyword(sql, code, statementStart);
+        if (values < 0 || countParameters(sql, code, 0, values) > 0) {
+            return null;
+        }
+        int rowStart = skipWhitespace(sql, values);
+        if (rowStart >= sql.length() || sql.charAt(rowStart) != '(') {
+            return null;
+        }
+        int depth = 0;
+        int rowEnd = -1;
+        for (int i = rowStart; i < sql.length() && rowEnd < 0; ++i) {
+            if (!code[i]) {
+                continue;
+            }
+            char c = sql.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                rowEnd = i + 1;
+            }
+        }
+        if (rowEnd < 0) {
+            return null;
+        }
+        int afterRow = skipWhitespace(sql, rowEnd);
+        if (afterRow < sql.length() && sql.charAt(afterRow) == ',') {
+            // Already a multi-row INSERT.
+            return null;
+        }
+        if (countParameters(sql, code, rowEnd, sql.length()) > 0) {
+            return null;
+        }
+        return new MultiRowInsert(sql.substring(0, rowStart), sql.substring(rowStart, rowEnd),
+            sql.substring(rowEnd), countParameters(sql, code, rowStart, rowEnd));
+    }
+
+    /**
+     * Returns whether all the batched bind variables are parameters of the row, so they can be
+     * renumbered.
+     */
+    boolean canBind(List<Map<String, ?>> batchedArgs) {
+        for (Map<String, ?> args : batchedArgs) {
+            if (!parameterNames.containsAll(args.keySet())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the statement inserting {@code rows} rows.
+     */
+    String getSql(int rows) {
+        StringBuilder sql = new StringBuilder(
+            prefix.length() + rows * (row.length() + 1) + suffix.length());
+        sql.append(prefix).append(row);
+        for (int i = 1; i < rows; ++i) {
+            sql.append(',').append(row);
+        }
+        return sql.append(suffix).toString();
+    }
+
+    /**
+     * Returns the bind variables of the statement inserting the given rows.
+     */
+    Map<String, Object> bind(List<Map<String, ?>> rows) {
+        Map<String, Object> bindVariables = new HashMap<>(rows.size() * parameterCount * 4 / 3 + 1);
+        for (int r = 0; r < rows.size(); ++r) {
+            Map<String, ?> args = rows.get(r);
+            for (int i = 1; i <= parameterCount; ++i) {
+                String name = Constants.LITERAL_V + i;
+                if (args.containsKey(name)) {
+                    bindVariables.put(Constants.LITERAL_V + (r * parameterCount + i), args.get(name));
+                }
+            }
+        }
+        return bindVariables;
+    }
+
+    /**
+     * Returns the size of the statement text without any rows.
+     */
+    int getBaseSize() {
+        return prefix.length() + suffix.length();
+    }
+
+    /**
+     * Estimates how much a row with the given bind variables adds to the request.
+     */
+    int estimateRowSize(Map<String, ?> args) {
+        int size = row.length() + 1;
+        for (Object value : args.values()) {
+            if (value instanceof Query.BindVariable) {
+                size += ((Query.BindVariable) value).getValue().size();
+            } else if (value instanceof String) {
+                size += ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length;
+            } else {
+                size += FIXED_VALUE_SIZE;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the end of the VALUES (or VALUE) keyword of the statement, or -1 if it has none.
+     * Only a keyword after the table name and outside of parentheses counts, so a table or column
+     * named {@code value} isn't mistaken for it.
+     */
+    private static int findValuesKeyword(String sql, boolean[] code, int statementStart) {
+        int depth = 0;
+        boolean tableSeen = false;
+        for (int i = statementStart; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            if (!code[i]) {
+                // A quoted identifier at the top level can only be the table name.
+                if (c == '`' && depth == 0) {
+                    tableSeen = true;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && isWordChar(c)
+                && (i == 0 || !code[i - 1] || !isWordChar(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < sql.length() && code[end] && isWordChar(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end).toUpperCase(Locale.ROOT);
+                boolean qualified = i > 0 && code[i - 1] && sql.charAt(i - 1) == '.';
+                if (tableSeen && !qualified) {
+                    if (word.equals("VALUES") || word.equals("VALUE")) {
+                        return end;
+                    }
+                    if (word.equals("SELECT") || word.equals("SET")) {
+                        // INSERT ... SELECT or INSERT ... SET, which have no row to repeat.
+                        return -1;
+                    }
+                }
+                if (!INSERT_KEYWORDS.contains(word)) {
+                    tableSeen = true;
+                }
+                i = end - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int countParameters(String sql, boolean[] code, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; ++i) {
+            if (code[i] && sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int skipWhitespace(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.vitess.jdbc;
+
+import com.google.common.cache.Cache;
+import io.vitess.util.Constants;
+import io.vitess.util.StringUtils;
+
+/**
+ * What a {@link VitessPreparedStatement} learns from parsing its SQL. It only depends on the SQL
+ * text, so it is immutable and, with cachePrepStmts, shared by all statements with the same SQL.
+ * Parts that are not always needed are parsed on first use.
+ */
+final class StatementTemplate {
+    private final String sql;
+    private final boolean select;
+    private final boolean show;
+    // Lazily computed. Racing threads compute the same value, so no locking is needed.
+    private volatile int parameterCount = -1;
+    private volatile MultiRowInsert multiRowInsert;
+    private volatile boolean multiRowInsertParsed;
+
+    private StatementTemplate(String sql) {
+        this.sql = sql;
+        this.select = StringUtils.startsWithIgnoreCaseAndWs(sql, Constants.SQL_SELECT);
+        this.show = StringUtils.startsWithIgnoreCaseAndWs(sql, Constants.SQL_SHOW);
+    }
+
+    /**
+     * Returns the template for the given SQL, from the template cache of the connection if it has
+     * one.
+     */
+    static StatementTemplate get(VitessConnection connection, String sql) {
+        if (connection.getCachePrepStmts() && sql.length() <= connection.getPrepStmtCacheSqlLimit()) {
+            Cache<String, StatementTemplate> cache = connection.getStatementTemplateCache();
+            if (null != cache) {
+                StatementTemplate template = cache.getIfPresent(sql);
+                if (null == template) {
+                    template = new StatementTemplate(sql);
+                    cache.put(sql, template);
+                }
+                return template;
+            }
+        }
+        return new StatementTemplate(sql);
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    boolean isSelect() {
+        return select;
+    }
+
+    boolean isShow() {
+        return show;
+    }
+
+    int getParameterCount() {
+        if (parameterCount < 0) {
+            parameterCount = calculateParameterCount(sql);
+        }
+        return parameterCount;
+    }
+
+    /**
+     * Returns the statement as a multi-row INSERT, or null if it can't be rewritten into one.
+     */
+    MultiRowInsert getMultiRowInsert() {
+        if (!multiRowInsertParsed) {
+            multiRowInsert = MultiRowInsert.parse(sql);
+            multiRowInsertParsed = true;
+        }
+        return multiRowInsert;
+    }
+
+    /**
+     * This function was ported from mysql-connector-java ParseInfo object and greatly simplified to just the parts
+     * for counting parameters
+     */
+    private static int calculateParameterCount(String sql) {
+        char quotedIdentifierChar = '`';
+        char currentQuoteChar = 0;
+        boolean inQuotes = false;
+        boolean inQuotedId = false;
+        int statementCount = 0;
+        int statementLength = sql.length();
+        int statementStartPos = StringUtils.findStartOfStatement(sql);
+
+        for (int i = statementStartPos; i < statementLength; ++i) {
+            char c = sql.charAt(i);
+
+            if (c == '\\' && i < (statementLength - 1)) {
+                i++;
+                continue; // next character is escaped
+            }
+
+            // are we in a quoted identifier? (only valid when the id is not inside a 'string')
+            if (!inQuotes && c == quotedIdentifierChar) {
+                inQuotedId = !inQuotedId;
+            } else if (!inQuotedId) {
+                //	only respect quotes when not in a quoted identifier
+                if (inQuotes) {
+                    if (((c == '\'') || (c == '"')) && c == currentQuoteChar) {
+                        if (i < (statementLength - 1) && sql.charAt(i + 1) == currentQuoteChar) {
+                            i++;
+                            continue; // inline quote escape
+                        }
+
+                        inQuotes = !inQuotes;
+                        currentQuoteChar = 0;
+                    } else if (((c == '\'') || (c == '"')) && c == currentQuoteChar) {
+                        inQuotes = !inQuotes;
+                        currentQuoteChar = 0;
+                    }
+                } else {
+                    if (c == '#' || (c == '-' && (i + 1) < statementLength && sql.charAt(i + 1) == '-')) {
+                        // comment, run out to end of statement, or newline, whichever comes first
+                        int endOfStmt = statementLength - 1;
+
+                        for (; i < endOfStmt; i++) {
+                            c = sql.charAt(i);
+
+                            if (c == '\r' || c == '\n') {
+                                break;
+                            }
+                        }
+
+                        continue;
+                    } else if (c == '/' && (i + 1) < statementLength) {
+                        // Comment?
+                        char cNext = sql.charAt(i + 1);
+                        if (cNext == '*') {
+                            i += 2;
+
+                            for (int j = i; j < statementLength; j++) {
+                                i++;
+                                cNext = sql.charAt(j);
+
+                                if (cNext == '*' && (j + 1) < statementLength) {
+                                    if (sql.charAt(j + 1) == '/') {
+                                        i++;
+
+                                        if (i < statementLength) {
+                                            c = sql.charAt(i);
+                                        }
+
+                                        break; // comment done
+                                    }
+                                }
+                            }
+                        }
+                    } else if ((c == '\'') || (c == '"')) {
+                        inQuotes = true;
+                        currentQuoteChar = c;
+                    }
+                }
+            }
+
+            if ((c == '?') && !inQuotes && !inQuotedId) {
+                statementCount++;
+            }
+        }
+
+        return statementCount;
+    }
+}
@@ -16,6 +16,7 @@
 
 package io.vitess.jdbc;
 
+import com.google.common.cache.Cache;
 import io.vitess.client.Context;
 import io.vitess.client.VTGateConn;
 import io.vitess.client.VTGateTx;
@@ -596,6 +597,13 @@ public class VitessConnection extends ConnectionProperties implements Connection
         return vTGateConnections.getVtGateConnInstance();
     }
 
+    /**
+     * Return the cache of parsed prepared statements, or null if cachePrepStmts is off.
+     */
+    Cache<String, StatementTemplate> getStatementTemplateCache() {
+        return null == vTGateConnections ? null : vTGateConnections.getStatementTemplateCache();
+    }
+
     public VTGateTx getVtGateTx() {
         return vtGateTx;
     }
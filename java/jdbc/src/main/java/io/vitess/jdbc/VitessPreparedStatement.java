@@ -17,11 +17,13 @@
 package io.vitess.jdbc;
 
 import io.vitess.client.Context;
+import io.vitess.client.Proto;
 import io.vitess.client.VTGateConn;
 import io.vitess.client.VTGateTx;
 import io.vitess.client.cursor.Cursor;
 import io.vitess.client.cursor.CursorWithError;
 import io.vitess.mysql.DateTime;
+import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
 import io.vitess.util.Constants;
 import io.vitess.util.StringUtils;
@@ -65,20 +67,35 @@ import java.util.logging.Logger;
  * This class expected for an sql query and a given set of parameters
  * the DB Call can be made once with any of the following method
  * execute, executeQuery, executeUpdate and executeBatch.
- * After the call, the parameters will be reset
- * and a new set of parameters needs to be provided before calling any of the above method.
+ * As the JDBC spec requires, parameters keep their values across executions until they are set
+ * again or {@link #clearParameters()} is called. Each value is encoded into its wire form when it
+ * is set, so re-executing with only some parameters changed doesn't re-encode the others.
  */
 public class VitessPreparedStatement extends VitessStatement implements PreparedStatement {
 
     /* Get actual class name to be printed on */
     private static Logger logger = Logger.getLogger(VitessPreparedStatement.class.getName());
+    private static final Query.BindVariable NULL_BIND_VARIABLE = Proto.buildBindVariable(null);
+    private static final Query.BindVariable TRUE_BIND_VARIABLE = Proto.buildBindVariable(true);
+    private static final Query.BindVariable FALSE_BIND_VARIABLE = Proto.buildBindVariable(false);
     private final String sql;
+    /**
+     * The parameters, already encoded as {@link Query.BindVariable}s
+     */
     private final Map<String, Object> bindVariables;
+    /**
+     * Scratch space for encoding integer parameters
+     */
+    private final byte[] encodeBuffer = new byte[Proto.MAX_LONG_LENGTH];
     /**
      * Holds batched commands
      */
     private final List<Map<String, ?>> batchedArgs;
     private VitessParameterMetaData parameterMetadata;
+    /**
+     * The parsed SQL, possibly shared with other statements through the template cache
+     */
+    private final StatementTemplate template;
 
     public VitessPreparedStatement(VitessConnection vitessConnection, String sql)
         throws SQLException {
@@ -103,6 +120,7 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         checkSQLNullOrEmpty(sql);
         this.bindVariables = new HashMap<>();
         this.sql = sql;
+        this.template = StatementTemplate.get(vitessConnection, sql);
         this.generatedId = -1;
         this.retrieveGeneratedKeys = (autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS);
         this.batchedArgs = new ArrayList<>();
@@ -123,35 +141,28 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         vtGateConn = this.vitessConnection.getVtGateConn();
         tabletType = this.vitessConnection.getTabletType();
 
-        showSql = StringUtils.startsWithIgnoreCaseAndWs(this.sql, Constants.SQL_SHOW);
+        showSql = this.template.isShow();
         try {
             if (showSql) {
                 cursor = this.executeShow(this.sql);
             } else {
+                String sql = applyMaxRows(this.sql);
                 if (tabletType != Topodata.TabletType.MASTER || this.vitessConnection
                     .getAutoCommit()) {
                     Context context =
                         this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                    if (vitessConnection.isSimpleExecute()) {
+                    if (!isStreamExecute()) {
                         cursor =
-                            vtGateConn.execute(context, this.sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields())
-                                .checkedGet();
+                            waitFor(vtGateConn.execute(context, sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields()));
                     } else {
-                        cursor = vtGateConn
-                            .streamExecute(context, this.sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields());
+                        cursor = trackStream(vtGateConn
+                            .streamExecute(streamContext(context), sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields()));
                     }
                 } else {
-                    VTGateTx vtGateTx = this.vitessConnection.getVtGateTx();
-                    if (vtGateTx == null) {
-                        Context context =
-                            this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                        vtGateTx = vtGateConn.begin(context).checkedGet();
-                        this.vitessConnection.setVtGateTx(vtGateTx);
-                    }
+                    VTGateTx vtGateTx = getOrBeginTransaction(vtGateConn);
                     Context context =
                         this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                    cursor = vtGateTx.execute(context, this.sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields())
-                        .checkedGet();
+                    cursor = waitFor(vtGateTx.execute(context, sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields()));
                 }
             }
 
@@ -163,8 +174,6 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         } catch (SQLRecoverableException ex) {
             this.vitessConnection.setVtGateTx(null);
             throw ex;
-        } finally {
-            this.bindVariables.clear();
         }
         return (this.vitessResultSet);
     }
@@ -189,20 +198,12 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         try {
             if (this.vitessConnection.getAutoCommit()) {
                 Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursor = vtGateConn.execute(context, this.sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields())
-                    .checkedGet();
+                cursor = waitFor(vtGateConn.execute(context, this.sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields()));
             } else {
-                VTGateTx vtGateTx = this.vitessConnection.getVtGateTx();
-                if (null == vtGateTx) {
-                    Context context =
-                        this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                    vtGateTx = vtGateConn.begin(context).checkedGet();
-                    this.vitessConnection.setVtGateTx(vtGateTx);
-                }
+                VTGateTx vtGateTx = getOrBeginTransaction(vtGateConn);
 
                 Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursor = vtGateTx.execute(context, this.sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields())
-                    .checkedGet();
+                cursor = waitFor(vtGateTx.execute(context, this.sql, this.bindVariables, tabletType, vitessConnection.getIncludedFields()));
             }
 
             if (null == cursor) {
@@ -227,8 +228,6 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         } catch (SQLRecoverableException ex) {
             this.vitessConnection.setVtGateTx(null);
             throw ex;
-        } finally {
-            this.bindVariables.clear();
         }
         return truncatedUpdateCount;
     }
@@ -241,8 +240,8 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         checkOpen();
         closeOpenResultSetAndResetCount();
 
-        selectSql = StringUtils.startsWithIgnoreCaseAndWs(this.sql, Constants.SQL_SELECT);
-        showSql = StringUtils.startsWithIgnoreCaseAndWs(this.sql, Constants.SQL_SHOW);
+        selectSql = this.template.isSelect();
+        showSql = this.template.isShow();
 
         if (showSql) {
             cursor = this.executeShow(this.sql);
@@ -265,95 +264,99 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         this.bindVariables.clear();
     }
 
+    private void setParameter(int parameterIndex, Query.BindVariable bindVariable) {
+        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, bindVariable);
+    }
+
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, null);
+        setParameter(parameterIndex, NULL_BIND_VARIABLE);
     }
 
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, x ? TRUE_BIND_VARIABLE : FALSE_BIND_VARIABLE);
     }
 
     public void setByte(int parameterIndex, byte x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x, this.encodeBuffer));
     }
 
     public void setShort(int parameterIndex, short x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x, this.encodeBuffer));
     }
 
     public void setInt(int parameterIndex, int x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x, this.encodeBuffer));
     }
 
     public void setLong(int parameterIndex, long x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x, this.encodeBuffer));
     }
 
     public void setFloat(int parameterIndex, float x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x));
     }
 
     public void setDouble(int parameterIndex, double x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x));
     }
 
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x));
     }
 
     public void setString(int parameterIndex, String x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x));
     }
 
     public void setBytes(int parameterIndex, byte[] x) throws SQLException {
         checkOpen();
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, x);
+        setParameter(parameterIndex, Proto.buildBindVariable(x));
     }
 
     public void setDate(int parameterIndex, Date x) throws SQLException {
         checkOpen();
         String date = DateTime.formatDate(x);
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, date);
+        setParameter(parameterIndex, Proto.buildBindVariable(date));
     }
 
     public void setTime(int parameterIndex, Time x) throws SQLException {
         checkOpen();
         String time = DateTime.formatTime(x);
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, time);
+        setParameter(parameterIndex, Proto.buildBindVariable(time));
     }
 
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
         checkOpen();
         String timeStamp = DateTime.formatTimestamp(x);
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, timeStamp);
+        setParameter(parameterIndex, Proto.buildBindVariable(timeStamp));
     }
 
     public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
         checkOpen();
         String date = DateTime.formatDate(x, cal);
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, date);
+        setParameter(parameterIndex, Proto.buildBindVariable(date));
     }
 
     public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
         checkOpen();
         String time = DateTime.formatTime(x, cal);
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, time);
+        setParameter(parameterIndex, Proto.buildBindVariable(time));
     }
 
     public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
         checkOpen();
         String timeStamp = DateTime.formatTimestamp(x, cal);
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex, timeStamp);
+        setParameter(parameterIndex, Proto.buildBindVariable(timeStamp));
     }
 
     public void setObject(int parameterIndex, Object x) throws SQLException {
@@ -437,59 +440,35 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
         // In other words, the list can contain only statements that produce an update count."
         checkNotReadOnly();
 
-        VTGateConn vtGateConn;
-        Topodata.TabletType tabletType;
-        VTGateTx vtGateTx;
         List<CursorWithError> cursorWithErrorList;
         List<String> batchedQueries = new ArrayList<>();
+        List<Map<String, ?>> batchedQueryArgs = batchedArgs;
+        int[] commandsPerQuery = null;
 
         if(0 == batchedArgs.size()) {
             return new int[0];
         }
 
         try {
-            vtGateConn = this.vitessConnection.getVtGateConn();
-            tabletType = this.vitessConnection.getTabletType();
-
-            if (tabletType != Topodata.TabletType.MASTER) {
-                throw new SQLException(Constants.SQLExceptionMessages.DML_NOT_ON_MASTER);
-            }
-
             /**
              * Current api does not support single query and multiple bindVariables list.
              * So, List of the query is created to match the bindVariables list.
              */
-            for (int i = 0; i < batchedArgs.size(); ++i) {
-                batchedQueries.add(this.sql);
-            }
-
-            if (this.vitessConnection.getAutoCommit()) {
-                Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursorWithErrorList =
-                    vtGateConn.executeBatch(context, batchedQueries, batchedArgs, tabletType, vitessConnection.getIncludedFields())
-                        .checkedGet();
+            MultiRowInsert insert = getMultiRowInsert();
+            if (null != insert && batchedArgs.size() > 1 && insert.canBind(batchedArgs)) {
+                batchedQueryArgs = new ArrayList<>();
+                commandsPerQuery = rewriteBatch(insert, batchedQueries, batchedQueryArgs);
             } else {
-                vtGateTx = this.vitessConnection.getVtGateTx();
-                if (null == vtGateTx) {
-                    Context context =
-                        this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                    vtGateTx = vtGateConn.begin(context).checkedGet();
-                    this.vitessConnection.setVtGateTx(vtGateTx);
+                for (int i = 0; i < batchedArgs.size(); ++i) {
+                    batchedQueries.add(this.sql);
                 }
-
-                Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursorWithErrorList =
-                    vtGateTx.executeBatch(context, batchedQueries, batchedArgs, tabletType, vitessConnection.getIncludedFields())
-                        .checkedGet();
             }
 
-            if (null == cursorWithErrorList) {
-                throw new SQLException(Constants.SQLExceptionMessages.METHOD_CALL_FAILED);
-            }
+            cursorWithErrorList = executeBatchInChunks(batchedQueries, batchedQueryArgs);
 
             //TODO(harshit): To Support AutoGenerated Keys in a Batch
 
-            return this.generateBatchUpdateResult(cursorWithErrorList);
+            return this.generateBatchUpdateResult(cursorWithErrorList, commandsPerQuery);
         } finally {
             this.clearBatch();
         }
@@ -497,110 +476,57 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
 
     }
 
-    //Methods which are currently not supported
-
-    public ParameterMetaData getParameterMetaData() throws SQLException {
-        checkOpen();
-        if (this.parameterMetadata == null) {
-            this.parameterMetadata = new VitessParameterMetaData(calculateParameterCount());
+    private MultiRowInsert getMultiRowInsert() {
+        if (!this.vitessConnection.getRewriteBatchedStatements()) {
+            return null;
         }
-
-        return this.parameterMetadata;
+        return this.template.getMultiRowInsert();
     }
 
     /**
-     * This function was ported from mysql-connector-java ParseInfo object and greatly simplified to just the parts
-     * for counting parameters
+     * Packs the batched rows into multi-row INSERTs, each within the row and size limits of the
+     * connection.
+     *
+     * @return the number of batched commands in each query
      */
-    private int calculateParameterCount() throws SQLException {
-        if (sql == null) {
-            throw new SQLException(Constants.SQLExceptionMessages.ILLEGAL_VALUE_FOR + ": sql null");
-        }
-
-        char quotedIdentifierChar = '`';
-        char currentQuoteChar = 0;
-        boolean inQuotes = false;
-        boolean inQuotedId = false;
-        int statementCount = 0;
-        int statementLength = sql.length();
-        int statementStartPos = StringUtils.findStartOfStatement(sql);
-
-        for (int i = statementStartPos; i < statementLength; ++i) {
-            char c = sql.charAt(i);
-
-            if (c == '\\' && i < (statementLength - 1)) {
-                i++;
-                continue; // next character is escaped
-            }
-
-            // are we in a quoted identifier? (only valid when the id is not inside a 'string')
-            if (!inQuotes && c == quotedIdentifierChar) {
-                inQuotedId = !inQuotedId;
-            } else if (!inQuotedId) {
-                //	only respect quotes when not in a quoted identifier
-                if (inQuotes) {
-                    if (((c == '\'') || (c == '"')) && c == currentQuoteChar) {
-                        if (i < (statementLength - 1) && sql.charAt(i + 1) == currentQuoteChar) {
-                            i++;
-                            continue; // inline quote escape
-                        }
-
-                        inQuotes = !inQuotes;
-                        currentQuoteChar = 0;
-                    } else if (((c == '\'') || (c == '"')) && c == currentQuoteChar) {
-                        inQuotes = !inQuotes;
-                        currentQuoteChar = 0;
-                    }
-                } else {
-                    if (c == '#' || (c == '-' && (i + 1) < statementLength && sql.charAt(i + 1) == '-')) {
-                        // comment, run out to end of statement, or newline, whichever comes first
-                        int endOfStmt = statementLength - 1;
-
-                        for (; i < endOfStmt; i++) {
-                            c = sql.charAt(i);
-
-                            if (c == '\r' || c == '\n') {
-                                break;
-                            }
-                        }
-
-                        continue;
-                    } else if (c == '/' && (i + 1) < statementLength) {
-                        // Comment?
-                        char cNext = sql.charAt(i + 1);
-                        if (cNext == '*') {
-                            i += 2;
-
-                            for (int j = i; j < statementLength; j++) {
-                                i++;
-                                cNext = sql.charAt(j);
-
-                                if (cNext == '*' && (j + 1) < statementLength) {
-                                    if (sql.charAt(j + 1) == '/') {
-                                        i++;
-
-                                        if (i < statementLength) {
-                                            c = sql.charAt(i);
-                                        }
-
-                                        break; // comment done
-                                    }
-                                }
-                            }
-                        }
-                    } else if ((c == '\'') || (c == '"')) {
-                        inQuotes = true;
-                        currentQuoteChar = c;
-                    }
+    private int[] rewriteBatch(MultiRowInsert insert, List<String> batchedQueries,
+        List<Map<String, ?>> batchedQueryArgs) {
+        int maxRows = Math.max(1, this.vitessConnection.getRewriteBatchedStatementsMaxRows());
+        int maxBytes = this.vitessConnection.getRewriteBatchedStatementsMaxBytes();
+        List<Integer> commandsPerQuery = new ArrayList<>();
+        int start = 0;
+        while (start < batchedArgs.size()) {
+            int end = start + 1;
+            long bytes = insert.getBaseSize() + insert.estimateRowSize(batchedArgs.get(start));
+            while (end < batchedArgs.size() && end - start < maxRows) {
+                bytes += insert.estimateRowSize(batchedArgs.get(end));
+                if (bytes > maxBytes) {
+                    break;
                 }
+                end++;
             }
+            List<Map<String, ?>> rows = batchedArgs.subList(start, end);
+            batchedQueries.add(insert.getSql(rows.size()));
+            batchedQueryArgs.add(insert.bind(rows));
+            commandsPerQuery.add(rows.size());
+            start = end;
+        }
+        int[] result = new int[commandsPerQuery.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = commandsPerQuery.get(i);
+        }
+        return result;
+    }
 
-            if ((c == '?') && !inQuotes && !inQuotedId) {
-                statementCount++;
-            }
+    //Methods which are currently not supported
+
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        checkOpen();
+        if (this.parameterMetadata == null) {
+            this.parameterMetadata = new VitessParameterMetaData(this.template.getParameterCount());
         }
 
-        return statementCount;
+        return this.parameterMetadata;
     }
 
     public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
@@ -784,8 +710,7 @@ public class VitessPreparedStatement extends VitessStatement implements Prepared
                 Constants.SQLExceptionMessages.SQL_FEATURE_NOT_SUPPORTED);
         }
         // Clob uses 1-based indexing!
-        this.bindVariables.put(Constants.LITERAL_V + parameterIndex,
-            x.getSubString(1, (int) x.length()));
+        setParameter(parameterIndex, Proto.buildBindVariable(x.getSubString(1, (int) x.length())));
     }
 
     public void setArray(int parameterIndex, Array x) throws SQLException {
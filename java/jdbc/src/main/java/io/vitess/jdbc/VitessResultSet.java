@@ -40,6 +40,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.RowId;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Statement;
@@ -192,12 +193,34 @@ public class VitessResultSet implements ResultSet {
             return false;
         }
 
-        this.row = this.cursor.next();
+        try {
+            this.row = this.cursor.next();
+        } catch (SQLException e) {
+            throw isCancelled() ? new SQLTimeoutException(
+                Constants.SQLExceptionMessages.STATEMENT_CANCELLED, e) : e;
+        }
+        if (null == this.row && isCancelled()) {
+            // The stream was stopped by Statement.cancel(), so this is not the real end of it.
+            throw new SQLTimeoutException(Constants.SQLExceptionMessages.STATEMENT_CANCELLED);
+        }
         ++this.currentRow;
 
+        if (null != this.row && this.maxRows > 0 && this.currentRow >= this.maxRows) {
+            // Nothing more will be read, so stop a streaming query from sending the rest.
+            try {
+                this.cursor.close();
+            } catch (Exception e) {
+                throw new SQLException(Constants.SQLExceptionMessages.VITESS_CURSOR_CLOSE_ERROR, e);
+            }
+        }
         return row != null;
     }
 
+    private boolean isCancelled() {
+        VitessStatement statement = this.vitessStatement;
+        return null != statement && statement.isCancelled();
+    }
+
     public void close() throws SQLException {
         if (!this.closed) {
             try {
@@ -682,7 +705,7 @@ public class VitessResultSet implements ResultSet {
 
     public void setFetchSize(int rows) throws SQLException {
         checkOpen();
-        if (rows < 0) {
+        if (rows < 0 && rows != Integer.MIN_VALUE) {
             throw new SQLException(Constants.SQLExceptionMessages.ILLEGAL_VALUE_FOR + "fetch size");
         }
         this.fetchSize = rows;
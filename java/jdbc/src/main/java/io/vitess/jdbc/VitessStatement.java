@@ -18,6 +18,7 @@ package io.vitess.jdbc;
 
 import io.vitess.client.Context;
 import io.vitess.client.Proto;
+import io.vitess.client.SQLFuture;
 import io.vitess.client.VTGateConn;
 import io.vitess.client.VTGateTx;
 import io.vitess.client.cursor.Cursor;
@@ -25,6 +26,7 @@ import io.vitess.client.cursor.CursorWithError;
 import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
 import io.vitess.proto.Vtrpc;
+import io.vitess.util.CommonUtils;
 import io.vitess.util.Constants;
 import io.vitess.util.StringUtils;
 import java.sql.BatchUpdateException;
@@ -33,12 +35,21 @@ import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLNonTransientException;
 import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
+import org.joda.time.Duration;
 
 /**
  * Created by harshit.gangal on 19/01/16.
@@ -59,6 +70,8 @@ public class VitessStatement implements Statement {
     protected boolean closed;
     protected long resultCount;
     protected long queryTimeoutInMillis = Constants.DEFAULT_TIMEOUT;
+    /* Whether queryTimeoutInMillis was set by setQueryTimeout(), rather than the default */
+    private boolean queryTimeoutSet;
     protected int maxFieldSize = Constants.MAX_BUFFER_SIZE;
     protected int maxRows = 0;
     protected int fetchSize = 0;
@@ -70,6 +83,13 @@ public class VitessStatement implements Statement {
      * Holds batched commands
      */
     private List<String> batchedArgs;
+    /* What cancel() has to stop: the RPCs being waited for, and the stream of the last query */
+    private final Set<Future<?>> runningCalls =
+        Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+    private volatile Cursor runningStream;
+    private volatile boolean cancelled;
+    /* Set while executeBatchAtomic() runs */
+    private boolean atomicBatch;
 
 
     public VitessStatement(VitessConnection vitessConnection) {
@@ -121,27 +141,22 @@ public class VitessStatement implements Statement {
             if (showSql) {
                 cursor = this.executeShow(sql);
             } else {
+                sql = applyMaxRows(sql);
                 if (tabletType != Topodata.TabletType.MASTER || this.vitessConnection
                     .getAutoCommit()) {
                     Context context =
                         this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                    if (vitessConnection.isSimpleExecute()) {
-                        cursor = vtGateConn.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()).checkedGet();
+                    if (!isStreamExecute()) {
+                        cursor = waitFor(vtGateConn.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()));
                     } else {
-                        cursor = vtGateConn.streamExecute(context, sql, null, tabletType, vitessConnection.getIncludedFields());
+                        cursor = trackStream(vtGateConn.streamExecute(streamContext(context), sql, null, tabletType, vitessConnection.getIncludedFields()));
                     }
                 } else {
-                    VTGateTx vtGateTx = this.vitessConnection.getVtGateTx();
-                    if (null == vtGateTx) {
-                        Context context =
-                            this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                        vtGateTx = vtGateConn.begin(context).checkedGet();
-                        this.vitessConnection.setVtGateTx(vtGateTx);
-                    }
+                    VTGateTx vtGateTx = getOrBeginTransaction(vtGateConn);
                     Context context =
                         this.vitessConnection.createContext(this.queryTimeoutInMillis);
                 /* Stream query is not suppose to run in a txn. */
-                    cursor = vtGateTx.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()).checkedGet();
+                    cursor = waitFor(vtGateTx.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()));
                 }
             }
 
@@ -275,6 +290,7 @@ public class VitessStatement implements Statement {
         }
         this.queryTimeoutInMillis =
             (0 == seconds) ? Constants.DEFAULT_TIMEOUT : (long) seconds * 1000;
+        this.queryTimeoutSet = 0 != seconds;
     }
 
     /**
@@ -318,9 +334,22 @@ public class VitessStatement implements Statement {
         return this.fetchSize;
     }
 
+    /**
+     * Sets the fetch size, which decides how queries outside of a transaction are executed:
+     * <ul>
+     * <li>0, the default, follows the executeType of the connection.</li>
+     * <li>Integer.MIN_VALUE streams the results, buffering one result chunk ahead of the
+     * ResultSet, like MySQL Connector/J.</li>
+     * <li>A positive value streams the results, buffering up to that many result chunks (at most
+     * Constants.MAX_STREAM_PREFETCH) ahead of the ResultSet.</li>
+     * </ul>
+     *
+     * @param rows the fetch size
+     * @throws SQLException
+     */
     public void setFetchSize(int rows) throws SQLException {
         checkOpen();
-        if (rows < 0) {
+        if (rows < 0 && rows != Integer.MIN_VALUE) {
             throw new SQLException(Constants.SQLExceptionMessages.ILLEGAL_VALUE_FOR + "fetch size");
         }
         this.fetchSize = rows;
@@ -438,18 +467,12 @@ public class VitessStatement implements Statement {
         try {
             if (this.vitessConnection.getAutoCommit()) {
                 Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursor = vtGateConn.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()).checkedGet();
+                cursor = waitFor(vtGateConn.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()));
             } else {
-                vtGateTx = this.vitessConnection.getVtGateTx();
-                if (null == vtGateTx) {
-                    Context context =
-                        this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                    vtGateTx = vtGateConn.begin(context).checkedGet();
-                    this.vitessConnection.setVtGateTx(vtGateTx);
-                }
+                vtGateTx = getOrBeginTransaction(vtGateConn);
 
                 Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursor = vtGateTx.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()).checkedGet();
+                cursor = waitFor(vtGateTx.execute(context, sql, null, tabletType, vitessConnection.getIncludedFields()));
             }
 
             if (null == cursor) {
@@ -567,9 +590,6 @@ public class VitessStatement implements Statement {
     public int[] executeBatch() throws SQLException {
         checkOpen();
         checkNotReadOnly();
-        VTGateConn vtGateConn;
-        Topodata.TabletType tabletType;
-        VTGateTx vtGateTx;
         List<CursorWithError> cursorWithErrorList;
 
         if(0 == batchedArgs.size()) {
@@ -577,47 +597,298 @@ public class VitessStatement implements Statement {
         }
 
         try {
-            vtGateConn = this.vitessConnection.getVtGateConn();
-            tabletType = this.vitessConnection.getTabletType();
+            cursorWithErrorList = executeBatchInChunks(batchedArgs, null);
+
+            //TODO(harshit): To Support AutoGenerated Keys in a Batch
+
+            return this.generateBatchUpdateResult(cursorWithErrorList);
+        } finally {
+            this.clearBatch();
+        }
+    }
 
-            if (tabletType != Topodata.TabletType.MASTER) {
-                throw new SQLException(Constants.SQLExceptionMessages.DML_NOT_ON_MASTER);
+    /**
+     * Executes the batch as a single transaction: either every command takes effect, or none does.
+     * <p>
+     * In autocommit mode, the batch runs in a transaction of its own, which is committed if every
+     * command succeeded and rolled back otherwise. With lazyBegin, that is one ExecuteBatch and one
+     * Commit call to vtgate, instead of a Begin, ExecuteBatch and Commit. If a command fails, the
+     * BatchUpdateException reports every command as Statement.EXECUTE_FAILED, since none of them
+     * took effect.
+     * <p>
+     * With autocommit off, the batch is part of the connection's transaction like any other, and
+     * this is the same as {@link #executeBatch()}.
+     *
+     * @return int[] of results corresponding to each command
+     * @throws SQLException
+     */
+    public int[] executeBatchAtomic() throws SQLException {
+        checkOpen();
+        boolean ownTransaction = this.vitessConnection.getAutoCommit();
+        this.atomicBatch = true;
+        try {
+            return executeBatch();
+        } catch (BatchUpdateException ex) {
+            if (!ownTransaction) {
+                throw ex;
             }
+            int[] updateCounts = new int[ex.getUpdateCounts().length];
+            Arrays.fill(updateCounts, Statement.EXECUTE_FAILED);
+            throw new BatchUpdateException(ex.getMessage(), ex.getSQLState(), ex.getErrorCode(),
+                updateCounts, ex);
+        } finally {
+            this.atomicBatch = false;
+        }
+    }
 
-            if (this.vitessConnection.getAutoCommit()) {
-                Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursorWithErrorList =
-                    vtGateConn.executeBatch(context, batchedArgs, null, tabletType, vitessConnection.getIncludedFields()).checkedGet();
-            } else {
-                vtGateTx = this.vitessConnection.getVtGateTx();
-                if (null == vtGateTx) {
+    // Internal Methods Created
+
+
+    /**
+     * Executes the batched queries in chunks of at most batchChunkSize queries, so a huge batch
+     * doesn't become one huge request.
+     * <p>
+     * In autocommit mode the chunks are independent, and up to batchConcurrency of them are in
+     * flight at once, each on the vtGate picked for it. In a transaction they run one after the
+     * other. An atomic batch in autocommit mode runs in a transaction of its own, which is
+     * committed only if every query succeeded.
+     *
+     * @param queries      the queries
+     * @param bindVarsList the bind variables of each query, or null if there are none
+     * @return the result of each query, in order
+     * @throws SQLException if a chunk couldn't be executed
+     */
+    protected List<CursorWithError> executeBatchInChunks(List<String> queries,
+        List<Map<String, ?>> bindVarsList) throws SQLException {
+        Topodata.TabletType tabletType = this.vitessConnection.getTabletType();
+        if (tabletType != Topodata.TabletType.MASTER) {
+            throw new SQLException(Constants.SQLExceptionMessages.DML_NOT_ON_MASTER);
+        }
+
+        this.cancelled = false;
+        int chunkSize = this.vitessConnection.getBatchChunkSize();
+        if (chunkSize <= 0) {
+            chunkSize = queries.size();
+        }
+        List<CursorWithError> cursorWithErrorList = new ArrayList<>(queries.size());
+
+        boolean autoCommit = this.vitessConnection.getAutoCommit();
+        if (autoCommit && !this.atomicBatch) {
+            int concurrency = Math.max(1, this.vitessConnection.getBatchConcurrency());
+            Deque<SQLFuture<List<CursorWithError>>> inFlight = new ArrayDeque<>();
+            try {
+                for (int start = 0; start < queries.size(); start += chunkSize) {
+                    if (inFlight.size() == concurrency) {
+                        addChunkResult(cursorWithErrorList, waitFor(inFlight.poll()));
+                    }
+                    int end = Math.min(queries.size(), start + chunkSize);
+                    Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
+                    inFlight.add(track(this.vitessConnection.getVtGateConn().executeBatch(context,
+                        queries.subList(start, end),
+                        null == bindVarsList ? null : bindVarsList.subList(start, end), tabletType,
+                        vitessConnection.getIncludedFields())));
+                }
+                while (!inFlight.isEmpty()) {
+                    addChunkResult(cursorWithErrorList, waitFor(inFlight.poll()));
+                }
+            } finally {
+                // Only left over if a chunk failed, in which case the batch fails as a whole.
+                for (SQLFuture<List<CursorWithError>> chunk : inFlight) {
+                    chunk.cancel(true);
+                    this.runningCalls.remove(chunk);
+                }
+            }
+        } else if (!autoCommit) {
+            VTGateTx vtGateTx = getOrBeginTransaction(this.vitessConnection.getVtGateConn());
+            executeChunksInTransaction(vtGateTx, queries, bindVarsList, tabletType, chunkSize,
+                cursorWithErrorList);
+        } else {
+            VTGateTx vtGateTx = beginTransaction(this.vitessConnection.getVtGateConn());
+            boolean committed = false;
+            try {
+                executeChunksInTransaction(vtGateTx, queries, bindVarsList, tabletType, chunkSize,
+                    cursorWithErrorList);
+                if (!hasError(cursorWithErrorList)) {
                     Context context =
-                        this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                    vtGateTx = vtGateConn.begin(context).checkedGet();
-                    this.vitessConnection.setVtGateTx(vtGateTx);
+                        this.vitessConnection.createContext(Constants.CONNECTION_TIMEOUT);
+                    vtGateTx.commit(context, this.vitessConnection.getTwopcEnabled()).checkedGet();
+                    committed = true;
+                }
+            } finally {
+                if (!committed) {
+                    rollbackQuietly(vtGateTx);
                 }
-
-                Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
-                cursorWithErrorList =
-                    vtGateTx.executeBatch(context, batchedArgs, null, tabletType, vitessConnection.getIncludedFields()).checkedGet();
             }
+        }
+        return cursorWithErrorList;
+    }
 
-            if (null == cursorWithErrorList) {
-                throw new SQLException(Constants.SQLExceptionMessages.METHOD_CALL_FAILED);
+    private void executeChunksInTransaction(VTGateTx vtGateTx, List<String> queries,
+        List<Map<String, ?>> bindVarsList, Topodata.TabletType tabletType, int chunkSize,
+        List<CursorWithError> cursorWithErrorList) throws SQLException {
+        for (int start = 0; start < queries.size(); start += chunkSize) {
+            int end = Math.min(queries.size(), start + chunkSize);
+            Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
+            addChunkResult(cursorWithErrorList, waitFor(vtGateTx.executeBatch(context,
+                queries.subList(start, end),
+                null == bindVarsList ? null : bindVarsList.subList(start, end), tabletType,
+                vitessConnection.getIncludedFields())));
+        }
+    }
+
+    private static boolean hasError(List<CursorWithError> cursorWithErrorList) {
+        for (CursorWithError cursorWithError : cursorWithErrorList) {
+            if (null != cursorWithError.getError()) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            //TODO(harshit): To Support AutoGenerated Keys in a Batch
+    /**
+     * Rolls back a transaction that is being abandoned. The error, if any, is only logged: the
+     * caller is already failing, and vtgate times out the transaction if the rollback is lost.
+     */
+    private void rollbackQuietly(VTGateTx vtGateTx) {
+        try {
+            Context context = this.vitessConnection.createContext(Constants.CONNECTION_TIMEOUT);
+            vtGateTx.rollback(context).checkedGet();
+        } catch (SQLException | RuntimeException ex) {
+            logger.warning("Failed to roll back transaction: " + ex.getMessage());
+        }
+    }
 
-            return this.generateBatchUpdateResult(cursorWithErrorList);
+    private static void addChunkResult(List<CursorWithError> cursorWithErrorList,
+        List<CursorWithError> chunkResult) throws SQLException {
+        if (null == chunkResult) {
+            throw new SQLException(Constants.SQLExceptionMessages.METHOD_CALL_FAILED);
+        }
+        cursorWithErrorList.addAll(chunkResult);
+    }
+
+    /**
+     * Registers an RPC, so {@link #cancel()} can cancel it until it is waited for.
+     */
+    protected <T> SQLFuture<T> track(SQLFuture<T> call) {
+        this.runningCalls.add(call);
+        if (this.cancelled) {
+            call.cancel(true);
+        }
+        return call;
+    }
+
+    /**
+     * Waits for the result of an RPC, which {@link #cancel()} may cancel in the meantime.
+     *
+     * @throws SQLTimeoutException if the statement was cancelled
+     */
+    protected <T> T waitFor(SQLFuture<T> call) throws SQLException {
+        track(call);
+        try {
+            return call.checkedGet();
+        } catch (SQLException e) {
+            if (!this.cancelled) {
+                throw e;
+            }
+            abandonTransaction();
+            throw new SQLTimeoutException(Constants.SQLExceptionMessages.STATEMENT_CANCELLED, e);
         } finally {
-            this.clearBatch();
+            this.runningCalls.remove(call);
         }
     }
 
-    // Internal Methods Created
+    /**
+     * Rolls back and drops the connection's transaction after one of its calls was cancelled.
+     * vtgate may have opened shard transactions for that call, which the session we hold doesn't
+     * list, so committing it could commit only part of the work. The next statement starts a new
+     * transaction.
+     */
+    private void abandonTransaction() {
+        VTGateTx vtGateTx = this.vitessConnection.getVtGateTx();
+        if (null != vtGateTx) {
+            this.vitessConnection.setVtGateTx(null);
+            rollbackQuietly(vtGateTx);
+        }
+    }
+
+    /**
+     * Registers the cursor of a streaming query, so {@link #cancel()} can stop the stream.
+     */
+    protected Cursor trackStream(Cursor cursor) {
+        this.runningStream = cursor;
+        return cursor;
+    }
 
+    /**
+     * Whether {@link #cancel()} was called since the current query was started.
+     */
+    boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Pushes maxRows down to vtgate as a LIMIT on the query, where the query can take one. The
+     * ResultSet still stops at maxRows either way.
+     */
+    protected String applyMaxRows(String sql) {
+        return this.maxRows > 0 ? StringUtils.addLimit(sql, this.maxRows) : sql;
+    }
+
+    /**
+     * Whether a query outside of a transaction should use streamExecute, see
+     * {@link #setFetchSize(int)}.
+     */
+    protected boolean isStreamExecute() {
+        return 0 != this.fetchSize || !this.vitessConnection.isSimpleExecute();
+    }
+
+    /**
+     * Returns the transaction of the connection, starting one if there is none yet. With lazyBegin,
+     * starting it takes no RPC: the statement that is about to run begins it on vtgate.
+     */
+    protected VTGateTx getOrBeginTransaction(VTGateConn vtGateConn) throws SQLException {
+        VTGateTx vtGateTx = this.vitessConnection.getVtGateTx();
+        if (null == vtGateTx) {
+            vtGateTx = beginTransaction(vtGateConn);
+            this.vitessConnection.setVtGateTx(vtGateTx);
+        }
+        return vtGateTx;
+    }
+
+    private VTGateTx beginTransaction(VTGateConn vtGateConn) throws SQLException {
+        if (this.vitessConnection.getLazyBegin()) {
+            return vtGateConn.beginLazily();
+        }
+        Context context = this.vitessConnection.createContext(this.queryTimeoutInMillis);
+        return vtGateConn.begin(context).checkedGet();
+    }
+
+    /**
+     * Derives the context of a streaming query. The fetch size of this statement, if any, sets the
+     * prefetch. If the connection has a stream idle timeout, it replaces the default query
+     * timeout, so the stream can run for as long as vtgate keeps sending results. A timeout set
+     * with {@link #setQueryTimeout(int)} still applies to the whole stream, on top of the idle
+     * timeout.
+     */
+    protected Context streamContext(Context context) {
+        Long idleTimeoutMillis = this.vitessConnection.getStreamIdleTimeoutMillis();
+        if (null != idleTimeoutMillis && idleTimeoutMillis > 0) {
+            if (!this.queryTimeoutSet) {
+                context = CommonUtils.createContext(this.vitessConnection.getUsername());
+            }
+            context = context.withStreamIdleTimeout(Duration.millis(idleTimeoutMillis));
+        }
+        if (0 == this.fetchSize) {
+            return context;
+        }
+        int prefetch = Integer.MIN_VALUE == this.fetchSize ? 1
+            : Math.min(this.fetchSize, Constants.MAX_STREAM_PREFETCH);
+        return context.withStreamPrefetch(prefetch);
+    }
 
     protected void closeOpenResultSetAndResetCount() throws SQLException {
+        this.cancelled = false;
+        this.runningStream = null;
         try {
             if (null != this.vitessResultSet) {
                 this.vitessResultSet.close();
@@ -679,25 +950,54 @@ public class VitessStatement implements Statement {
      */
     protected int[] generateBatchUpdateResult(List<CursorWithError> cursorWithErrorList)
         throws BatchUpdateException {
-        int[] updateCounts = new int[cursorWithErrorList.size()];
+        return generateBatchUpdateResult(cursorWithErrorList, null);
+    }
+
+    /**
+     * Same as {@link #generateBatchUpdateResult(List)}, for queries which each executed several
+     * batched commands, e.g. rewritten multi-row INSERTs. A query which affected exactly as many
+     * rows as it had commands reports 1 for each command, otherwise its commands report
+     * Statement.SUCCESS_NO_INFO since the rows can't be attributed to them.
+     *
+     * @param cursorWithErrorList Consists list of Cursor and Error object.
+     * @param commandsPerQuery    Number of batched commands in each query, or null for one each.
+     * @return int[] of results corresponding to each batched command
+     * @throws BatchUpdateException
+     */
+    protected int[] generateBatchUpdateResult(List<CursorWithError> cursorWithErrorList,
+        int[] commandsPerQuery) throws BatchUpdateException {
+        int commandCount = 0;
+        for (int q = 0; q < cursorWithErrorList.size(); ++q) {
+            commandCount += null == commandsPerQuery ? 1 : commandsPerQuery[q];
+        }
+        int[] updateCounts = new int[commandCount];
         int i = 0;
 
         Vtrpc.RPCError rpcError = null;
-        for (CursorWithError cursorWithError : cursorWithErrorList) {
+        for (int q = 0; q < cursorWithErrorList.size(); ++q) {
+            CursorWithError cursorWithError = cursorWithErrorList.get(q);
+            int commands = null == commandsPerQuery ? 1 : commandsPerQuery[q];
+            int updateCount;
             if (null == cursorWithError.getError()) {
                 try {
-                    updateCounts[i] = (int) cursorWithError.getCursor().getRowsAffected();
+                    long rowsAffected = cursorWithError.getCursor().getRowsAffected();
+                    if (commands == 1) {
+                        updateCount = (int) rowsAffected;
+                    } else {
+                        updateCount = rowsAffected == commands ? 1 : Statement.SUCCESS_NO_INFO;
+                    }
                 } catch (SQLException ex) {
                         /* This case should not happen as API has returned cursor and not error.
                          * Handling by Statement.SUCCESS_NO_INFO
                          */
-                    updateCounts[i] = Statement.SUCCESS_NO_INFO;
+                    updateCount = Statement.SUCCESS_NO_INFO;
                 }
             } else {
                 rpcError = cursorWithError.getError();
-                updateCounts[i] = Statement.EXECUTE_FAILED;
+                updateCount = Statement.EXECUTE_FAILED;
             }
-            ++i;
+            Arrays.fill(updateCounts, i, i + commands, updateCount);
+            i += commands;
         }
 
         if (null != rpcError) {
@@ -735,9 +1035,31 @@ public class VitessStatement implements Statement {
             Constants.SQLExceptionMessages.SQL_FEATURE_NOT_SUPPORTED);
     }
 
+    /**
+     * Cancels the RPCs this statement is waiting for, and the stream of its ResultSet, from any
+     * thread. vtgate is told right away, so it can stop the query on the tablets. The thread
+     * running the statement, or reading its ResultSet, gets a SQLTimeoutException.
+     * <p>
+     * Cancelling a statement which runs in a transaction rolls that transaction back, since the
+     * driver can't know what the cancelled call did on the shards. The next statement starts a new
+     * transaction.
+     *
+     * @throws SQLException
+     */
     public void cancel() throws SQLException {
-        throw new SQLFeatureNotSupportedException(
-            Constants.SQLExceptionMessages.SQL_FEATURE_NOT_SUPPORTED);
+        checkOpen();
+        this.cancelled = true;
+        for (Future<?> call : this.runningCalls) {
+            call.cancel(true);
+        }
+        Cursor stream = this.runningStream;
+        if (null != stream) {
+            try {
+                stream.close();
+            } catch (Exception e) {
+                throw new SQLException(Constants.SQLExceptionMessages.VITESS_CURSOR_CLOSE_ERROR, e);
+            }
+        }
     }
 
     public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
@@ -16,9 +16,14 @@
 
 package io.vitess.jdbc;
 
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.vitess.client.Context;
 import io.vitess.client.RpcClient;
 import io.vitess.client.VTGateConn;
+import io.vitess.client.grpc.CallStats;
+import io.vitess.client.grpc.GrpcClient;
 import io.vitess.client.grpc.GrpcClientFactory;
 import io.vitess.client.grpc.RetryingInterceptorConfig;
 import io.vitess.client.grpc.tls.TlsOptions;
@@ -30,24 +35,42 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Created by naveen.nahata on 24/02/16.
  */
 public class VitessVTGateManager {
     /*
-    Current implementation have one VTGateConn for ip-port-username combination
+    Current implementation have one VTGateConn for ip-port-username combination. Its client may
+    spread calls over several channels to the vtgate, see the grpcChannelPoolSize property.
     */
     private static ConcurrentHashMap<String, VTGateConn> vtGateConnHashMap =
         new ConcurrentHashMap<>();
 
 
+    /*
+    Load and health of the calls made by each VTGateConn, keyed like vtGateConnHashMap.
+    */
+    private static ConcurrentHashMap<String, CallStats> callStatsHashMap =
+        new ConcurrentHashMap<>();
+
+    /*
+    Parsed prepared statements, shared by the connections with the same vtGateIdentifiers and
+    prepStmtCacheSize, see the cachePrepStmts property.
+    */
+    private static ConcurrentHashMap<String, Cache<String, StatementTemplate>> templateCacheHashMap =
+        new ConcurrentHashMap<>();
+
     /**
-     * VTGateConnections object consist of vtGateIdentifire list and return vtGate object in round robin.
+     * VTGateConnections object consist of vtGateIdentifire list and return vtGate object using
+     * power-of-two-choices: of two randomly picked vtGates, the one with less calls in flight
+     * relative to its recent latency wins. A vtGate which recently reported UNAVAILABLE is skipped
+     * while others are healthy. Selection takes no locks.
      */
     public static class VTGateConnections {
-        private List<String> vtGateIdentifiers = new ArrayList<>();
-        int counter;
+        private final List<String> vtGateIdentifiers = new ArrayList<>();
+        private final Cache<String, StatementTemplate> templateCache;
 
         /**
          * Constructor
@@ -64,8 +87,26 @@ public class VitessVTGateManager {
                 }
                 vtGateIdentifiers.add(identifier);
             }
-            Random random = new Random();
-            counter = random.nextInt(vtGateIdentifiers.size());
+            if (connection.getCachePrepStmts()) {
+                String key = Joiner.on(',').join(vtGateIdentifiers) + "#"
+                    + connection.getPrepStmtCacheSize();
+                templateCacheHashMap.putIfAbsent(key, CacheBuilder.newBuilder()
+                    .maximumSize(connection.getPrepStmtCacheSize())
+                    .<String, StatementTemplate>build());
+                templateCache = templateCacheHashMap.get(key);
+            } else {
+                templateCache = null;
+            }
+        }
+
+        /**
+         * Return the cache of parsed prepared statements.
+         *
+         * @return the cache shared with the connections to the same vtGates with the same
+         * prepStmtCacheSize, or null if cachePrepStmts is off
+         */
+        Cache<String, StatementTemplate> getStatementTemplateCache() {
+            return templateCache;
         }
 
         /**
@@ -74,11 +115,46 @@ public class VitessVTGateManager {
          * @return
          */
         public VTGateConn getVtGateConnInstance() {
-            counter++;
-            counter = counter % vtGateIdentifiers.size();
-            return vtGateConnHashMap.get(vtGateIdentifiers.get(counter));
+            int size = vtGateIdentifiers.size();
+            if (size == 1) {
+                return vtGateConnHashMap.get(vtGateIdentifiers.get(0));
+            }
+            Random random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            String chosen = choose(vtGateIdentifiers.get(first), vtGateIdentifiers.get(second));
+            if (!isHealthy(chosen)) {
+                // Both candidates are ejected, look for any healthy vtGate before settling.
+                for (int i = 1; i < size; i++) {
+                    String identifier = vtGateIdentifiers.get((first + i) % size);
+                    if (isHealthy(identifier)) {
+                        chosen = identifier;
+                        break;
+                    }
+                }
+            }
+            return vtGateConnHashMap.get(chosen);
         }
 
+        private static String choose(String first, String second) {
+            CallStats firstStats = callStatsHashMap.get(first);
+            CallStats secondStats = callStatsHashMap.get(second);
+            if (null == firstStats || null == secondStats) {
+                return null == firstStats ? first : second;
+            }
+            if (firstStats.isHealthy() != secondStats.isHealthy()) {
+                return firstStats.isHealthy() ? first : second;
+            }
+            return secondStats.getLoad() < firstStats.getLoad() ? second : first;
+        }
+
+        private static boolean isHealthy(String identifier) {
+            CallStats stats = callStatsHashMap.get(identifier);
+            return null == stats || stats.isHealthy();
+        }
     }
 
     private static String getIdentifer(String hostname, int port, String userIdentifer, String keyspace) {
@@ -94,17 +170,20 @@ public class VitessVTGateManager {
      */
     private static void updateVtGateConnHashMap(String identifier, VitessJDBCUrl.HostInfo hostInfo,
                                                 VitessConnection connection) {
-        vtGateConnHashMap.put(identifier, getVtGateConn(hostInfo, connection));
+        vtGateConnHashMap.put(identifier, getVtGateConn(identifier, hostInfo, connection));
     }
 
     /**
-     * Create vtGateConn object with given identifier.
+     * Create vtGateConn object with given identifier, and register the load statistics of its
+     * client.
      *
+     * @param identifier
      * @param hostInfo
      * @param connection
      * @return
      */
-    private static VTGateConn getVtGateConn(VitessJDBCUrl.HostInfo hostInfo, VitessConnection connection) {
+    private static VTGateConn getVtGateConn(String identifier, VitessJDBCUrl.HostInfo hostInfo,
+                                           VitessConnection connection) {
         final String username = connection.getUsername();
         final String keyspace = connection.getKeyspace();
         final Context context = CommonUtils.createContext(username, Constants.CONNECTION_TIMEOUT);
@@ -135,9 +214,12 @@ public class VitessVTGateManager {
                     .trustStorePassword(trustStorePassword)
                     .trustAlias(trustAlias);
 
-            client = new GrpcClientFactory(retryingConfig).createTls(context, hostInfo.toString(), tlsOptions);
+            client = new GrpcClientFactory(retryingConfig, connection.getGrpcChannelPoolSize()).createTls(context, hostInfo.toString(), tlsOptions);
         } else {
-            client = new GrpcClientFactory(retryingConfig).create(context, hostInfo.toString());
+            client = new GrpcClientFactory(retryingConfig, connection.getGrpcChannelPoolSize()).create(context, hostInfo.toString());
+        }
+        if (client instanceof GrpcClient) {
+            callStatsHashMap.put(identifier, ((GrpcClient) client).getCallStats());
         }
         if (null == keyspace) {
             return (new VTGateConn(client));
@@ -164,6 +246,8 @@ public class VitessVTGateManager {
             }
         }
         vtGateConnHashMap.clear();
+        callStatsHashMap.clear();
+        templateCacheHashMap.clear();
         if (null != exception) {
             throw exception;
         }
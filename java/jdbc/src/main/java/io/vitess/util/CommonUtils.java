@@ -33,16 +33,19 @@ public class CommonUtils {
      * @return
      */
     public static Context createContext(String username, long connectionTimeout) {
-        Context context;
-        Vtrpc.CallerID callerID = null;
+        return createContext(username).withDeadlineAfter(Duration.millis(connectionTimeout));
+    }
+
+    /**
+     * Create context without a deadline, for calls bounded some other way.
+     *
+     * @param username
+     * @return
+     */
+    public static Context createContext(String username) {
+        Context context = Context.getDefault();
         if (null != username) {
-            callerID = Vtrpc.CallerID.newBuilder().setPrincipal(username).build();
-        }
-        if (null != callerID) {
-            context = Context.getDefault().withDeadlineAfter(Duration.millis(connectionTimeout))
-                .withCallerId(callerID);
-        } else {
-            context = Context.getDefault().withDeadlineAfter(Duration.millis(connectionTimeout));
+            context = context.withCallerId(Vtrpc.CallerID.newBuilder().setPrincipal(username).build());
         }
         return context;
     }
@@ -42,6 +42,8 @@ public class Constants {
     public static final int DRIVER_MAJOR_VERSION = 1;
     public static final int DRIVER_MINOR_VERSION = 0;
     public static final int MAX_BUFFER_SIZE = 65535;
+    //Most result chunks a positive fetch size buffers ahead of a streaming ResultSet
+    public static final int MAX_STREAM_PREFETCH = 16;
     //Default Timeout in miliseconds
     public static final int DEFAULT_TIMEOUT = 30000;
     public static final String SQL_SHOW = "show";
@@ -61,6 +63,7 @@ public class Constants {
         public static final String INIT_FAILED = "Failed to Initialize Vitess JDBC Driver";
         public static final String INVALID_CONN_URL = "Connection URL is invalid";
         public static final String STMT_CLOSED = "Statement is closed";
+        public static final String STATEMENT_CANCELLED = "Statement was cancelled";
         public static final String SQL_FEATURE_NOT_SUPPORTED = "SQL Feature Not Supported";
         public static final String TIMEOUT_NEGATIVE = "Timeout value cannot be negative";
         public static final String COMMIT_WHEN_AUTO_COMMIT_TRUE =
@@ -22,9 +22,12 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -847,4 +850,123 @@ public class StringUtils {
         }
         return splitTokens;
     }
+
+    /**
+     * Returns whether a "-- " comment starts at {@code i}. MySQL only takes two dashes for the start
+     * of a comment if whitespace or a control character follows them, so "5--1" is an expression.
+     */
+    private static boolean isDashDashComment(String sql, int i) {
+        if (!sql.startsWith("--", i)) {
+            return false;
+        }
+        if (i + 2 == sql.length()) {
+            return true;
+        }
+        char next = sql.charAt(i + 2);
+        return Character.isWhitespace(next) || Character.isISOControl(next);
+    }
+
+    /**
+     * Marks the characters of a SQL statement which are outside of string literals, quoted
+     * identifiers and comments.
+     *
+     * @param sql the statement
+     * @return for each character, whether it is part of the SQL code
+     */
+    public static boolean[] getCodeMask(String sql) {
+        boolean[] code = new boolean[sql.length()];
+        char quote = 0;
+        for (int i = 0; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote != '`') {
+                    i++;
+                } else if (c == quote) {
+                    if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                        i++;
+                    } else {
+                        quote = 0;
+                    }
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            } else if (c == '#' || isDashDashComment(sql, i)) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 1;
+            } else {
+                code[i] = true;
+            }
+        }
+        return code;
+    }
+
+    /* Top-level keywords of a SELECT which a LIMIT clause can't simply be appended after */
+    private static final Set<String> LIMIT_BLOCKERS = Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList("LIMIT", "UNION", "FOR", "LOCK", "INTO", "PROCEDURE")));
+
+    /**
+     * Appends a LIMIT clause to a single SELECT statement, so the server doesn't produce more rows
+     * than the caller will read.
+     * <p>
+     * The statement is returned unchanged if it isn't a SELECT, or if it has a clause which a LIMIT
+     * can't simply follow: an existing LIMIT, UNION, FOR UPDATE, LOCK IN SHARE MODE, INTO or
+     * PROCEDURE. Subqueries are left alone.
+     *
+     * @param sql   the statement
+     * @param limit the maximum number of rows
+     * @return the statement with the limit, or the statement itself
+     */
+    public static String addLimit(String sql, int limit) {
+        int start = findStartOfStatement(sql);
+        if (!startsWithIgnoreCaseAndWs(sql, "select", start)) {
+            return sql;
+        }
+        boolean[] code = getCodeMask(sql);
+        int depth = 0;
+        int end = -1;
+        for (int i = start; i < sql.length(); ++i) {
+            if (!code[i]) {
+                continue;
+            }
+            char c = sql.charAt(i);
+            if (end >= 0) {
+                if (!Character.isWhitespace(c) && c != ';') {
+                    // More than one statement.
+                    return sql;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ';' && depth == 0) {
+                end = i;
+            } else if (depth == 0 && isSqlWordChar(c) && (i == 0 || !code[i - 1]
+                || !isSqlWordChar(sql.charAt(i - 1)))) {
+                int wordEnd = i;
+                while (wordEnd < sql.length() && code[wordEnd] && isSqlWordChar(sql.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+                String word = sql.substring(i, wordEnd).toUpperCase(Locale.ROOT);
+                if (LIMIT_BLOCKERS.contains(word)) {
+                    return sql;
+                }
+                i = wordEnd - 1;
+            }
+        }
+        if (end < 0) {
+            end = sql.length();
+        }
+        // Insert after the last code, so the limit doesn't end up in a trailing comment.
+        while (end > start && (!code[end - 1] || Character.isWhitespace(sql.charAt(end - 1)))) {
+            end--;
+        }
+        return sql.substring(0, end) + " limit " + limit + sql.substring(end);
+    }
+
+    private static boolean isSqlWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
 }
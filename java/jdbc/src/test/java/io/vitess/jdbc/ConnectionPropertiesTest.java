@@ -29,7 +29,7 @@ import org.mockito.Mockito;
 
 public class ConnectionPropertiesTest {
 
-    private static final int NUM_PROPS = 24;
+    private static final int NUM_PROPS = 35;
 
     @Test
     public void testReflection() throws Exception {
@@ -60,9 +60,20 @@ public class ConnectionPropertiesTest {
         Assert.assertEquals("characterEncoding", null, props.getEncoding());
         Assert.assertEquals("executeType", Constants.DEFAULT_EXECUTE_TYPE, props.getExecuteType());
         Assert.assertEquals("twopcEnabled", false, props.getTwopcEnabled());
+        Assert.assertEquals("lazyBegin", false, props.getLazyBegin());
         Assert.assertEquals("includedFields", Constants.DEFAULT_INCLUDED_FIELDS, props.getIncludedFields());
         Assert.assertEquals("includedFieldsCache", true, props.isIncludeAllFields());
         Assert.assertEquals("tabletType", Constants.DEFAULT_TABLET_TYPE, props.getTabletType());
+        Assert.assertEquals("grpcChannelPoolSize", 1, (int) props.getGrpcChannelPoolSize());
+        Assert.assertEquals("streamIdleTimeoutMillis", 0L, (long) props.getStreamIdleTimeoutMillis());
+        Assert.assertEquals("batchChunkSize", 1000, (int) props.getBatchChunkSize());
+        Assert.assertEquals("batchConcurrency", 1, (int) props.getBatchConcurrency());
+        Assert.assertEquals("rewriteBatchedStatements", false, props.getRewriteBatchedStatements());
+        Assert.assertEquals("rewriteBatchedStatementsMaxRows", 1000, (int) props.getRewriteBatchedStatementsMaxRows());
+        Assert.assertEquals("rewriteBatchedStatementsMaxBytes", 2 * 1024 * 1024, (int) props.getRewriteBatchedStatementsMaxBytes());
+        Assert.assertEquals("cachePrepStmts", false, props.getCachePrepStmts());
+        Assert.assertEquals("prepStmtCacheSize", 250, (int) props.getPrepStmtCacheSize());
+        Assert.assertEquals("prepStmtCacheSqlLimit", 2048, (int) props.getPrepStmtCacheSqlLimit());
         Assert.assertEquals("useSSL", false, props.getUseSSL());
     }
 
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Google Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.vitess.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiRowInsertTest {
+
+    @Test public void testParseRewritable() {
+        MultiRowInsert insert = MultiRowInsert.parse("insert into foo (a, b) values (?, now())");
+        Assert.assertNotNull(insert);
+        Assert.assertEquals("insert into foo (a, b) values (?, now())", insert.getSql(1));
+        Assert.assertEquals("insert into foo (a, b) values (?, now()),(?, now()),(?, now())",
+            insert.getSql(3));
+
+        insert = MultiRowInsert.parse(
+            "/* c */ REPLACE INTO foo VALUE (?, ')') ON DUPLICATE KEY UPDATE b = VALUES(b)");
+        Assert.assertNotNull(insert);
+        Assert.assertEquals(
+            "/* c */ REPLACE INTO foo VALUE (?, ')'),(?, ')') ON DUPLICATE KEY UPDATE b = VALUES(b)",
+            insert.getSql(2));
+
+        insert = MultiRowInsert.parse("insert into `values` (`?`) values (?)");
+        Assert.assertNotNull(insert);
+        Assert.assertEquals("insert into `values` (`?`) values (?),(?)", insert.getSql(2));
+
+        // "--" without whitespace after it is a double minus, not a comment.
+        insert = MultiRowInsert.parse("insert into foo (a) values (?--1)");
+        Assert.assertNotNull(insert);
+        Assert.assertEquals("insert into foo (a) values (?--1),(?--1)", insert.getSql(2));
+    }
+
+    @Test public void testParseIdentifiersNamedValue() {
+        for (String sql : Arrays.asList(
+            "insert into t (id, value) values (?, ?)",
+            "insert into value (id, value) values (?, ?)",
+            "insert into ks.value (id) values (?, ?)",
+            "insert ignore into `value` (id) value (?, ?)")) {
+            MultiRowInsert insert = MultiRowInsert.parse(sql);
+            Assert.assertNotNull(sql, insert);
+            Assert.assertEquals(sql + ",(?, ?)", insert.getSql(2));
+        }
+    }
+
+    @Test public void testParseNotRewritable() {
+        for (String sql : Arrays.asList(
+            "update foo set a = ?",
+            "select * from foo where a = ?",
+            "insert into foo select * from bar where a = ?",
+            "insert into foo set a = ?",
+            "insert into foo (a) values (?), (?)",
+            "insert into foo (a) values (?) on duplicate key update a = ?",
+            "insert into foo (a) values (?")) {
+            Assert.assertNull(sql, MultiRowInsert.parse(sql));
+        }
+    }
+
+    @Test public void testBind() {
+        MultiRowInsert insert = MultiRowInsert.parse("insert into foo (a, b) values (?, ?)");
+        List<Map<String, ?>> rows = ImmutableList.<Map<String, ?>>of(
+            ImmutableMap.of("v1", 1, "v2", "x"),
+            ImmutableMap.of("v1", 2),
+            ImmutableMap.of("v1", 3, "v2", "z"));
+        Assert.assertTrue(insert.canBind(rows));
+        Assert.assertEquals(
+            ImmutableMap.of("v1", 1, "v2", "x", "v3", 2, "v5", 3, "v6", "z"), insert.bind(rows));
+
+        // Bind variables that aren't parameters of the row can't be renumbered.
+        Assert.assertFalse(insert.canBind(
+            Collections.<Map<String, ?>>singletonList(ImmutableMap.of("v3", 1))));
+        Assert.assertFalse(insert.canBind(
+            Collections.<Map<String, ?>>singletonList(ImmutableMap.of("name", 1))));
+    }
+}
@@ -18,6 +18,7 @@ package io.vitess.jdbc;
 
 import com.google.common.collect.ImmutableMap;
 import io.vitess.client.Context;
+import io.vitess.client.Proto;
 import io.vitess.client.SQLFuture;
 import io.vitess.client.VTGateConn;
 import io.vitess.client.VTGateTx;
@@ -46,7 +47,9 @@ import javax.sql.rowset.serial.SerialClob;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
+import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -552,48 +555,48 @@ import org.powermock.modules.junit4.PowerMockRunner;
         bindVariablesMap.setAccessible(true);
         Map<String, Object> bindVariables =
             (Map<String, Object>) bindVariablesMap.get(preparedStatement);
-        Assert.assertEquals(null, bindVariables.get("v1"));
-        Assert.assertEquals(boolValue, bindVariables.get("v2"));
-        Assert.assertEquals(byteValue, bindVariables.get("v3"));
-        Assert.assertEquals(shortValue, bindVariables.get("v4"));
-        Assert.assertEquals(intValue, bindVariables.get("v5"));
-        Assert.assertEquals(longValue, bindVariables.get("v6"));
-        Assert.assertEquals(floatValue, bindVariables.get("v7"));
-        Assert.assertEquals(doubleValue, bindVariables.get("v8"));
-        Assert.assertEquals(bigDecimalValue, bindVariables.get("v9"));
-        Assert.assertEquals(stringValue, bindVariables.get("v10"));
-        Assert.assertEquals(bytesValue, bindVariables.get("v11"));
-        Assert.assertEquals(dateValue.toString(), bindVariables.get("v12"));
-        Assert.assertEquals(timeValue.toString(), bindVariables.get("v13"));
-        Assert.assertEquals(timestampValue.toString(), bindVariables.get("v14"));
-        Assert.assertEquals(dateValue.toString(), bindVariables.get("v15"));
-        Assert.assertEquals(timeValue.toString(), bindVariables.get("v16"));
-        Assert.assertEquals(timestampValue.toString(), bindVariables.get("v17"));
-        Assert.assertEquals(boolValue, bindVariables.get("v18"));
-        Assert.assertEquals(byteValue, bindVariables.get("v19"));
-        Assert.assertEquals(shortValue, bindVariables.get("v20"));
-        Assert.assertEquals(intValue, bindVariables.get("v21"));
-        Assert.assertEquals(longValue, bindVariables.get("v22"));
-        Assert.assertEquals(floatValue, bindVariables.get("v23"));
-        Assert.assertEquals(doubleValue, bindVariables.get("v24"));
-        Assert.assertEquals(bigDecimalValue, bindVariables.get("v25"));
-        Assert.assertEquals(stringValue, bindVariables.get("v26"));
-        Assert.assertEquals(dateValue.toString(), bindVariables.get("v27"));
-        Assert.assertEquals(timeValue.toString(), bindVariables.get("v28"));
-        Assert.assertEquals(timestampValue.toString(), bindVariables.get("v29"));
-        Assert.assertEquals("a", bindVariables.get("v30"));
-        Assert.assertEquals(null, bindVariables.get("v31"));
-        Assert.assertEquals(boolValue, bindVariables.get("v32"));
-        Assert.assertEquals(shortValue.intValue(), bindVariables.get("v33"));
-        Assert.assertEquals(longValue, bindVariables.get("v34"));
-        Assert.assertEquals((double) floatValue, (double) bindVariables.get("v35"), 0.1);
-        Assert.assertEquals(doubleValue, (double) bindVariables.get("v36"), 0.1);
-        Assert.assertEquals(expectedDecimalValue, bindVariables.get("v37"));
-        Assert.assertEquals(stringValue, bindVariables.get("v38"));
-        Assert.assertEquals(dateValue.toString(), bindVariables.get("v39"));
-        Assert.assertEquals(timeValue.toString(), bindVariables.get("v40"));
-        Assert.assertEquals(timestampValue.toString(), bindVariables.get("v41"));
-        Assert.assertEquals("clob", bindVariables.get("v42"));
+        Assert.assertEquals(Proto.buildBindVariable(null), bindVariables.get("v1"));
+        Assert.assertEquals(Proto.buildBindVariable(boolValue), bindVariables.get("v2"));
+        Assert.assertEquals(Proto.buildBindVariable(byteValue), bindVariables.get("v3"));
+        Assert.assertEquals(Proto.buildBindVariable(shortValue), bindVariables.get("v4"));
+        Assert.assertEquals(Proto.buildBindVariable(intValue), bindVariables.get("v5"));
+        Assert.assertEquals(Proto.buildBindVariable(longValue), bindVariables.get("v6"));
+        Assert.assertEquals(Proto.buildBindVariable(floatValue), bindVariables.get("v7"));
+        Assert.assertEquals(Proto.buildBindVariable(doubleValue), bindVariables.get("v8"));
+        Assert.assertEquals(Proto.buildBindVariable(bigDecimalValue), bindVariables.get("v9"));
+        Assert.assertEquals(Proto.buildBindVariable(stringValue), bindVariables.get("v10"));
+        Assert.assertEquals(Proto.buildBindVariable(bytesValue), bindVariables.get("v11"));
+        Assert.assertEquals(Proto.buildBindVariable(dateValue.toString()), bindVariables.get("v12"));
+        Assert.assertEquals(Proto.buildBindVariable(timeValue.toString()), bindVariables.get("v13"));
+        Assert.assertEquals(Proto.buildBindVariable(timestampValue.toString()), bindVariables.get("v14"));
+        Assert.assertEquals(Proto.buildBindVariable(dateValue.toString()), bindVariables.get("v15"));
+        Assert.assertEquals(Proto.buildBindVariable(timeValue.toString()), bindVariables.get("v16"));
+        Assert.assertEquals(Proto.buildBindVariable(timestampValue.toString()), bindVariables.get("v17"));
+        Assert.assertEquals(Proto.buildBindVariable(boolValue), bindVariables.get("v18"));
+        Assert.assertEquals(Proto.buildBindVariable(byteValue), bindVariables.get("v19"));
+        Assert.assertEquals(Proto.buildBindVariable(shortValue), bindVariables.get("v20"));
+        Assert.assertEquals(Proto.buildBindVariable(intValue), bindVariables.get("v21"));
+        Assert.assertEquals(Proto.buildBindVariable(longValue), bindVariables.get("v22"));
+        Assert.assertEquals(Proto.buildBindVariable(floatValue), bindVariables.get("v23"));
+        Assert.assertEquals(Proto.buildBindVariable(doubleValue), bindVariables.get("v24"));
+        Assert.assertEquals(Proto.buildBindVariable(bigDecimalValue), bindVariables.get("v25"));
+        Assert.assertEquals(Proto.buildBindVariable(stringValue), bindVariables.get("v26"));
+        Assert.assertEquals(Proto.buildBindVariable(dateValue.toString()), bindVariables.get("v27"));
+        Assert.assertEquals(Proto.buildBindVariable(timeValue.toString()), bindVariables.get("v28"));
+        Assert.assertEquals(Proto.buildBindVariable(timestampValue.toString()), bindVariables.get("v29"));
+        Assert.assertEquals(Proto.buildBindVariable("a"), bindVariables.get("v30"));
+        Assert.assertEquals(Proto.buildBindVariable(null), bindVariables.get("v31"));
+        Assert.assertEquals(Proto.buildBindVariable(boolValue), bindVariables.get("v32"));
+        Assert.assertEquals(Proto.buildBindVariable(shortValue.intValue()), bindVariables.get("v33"));
+        Assert.assertEquals(Proto.buildBindVariable(longValue), bindVariables.get("v34"));
+        Assert.assertEquals(Proto.buildBindVariable((double) floatValue), bindVariables.get("v35"));
+        Assert.assertEquals(Proto.buildBindVariable(doubleValue), bindVariables.get("v36"));
+        Assert.assertEquals(Proto.buildBindVariable(expectedDecimalValue), bindVariables.get("v37"));
+        Assert.assertEquals(Proto.buildBindVariable(stringValue), bindVariables.get("v38"));
+        Assert.assertEquals(Proto.buildBindVariable(dateValue.toString()), bindVariables.get("v39"));
+        Assert.assertEquals(Proto.buildBindVariable(timeValue.toString()), bindVariables.get("v40"));
+        Assert.assertEquals(Proto.buildBindVariable(timestampValue.toString()), bindVariables.get("v41"));
+        Assert.assertEquals(Proto.buildBindVariable("clob"), bindVariables.get("v42"));
 
         preparedStatement.clearParameters();
     }
@@ -666,7 +669,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
             Field privateStringField =
                 VitessPreparedStatement.class.getDeclaredField("batchedArgs");
             privateStringField.setAccessible(true);
-            Assert.assertEquals("string1",
+            Assert.assertEquals(Proto.buildBindVariable("string1"),
                 (((List<Map<String, Object>>) privateStringField.get(statement)).get(0)).get("v1"));
         } catch (NoSuchFieldException e) {
             Assert.fail("Private Field should exists: batchedArgs");
@@ -743,6 +746,123 @@ import org.powermock.modules.junit4.PowerMockRunner;
         }
     }
 
+    @Test public void testExecuteBatchRewritesInserts() throws SQLException {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.MASTER);
+        PowerMockito.when(mockConn.getAutoCommit()).thenReturn(true);
+        PowerMockito.when(mockConn.getRewriteBatchedStatements()).thenReturn(true);
+        PowerMockito.when(mockConn.getRewriteBatchedStatementsMaxRows()).thenReturn(2);
+        PowerMockito.when(mockConn.getRewriteBatchedStatementsMaxBytes()).thenReturn(1024);
+
+        SQLFuture mockSqlFutureCursor = PowerMockito.mock(SQLFuture.class);
+        ArgumentCaptor<List> queries = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List> bindVars = ArgumentCaptor.forClass(List.class);
+        PowerMockito.when(mockVtGateConn
+            .executeBatch(Matchers.any(Context.class), queries.capture(), bindVars.capture(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class))).thenReturn(mockSqlFutureCursor);
+
+        List<CursorWithError> mockCursorWithErrorList = new ArrayList<>();
+        for (long rowsAffected : new long[] {2, 1}) {
+            Cursor mockCursor = PowerMockito.mock(Cursor.class);
+            PowerMockito.when(mockCursor.getRowsAffected()).thenReturn(rowsAffected);
+            CursorWithError mockCursorWithError = PowerMockito.mock(CursorWithError.class);
+            PowerMockito.when(mockCursorWithError.getCursor()).thenReturn(mockCursor);
+            mockCursorWithErrorList.add(mockCursorWithError);
+        }
+        PowerMockito.when(mockSqlFutureCursor.checkedGet()).thenReturn(mockCursorWithErrorList);
+
+        VitessPreparedStatement statement = new VitessPreparedStatement(mockConn,
+            "insert into test_table(id, msg) values (?, ?)");
+        for (int i = 1; i <= 3; ++i) {
+            statement.setInt(1, i);
+            statement.setString(2, "msg" + i);
+            statement.addBatch();
+        }
+        int[] updateCounts = statement.executeBatch();
+        Assert.assertArrayEquals(new int[] {1, 1, 1}, updateCounts);
+
+        Assert.assertEquals(2, queries.getValue().size());
+        Assert.assertEquals("insert into test_table(id, msg) values (?, ?),(?, ?)",
+            queries.getValue().get(0));
+        Assert.assertEquals("insert into test_table(id, msg) values (?, ?)",
+            queries.getValue().get(1));
+        Assert.assertEquals(ImmutableMap.of("v1", Proto.buildBindVariable(1), "v2",
+            Proto.buildBindVariable("msg1"), "v3", Proto.buildBindVariable(2), "v4",
+            Proto.buildBindVariable("msg2")), bindVars.getValue().get(0));
+        Assert.assertEquals(ImmutableMap.of("v1", Proto.buildBindVariable(3), "v2",
+            Proto.buildBindVariable("msg3")), bindVars.getValue().get(1));
+    }
+
+    @Test public void testParametersAreKeptAcrossExecutions() throws SQLException {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.REPLICA);
+        PowerMockito.when(mockConn.isSimpleExecute()).thenReturn(true);
+        PowerMockito.when(mockConn.createContext(Matchers.anyLong()))
+            .thenReturn(Context.getDefault());
+
+        SQLFuture mockSqlFutureCursor = PowerMockito.mock(SQLFuture.class);
+        PowerMockito.when(mockSqlFutureCursor.checkedGet())
+            .thenReturn(PowerMockito.mock(Cursor.class));
+        ArgumentCaptor<Map> bindVars = ArgumentCaptor.forClass(Map.class);
+        PowerMockito.when(mockVtGateConn
+            .execute(Matchers.any(Context.class), Matchers.anyString(), bindVars.capture(),
+                Matchers.any(Topodata.TabletType.class),
+                Matchers.any(Query.ExecuteOptions.IncludedFields.class)))
+            .thenReturn(mockSqlFutureCursor);
+
+        VitessPreparedStatement statement =
+            new VitessPreparedStatement(mockConn, "select * from t where a = ? and b = ?");
+        statement.setString(1, "unchanged");
+        statement.setLong(2, 1L);
+        statement.executeQuery();
+        Object first = bindVars.getValue().get("v1");
+        Assert.assertEquals(Proto.buildBindVariable("unchanged"), first);
+        Assert.assertEquals(Proto.buildBindVariable(1L), bindVars.getValue().get("v2"));
+
+        // Only the parameter that was set again is re-encoded.
+        statement.setLong(2, -9876543210L);
+        statement.executeQuery();
+        Assert.assertSame(first, bindVars.getValue().get("v1"));
+        Assert.assertEquals(Proto.buildBindVariable(-9876543210L), bindVars.getValue().get("v2"));
+
+        statement.clearParameters();
+        statement.executeQuery();
+        Assert.assertTrue(bindVars.getValue().isEmpty());
+    }
+
+    @Test public void testLazyBeginSkipsBeginCall() throws SQLException {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        VTGateTx mockVtGateTx = PowerMockito.mock(VTGateTx.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.MASTER);
+        PowerMockito.when(mockConn.getAutoCommit()).thenReturn(false);
+        PowerMockito.when(mockConn.getLazyBegin()).thenReturn(true);
+        PowerMockito.when(mockVtGateConn.beginLazily()).thenReturn(mockVtGateTx);
+
+        SQLFuture mockSqlFutureCursor = PowerMockito.mock(SQLFuture.class);
+        PowerMockito.when(mockSqlFutureCursor.checkedGet())
+            .thenReturn(PowerMockito.mock(Cursor.class));
+        PowerMockito.when(mockVtGateTx
+            .execute(Matchers.any(Context.class), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class),
+                Matchers.any(Query.ExecuteOptions.IncludedFields.class)))
+            .thenReturn(mockSqlFutureCursor);
+
+        VitessPreparedStatement statement = new VitessPreparedStatement(mockConn, sqlUpdate);
+        statement.executeUpdate();
+
+        Mockito.verify(mockVtGateConn, Mockito.never()).begin(Matchers.any(Context.class));
+        Mockito.verify(mockConn).setVtGateTx(mockVtGateTx);
+        Mockito.verify(mockVtGateTx).execute(Matchers.any(Context.class), Matchers.eq(sqlUpdate),
+            Matchers.anyMap(), Matchers.eq(Topodata.TabletType.MASTER),
+            Matchers.any(Query.ExecuteOptions.IncludedFields.class));
+    }
+
     @Test public void testStatementCount() throws SQLException {
         VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
         Map<String, Integer> testCases = ImmutableMap.<String, Integer>builder()
@@ -16,12 +16,15 @@
 
 package io.vitess.jdbc;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import io.vitess.client.Context;
 import io.vitess.client.SQLFuture;
 import io.vitess.client.VTGateConn;
 import io.vitess.client.VTGateTx;
 import io.vitess.client.cursor.Cursor;
 import io.vitess.client.cursor.CursorWithError;
+import io.vitess.client.cursor.Row;
 import io.vitess.proto.Query;
 import io.vitess.proto.Topodata;
 import io.vitess.proto.Vtrpc;
@@ -30,13 +33,21 @@ import java.lang.reflect.Field;
 import java.sql.BatchUpdateException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.joda.time.Duration;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -527,6 +538,242 @@ import org.powermock.modules.junit4.PowerMockRunner;
         Assert.assertEquals(0, statement.getFetchSize());
     }
 
+    @Test public void testFetchSizeSelectsStreaming() throws SQLException {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        Cursor mockCursor = PowerMockito.mock(Cursor.class);
+        SQLFuture mockSqlFutureCursor = PowerMockito.mock(SQLFuture.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.REPLICA);
+        PowerMockito.when(mockConn.createContext(Matchers.anyLong())).thenReturn(Context.getDefault());
+        PowerMockito.when(mockConn.isSimpleExecute()).thenReturn(true);
+        PowerMockito.when(mockVtGateConn
+            .execute(Matchers.any(Context.class), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class))).thenReturn(mockSqlFutureCursor);
+        ArgumentCaptor<Context> streamContext = ArgumentCaptor.forClass(Context.class);
+        PowerMockito.when(mockVtGateConn
+            .streamExecute(streamContext.capture(), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class))).thenReturn(mockCursor);
+        PowerMockito.when(mockSqlFutureCursor.checkedGet()).thenReturn(mockCursor);
+        PowerMockito.when(mockCursor.getFields()).thenReturn(Query.QueryResult.getDefaultInstance().getFieldsList());
+
+        // The default fetch size follows the executeType of the connection.
+        VitessStatement statement = new VitessStatement(mockConn);
+        statement.executeQuery(sqlSelect);
+        Mockito.verify(mockVtGateConn, Mockito.times(1)).execute(Matchers.any(Context.class),
+            Matchers.anyString(), Matchers.anyMap(), Matchers.any(Topodata.TabletType.class),
+            Matchers.any(Query.ExecuteOptions.IncludedFields.class));
+
+        statement.setFetchSize(Integer.MIN_VALUE);
+        statement.executeQuery(sqlSelect);
+        Assert.assertEquals(Integer.valueOf(1), streamContext.getValue().getStreamPrefetch());
+
+        statement.setFetchSize(3);
+        statement.executeQuery(sqlSelect);
+        Assert.assertEquals(Integer.valueOf(3), streamContext.getValue().getStreamPrefetch());
+
+        statement.setFetchSize(1000);
+        statement.executeQuery(sqlSelect);
+        Assert.assertEquals(Integer.valueOf(Constants.MAX_STREAM_PREFETCH),
+            streamContext.getValue().getStreamPrefetch());
+
+        Mockito.verify(mockVtGateConn, Mockito.times(1)).execute(Matchers.any(Context.class),
+            Matchers.anyString(), Matchers.anyMap(), Matchers.any(Topodata.TabletType.class),
+            Matchers.any(Query.ExecuteOptions.IncludedFields.class));
+    }
+
+    @Test public void testMaxRowsPushedDown() throws Exception {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        Cursor mockCursor = PowerMockito.mock(Cursor.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.REPLICA);
+        PowerMockito.when(mockConn.createContext(Matchers.anyLong())).thenReturn(Context.getDefault());
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        PowerMockito.when(mockVtGateConn
+            .streamExecute(Matchers.any(Context.class), query.capture(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class))).thenReturn(mockCursor);
+        PowerMockito.when(mockCursor.getFields()).thenReturn(Query.QueryResult.getDefaultInstance().getFieldsList());
+        PowerMockito.when(mockCursor.next()).thenReturn(PowerMockito.mock(Row.class));
+
+        VitessStatement statement = new VitessStatement(mockConn);
+        statement.setFetchSize(Integer.MIN_VALUE);
+        statement.setMaxRows(2);
+        ResultSet rs = statement.executeQuery(sqlSelect);
+        Assert.assertEquals(sqlSelect + " limit 2", query.getValue());
+
+        Assert.assertTrue(rs.next());
+        Mockito.verify(mockCursor, Mockito.never()).close();
+        // Reading the last allowed row stops the stream.
+        Assert.assertTrue(rs.next());
+        Mockito.verify(mockCursor, Mockito.times(1)).close();
+        Assert.assertFalse(rs.next());
+        Mockito.verify(mockCursor, Mockito.times(2)).next();
+    }
+
+    @Test public void testStreamIdleTimeoutReplacesQueryTimeout() throws Exception {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        Cursor mockCursor = PowerMockito.mock(Cursor.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.REPLICA);
+        PowerMockito.when(mockConn.createContext(Matchers.anyLong())).thenReturn(Context.getDefault());
+        PowerMockito.when(mockConn.getStreamIdleTimeoutMillis()).thenReturn(5000L);
+        ArgumentCaptor<Context> context = ArgumentCaptor.forClass(Context.class);
+        PowerMockito.when(mockVtGateConn
+            .streamExecute(context.capture(), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class))).thenReturn(mockCursor);
+        PowerMockito.when(mockCursor.getFields()).thenReturn(Query.QueryResult.getDefaultInstance().getFieldsList());
+
+        VitessStatement statement = new VitessStatement(mockConn);
+        statement.setFetchSize(Integer.MIN_VALUE);
+        statement.executeQuery(sqlSelect);
+        Assert.assertNull(context.getValue().getDeadline());
+        Assert.assertEquals(5000L, context.getValue().getStreamIdleTimeout().getMillis());
+        Assert.assertEquals(1, (int) context.getValue().getStreamPrefetch());
+    }
+
+    @Test public void testStreamIdleTimeoutKeepsExplicitQueryTimeout() throws Exception {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        Cursor mockCursor = PowerMockito.mock(Cursor.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.REPLICA);
+        Context queryContext = Context.getDefault().withDeadlineAfter(Duration.standardSeconds(30));
+        PowerMockito.when(mockConn.createContext(30000L)).thenReturn(queryContext);
+        PowerMockito.when(mockConn.getStreamIdleTimeoutMillis()).thenReturn(5000L);
+        ArgumentCaptor<Context> context = ArgumentCaptor.forClass(Context.class);
+        PowerMockito.when(mockVtGateConn
+            .streamExecute(context.capture(), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class))).thenReturn(mockCursor);
+        PowerMockito.when(mockCursor.getFields()).thenReturn(Query.QueryResult.getDefaultInstance().getFieldsList());
+
+        VitessStatement statement = new VitessStatement(mockConn);
+        statement.setFetchSize(Integer.MIN_VALUE);
+        statement.setQueryTimeout(30);
+        statement.executeQuery(sqlSelect);
+        Assert.assertEquals(queryContext.getDeadline(), context.getValue().getDeadline());
+        Assert.assertEquals(5000L, context.getValue().getStreamIdleTimeout().getMillis());
+    }
+
+    @Test(timeout = 10000) public void testCancelRunningQuery() throws Exception {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.REPLICA);
+        PowerMockito.when(mockConn.createContext(Matchers.anyLong())).thenReturn(Context.getDefault());
+        PowerMockito.when(mockConn.isSimpleExecute()).thenReturn(true);
+        final SettableFuture<Cursor> call = SettableFuture.create();
+        final CountDownLatch started = new CountDownLatch(1);
+        PowerMockito.when(mockVtGateConn
+            .execute(Matchers.any(Context.class), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class)))
+            .thenAnswer(new Answer<SQLFuture<Cursor>>() {
+                @Override public SQLFuture<Cursor> answer(InvocationOnMock invocation) {
+                    started.countDown();
+                    return new SQLFuture<>(call);
+                }
+            });
+
+        final VitessStatement statement = new VitessStatement(mockConn);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread query = new Thread() {
+            @Override public void run() {
+                try {
+                    statement.executeQuery(sqlSelect);
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        };
+        query.start();
+        started.await();
+        statement.cancel();
+        query.join();
+
+        Assert.assertTrue(call.isCancelled());
+        Assert.assertTrue(error.get() instanceof SQLTimeoutException);
+        Assert.assertEquals(Constants.SQLExceptionMessages.STATEMENT_CANCELLED, error.get().getMessage());
+    }
+
+    @Test(timeout = 10000) public void testCancelRollsBackTransaction() throws Exception {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        VTGateTx mockVtGateTx = PowerMockito.mock(VTGateTx.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.MASTER);
+        PowerMockito.when(mockConn.getAutoCommit()).thenReturn(false);
+        PowerMockito.when(mockConn.getVtGateTx()).thenReturn(mockVtGateTx);
+        PowerMockito.when(mockConn.createContext(Matchers.anyLong())).thenReturn(Context.getDefault());
+        PowerMockito.when(mockVtGateTx.rollback(Matchers.any(Context.class)))
+            .thenReturn(new SQLFuture<>(Futures.<Void>immediateFuture(null)));
+        final SettableFuture<Cursor> call = SettableFuture.create();
+        final CountDownLatch started = new CountDownLatch(1);
+        PowerMockito.when(mockVtGateTx
+            .execute(Matchers.any(Context.class), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class)))
+            .thenAnswer(new Answer<SQLFuture<Cursor>>() {
+                @Override public SQLFuture<Cursor> answer(InvocationOnMock invocation) {
+                    started.countDown();
+                    return new SQLFuture<>(call);
+                }
+            });
+
+        final VitessStatement statement = new VitessStatement(mockConn);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread query = new Thread() {
+            @Override public void run() {
+                try {
+                    statement.executeUpdate(sqlUpdate);
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        };
+        query.start();
+        started.await();
+        statement.cancel();
+        query.join();
+
+        Assert.assertTrue(error.get() instanceof SQLTimeoutException);
+        // The session doesn't show what the cancelled call did, so the transaction is dropped.
+        Mockito.verify(mockVtGateTx).rollback(Matchers.any(Context.class));
+        Mockito.verify(mockConn).setVtGateTx(null);
+    }
+
+    @Test public void testCancelStopsStream() throws Exception {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        Cursor mockCursor = PowerMockito.mock(Cursor.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.REPLICA);
+        PowerMockito.when(mockConn.createContext(Matchers.anyLong())).thenReturn(Context.getDefault());
+        PowerMockito.when(mockVtGateConn
+            .streamExecute(Matchers.any(Context.class), Matchers.anyString(), Matchers.anyMap(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class))).thenReturn(mockCursor);
+        PowerMockito.when(mockCursor.getFields()).thenReturn(Query.QueryResult.getDefaultInstance().getFieldsList());
+        // A stopped stream looks like it ended.
+        PowerMockito.when(mockCursor.next()).thenReturn(PowerMockito.mock(Row.class), (Row) null);
+
+        VitessStatement statement = new VitessStatement(mockConn);
+        statement.setFetchSize(Integer.MIN_VALUE);
+        ResultSet rs = statement.executeQuery(sqlSelect);
+        Assert.assertTrue(rs.next());
+
+        statement.cancel();
+        Mockito.verify(mockCursor, Mockito.times(1)).close();
+        try {
+            rs.next();
+            Assert.fail("expected the cancellation to be reported");
+        } catch (SQLTimeoutException e) {
+            Assert.assertEquals(Constants.SQLExceptionMessages.STATEMENT_CANCELLED, e.getMessage());
+        }
+
+        // The next query starts afresh.
+        rs = statement.executeQuery(sqlSelect);
+        Assert.assertFalse(statement.isCancelled());
+    }
+
     @Test public void testGetResultSetConcurrency() throws SQLException {
         VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
 
@@ -700,4 +947,109 @@ import org.powermock.modules.junit4.PowerMockRunner;
         }
 
     }
+
+    @Test public void testExecuteBatchInChunks() throws SQLException {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.MASTER);
+        PowerMockito.when(mockConn.getAutoCommit()).thenReturn(true);
+        PowerMockito.when(mockConn.getBatchChunkSize()).thenReturn(2);
+        PowerMockito.when(mockConn.getBatchConcurrency()).thenReturn(2);
+
+        // Each query "update test_table set msg = null limit N" affects N rows.
+        final List<List<String>> chunks = new ArrayList<>();
+        PowerMockito.when(mockVtGateConn
+            .executeBatch(Matchers.any(Context.class), Matchers.anyList(), Matchers.anyList(),
+                Matchers.any(Topodata.TabletType.class), Matchers.any(Query.ExecuteOptions.IncludedFields.class)))
+            .thenAnswer(new Answer<SQLFuture<List<CursorWithError>>>() {
+                @Override
+                public SQLFuture<List<CursorWithError>> answer(InvocationOnMock invocation)
+                    throws Throwable {
+                    List<String> queries = (List<String>) invocation.getArguments()[1];
+                    chunks.add(new ArrayList<>(queries));
+                    List<CursorWithError> results = new ArrayList<>();
+                    for (String query : queries) {
+                        long rows = Long.parseLong(query.substring(query.lastIndexOf(' ') + 1));
+                        Cursor mockCursor = PowerMockito.mock(Cursor.class);
+                        PowerMockito.when(mockCursor.getRowsAffected()).thenReturn(rows);
+                        CursorWithError mockCursorWithError = PowerMockito.mock(CursorWithError.class);
+                        PowerMockito.when(mockCursorWithError.getCursor()).thenReturn(mockCursor);
+                        results.add(mockCursorWithError);
+                    }
+                    return new SQLFuture<>(Futures.immediateFuture(results));
+                }
+            });
+
+        VitessStatement statement = new VitessStatement(mockConn);
+        for (int i = 1; i <= 5; ++i) {
+            statement.addBatch(sqlUpdate + " limit " + i);
+        }
+        int[] updateCounts = statement.executeBatch();
+        Assert.assertArrayEquals(new int[] {1, 2, 3, 4, 5}, updateCounts);
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(2, chunks.get(0).size());
+        Assert.assertEquals(2, chunks.get(1).size());
+        Assert.assertEquals(1, chunks.get(2).size());
+    }
+
+    @Test public void testExecuteBatchAtomic() throws SQLException {
+        VitessConnection mockConn = PowerMockito.mock(VitessConnection.class);
+        VTGateConn mockVtGateConn = PowerMockito.mock(VTGateConn.class);
+        VTGateTx mockVtGateTx = PowerMockito.mock(VTGateTx.class);
+        PowerMockito.when(mockConn.getVtGateConn()).thenReturn(mockVtGateConn);
+        PowerMockito.when(mockConn.getTabletType()).thenReturn(Topodata.TabletType.MASTER);
+        PowerMockito.when(mockConn.getAutoCommit()).thenReturn(true);
+        PowerMockito.when(mockConn.getLazyBegin()).thenReturn(true);
+        PowerMockito.when(mockVtGateConn.beginLazily()).thenReturn(mockVtGateTx);
+        SQLFuture<Void> done = new SQLFuture<>(Futures.<Void>immediateFuture(null));
+        PowerMockito.when(mockVtGateTx.commit(Matchers.any(Context.class), Matchers.anyBoolean()))
+            .thenReturn(done);
+        PowerMockito.when(mockVtGateTx.rollback(Matchers.any(Context.class))).thenReturn(done);
+
+        final List<CursorWithError> results = new ArrayList<>();
+        PowerMockito.when(mockVtGateTx
+            .executeBatch(Matchers.any(Context.class), Matchers.anyList(), Matchers.anyList(),
+                Matchers.any(Topodata.TabletType.class),
+                Matchers.any(Query.ExecuteOptions.IncludedFields.class)))
+            .thenAnswer(new Answer<SQLFuture<List<CursorWithError>>>() {
+                @Override
+                public SQLFuture<List<CursorWithError>> answer(InvocationOnMock invocation) {
+                    return new SQLFuture<>(Futures.immediateFuture(results));
+                }
+            });
+        CursorWithError success = PowerMockito.mock(CursorWithError.class);
+        Cursor mockCursor = PowerMockito.mock(Cursor.class);
+        PowerMockito.when(mockCursor.getRowsAffected()).thenReturn(1L);
+        PowerMockito.when(success.getCursor()).thenReturn(mockCursor);
+        results.add(success);
+
+        // The batch runs in a transaction of its own, committed as a whole.
+        VitessStatement statement = new VitessStatement(mockConn);
+        statement.addBatch(sqlUpdate);
+        Assert.assertArrayEquals(new int[] {1}, statement.executeBatchAtomic());
+        Mockito.verify(mockVtGateTx).commit(Matchers.any(Context.class), Matchers.anyBoolean());
+        Mockito.verify(mockVtGateTx, Mockito.never()).rollback(Matchers.any(Context.class));
+        Mockito.verify(mockVtGateConn, Mockito.never()).executeBatch(Matchers.any(Context.class),
+            Matchers.anyList(), Matchers.anyList(), Matchers.any(Topodata.TabletType.class),
+            Matchers.any(Query.ExecuteOptions.IncludedFields.class));
+        Mockito.verify(mockConn, Mockito.never()).setVtGateTx(mockVtGateTx);
+
+        // If any command fails, none of them took effect.
+        CursorWithError failure = PowerMockito.mock(CursorWithError.class);
+        PowerMockito.when(failure.getError())
+            .thenReturn(Vtrpc.RPCError.newBuilder().setMessage("duplicate key").build());
+        results.add(failure);
+        statement.addBatch(sqlUpdate);
+        statement.addBatch(sqlUpdate);
+        try {
+            statement.executeBatchAtomic();
+            Assert.fail("Should have thrown Exception");
+        } catch (BatchUpdateException ex) {
+            Assert.assertArrayEquals(new int[] {Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED},
+                ex.getUpdateCounts());
+        }
+        Mockito.verify(mockVtGateTx).commit(Matchers.any(Context.class), Matchers.anyBoolean());
+        Mockito.verify(mockVtGateTx).rollback(Matchers.any(Context.class));
+    }
 }
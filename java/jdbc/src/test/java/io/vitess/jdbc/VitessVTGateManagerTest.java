@@ -19,7 +19,9 @@ package io.vitess.jdbc;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.sql.SQLException;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.joda.time.Duration;
@@ -93,4 +95,57 @@ public class VitessVTGateManagerTest {
         VitessVTGateManager.close();
     }
 
+    @Test public void testGetVtGateConnInstanceUsesAllVtGates() throws SQLException {
+        VitessVTGateManager.close();
+        Properties info = new Properties();
+        info.setProperty("username", "user");
+        VitessConnection connection = new VitessConnection(
+            "jdbc:vitess://10.33.17.231:15991:xyz,10.33.17.232:15991:xyz,10.33.17"
+                + ".233:15991/shipment/shipment?tabletType=master", info);
+        VitessVTGateManager.VTGateConnections vtGateConnections =
+            new VitessVTGateManager.VTGateConnections(connection);
+        Set<VTGateConn> chosen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            chosen.add(vtGateConnections.getVtGateConnInstance());
+        }
+        // With equal load, every vtGate gets a share of the calls.
+        Assert.assertEquals(3, chosen.size());
+        VitessVTGateManager.close();
+    }
+
+    @Test public void testStatementTemplateCacheIsShared() throws SQLException {
+        VitessVTGateManager.close();
+        String url = "jdbc:vitess://10.33.17.231:15991:xyz,10.33.17.232:15991:xyz/shipment/shipment";
+        Properties info = new Properties();
+        info.setProperty("username", "user");
+        VitessConnection uncached = new VitessConnection(url, info);
+        uncached.connect();
+        Assert.assertNull(uncached.getStatementTemplateCache());
+
+        info.setProperty("cachePrepStmts", "true");
+        VitessConnection connection = new VitessConnection(url, info);
+        VitessConnection connection1 = new VitessConnection(url, info);
+        connection.connect();
+        connection1.connect();
+        Assert.assertNotNull(connection.getStatementTemplateCache());
+        Assert.assertSame(connection.getStatementTemplateCache(),
+            connection1.getStatementTemplateCache());
+
+        String sql = "select * from foo where a = ?";
+        connection.prepareStatement(sql);
+        connection1.prepareStatement(sql);
+        Assert.assertEquals(1, connection.getStatementTemplateCache().size());
+        Assert.assertSame(StatementTemplate.get(connection, sql),
+            StatementTemplate.get(connection1, sql));
+
+        // A connection asking for another cache size does not share the cache.
+        info.setProperty("prepStmtCacheSize", "10");
+        VitessConnection connection2 = new VitessConnection(url, info);
+        connection2.connect();
+        Assert.assertNotNull(connection2.getStatementTemplateCache());
+        Assert.assertNotSame(connection.getStatementTemplateCache(),
+            connection2.getStatementTemplateCache());
+        VitessVTGateManager.close();
+    }
+
 }
@@ -117,4 +117,38 @@ public class StringUtilsTest {
     Assert.assertEquals(Lists.newArrayList("one", "/*!50110 one", " two */two", "three", "four"), StringUtils.split("one,/*!50110 one, two */two,three,four", ",", "`", "`"));
     Assert.assertEquals(Lists.newArrayList("one", "/*!5011 one", " two */two", "three", "four"), StringUtils.split("one,/*!5011 one, two */two,three,four", ",", "`", "`"));
   }
+
+  @Test
+  public void addLimitTest() {
+    Assert.assertEquals("select * from t limit 10", StringUtils.addLimit("select * from t", 10));
+    Assert.assertEquals("SELECT a FROM t WHERE b = ';' ORDER BY a limit 10;",
+        StringUtils.addLimit("SELECT a FROM t WHERE b = ';' ORDER BY a;", 10));
+    Assert.assertEquals("/* hint */ select a from t limit 5 -- trailing comment",
+        StringUtils.addLimit("/* hint */ select a from t -- trailing comment", 5));
+    Assert.assertEquals("select * from t where a in (select a from u limit 1) limit 3",
+        StringUtils.addLimit("select * from t where a in (select a from u limit 1)", 3));
+    Assert.assertEquals("select `limit` from t limit 3",
+        StringUtils.addLimit("select `limit` from t", 3));
+    // Two dashes only start a comment if whitespace follows them.
+    Assert.assertEquals("select 5--1 from t limit 1000",
+        StringUtils.addLimit("select 5--1 from t", 1000));
+    Assert.assertEquals("select a--b from t where x=1 limit 10",
+        StringUtils.addLimit("select a--b from t where x=1", 10));
+    Assert.assertEquals("select a from t limit 10 --\tcomment",
+        StringUtils.addLimit("select a from t --\tcomment", 10));
+    Assert.assertEquals("select a from t limit 10 --",
+        StringUtils.addLimit("select a from t --", 10));
+
+    for (String sql : new String[] {
+        "select * from t limit 100",
+        "select a from t union select a from u",
+        "select * from t for update",
+        "select * from t lock in share mode",
+        "select a into @x from t",
+        "select 1; select 2",
+        "update t set a = 1",
+        "show tables"}) {
+      Assert.assertSame(sql, StringUtils.addLimit(sql, 10));
+    }
+  }
 }